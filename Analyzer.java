@@ -0,0 +1,147 @@
+package chess;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Background analysis for the GUI.
+ * Searches a copy of the current position on a worker thread and hands the best lines and scores of each
+ * iteration (a multi-PV search) to a listener on the event dispatch thread, at most once per publish interval.
+ * Starting a new analysis or stopping cancels the running search at its next node.
+ */
+public class Analyzer {
+
+    public static final int DEFAULT_MAX_DEPTH = 8;
+    public static final long PUBLISH_INTERVAL_MILLIS = 150;
+    public static final int DEFAULT_LINES = 1;
+
+    /**
+     * Receives analysis updates on the event dispatch thread.
+     */
+    public interface Listener {
+        /**
+         * @param lines best line first, never empty
+         */
+        void analysisUpdated(List<SearchResult> lines);
+    }
+
+    private final Search search;
+    private final int maxDepth;
+    private volatile int lines = DEFAULT_LINES;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "analysis");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    //bumped on every analyze/stop, results of older generations are dropped
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicReference<Update> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile long lastPublishNanos;
+    private Future<?> running;
+
+    public Analyzer() {
+        this(new Search(), DEFAULT_MAX_DEPTH);
+    }
+
+    public Analyzer(Search search, int maxDepth) {
+        this.search = search;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Starts analysing the game's current position, cancelling any earlier analysis.
+     * Must be called on the thread that owns the game (the event dispatch thread in the GUI).
+     * @param game game model, copied before returning
+     * @param listener receives updates on the event dispatch thread
+     */
+    public synchronized void analyze(Game game, Listener listener) {
+        stop();
+        int token = generation.get();
+        Game copy = game.deepCopyGame();
+        running = executor.submit(() -> run(copy, token, listener));
+    }
+
+    /**
+     * Cancels the running analysis, its pending updates are never delivered.
+     */
+    public synchronized void stop() {
+        generation.incrementAndGet();
+        search.stop();
+        if (running != null) {
+            running.cancel(false);
+            running = null;
+        }
+    }
+
+    /**
+     * @param lines number of lines to analyse, used from the next analysis on
+     */
+    public void setLines(int lines) {
+        this.lines = Math.max(1, Math.min(lines, Search.MAX_LINES));
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public void shutdown() {
+        stop();
+        executor.shutdownNow();
+    }
+
+    private void run(Game game, int token, Listener listener) {
+        synchronized (this) {
+            if (token != generation.get()) {
+                return;
+            }
+            search.clearStop();
+        }
+        List<SearchResult> result = search.searchMultiPv(game, maxDepth, lines,
+                r -> publish(r, token, listener, false));
+        publish(result, token, listener, true);
+    }
+
+    private void publish(List<SearchResult> result, int token, Listener listener, boolean force) {
+        if (token != generation.get() || result.isEmpty()) {
+            return;
+        }
+        //only the newest update is kept, a burst of fast iterations becomes a single repaint
+        pending.set(new Update(result, token, listener));
+        long now = System.nanoTime();
+        if (!force && now - lastPublishNanos < PUBLISH_INTERVAL_MILLIS * 1_000_000L) {
+            return;//delivered by the next publish, the last one is always forced
+        }
+        if (!scheduled.compareAndSet(false, true)) {
+            return;//the queued delivery picks up the newest update
+        }
+        lastPublishNanos = now;
+        SwingUtilities.invokeLater(() -> {
+            scheduled.set(false);
+            Update update = pending.getAndSet(null);
+            if (update != null && update.token == generation.get()) {
+                update.listener.analysisUpdated(update.result);
+            }
+        });
+    }
+
+    private static class Update {
+        final List<SearchResult> result;
+        final int token;
+        final Listener listener;
+
+        Update(List<SearchResult> result, int token, Listener listener) {
+            this.result = result;
+            this.token = token;
+            this.listener = listener;
+        }
+    }
+}
@@ -17,12 +17,13 @@ public class Bishop extends Piece{
     public Bishop(Player player, Square square){
         setPlayer(player);
         setSquare(square);
-        setName(Bishop._NAME);
+        setType(PieceType.BISHOP);
         square.setPiece(this);
     }
 
     @Override
     public boolean canMove(Board board, Square start, Square dest) {
+        if (Metrics.ENABLED) Metrics.CAN_MOVE.increment();
 
         //check if the destination square is occupied by player's own piece
         //and if the destination square is out of bound
@@ -36,8 +37,8 @@ public class Bishop extends Piece{
         float dfX = Math.abs(start.getX() - dest.getX());
         float dfY = Math.abs(start.getY() - dest.getY());
         if(dfY == 0){return false;}//avoid divide by zero
-        System.out.println(dfX);
-        System.out.println(dfY);
+        if (Debug.ENABLED) Debug.println(dfX);
+        if (Debug.ENABLED) Debug.println(dfY);
         return dfX / dfY == 1.0;
     }
 
@@ -11,15 +11,31 @@ public class Board {
 
     public Square[][] board;
 
+    //pieces on the board by color (0 white, 1 black), kept up to date by Square.setPiece and Piece.setPlayer
+    private final ArrayList<Piece> whitePieces = new ArrayList<>(NUM_PIECES);
+    private final ArrayList<Piece> blackPieces = new ArrayList<>(NUM_PIECES);
+    private final King[] kings = new King[2];
+    private int version;//bumped on every change of a square or a piece's color
+    private MoveObserver moveObserver;
+
     public Board(String option) {
+        this(option, new Player(Player.WHITE), new Player(Player.BLACK));
+    }
+
+    /**
+     * @param option BLANK_BOARD, START_BOARD or CUSTOM_BOARD
+     * @param white owner of the white pieces
+     * @param black owner of the black pieces
+     */
+    public Board(String option, Player white, Player black) {
         board = new Square[8][8]; // Corrected to 8x8 for a standard chessboard
 
         if (option.equals(BLANK_BOARD)) {
             initBlankBoard();
         } else if (option.equals(START_BOARD)) {
-            this.initBoard(new Player(Player.WHITE), new Player(Player.BLACK));
+            this.initBoard(white, black);
         } else if (option.equals(CUSTOM_BOARD)) {
-            this.initCustomBoard(new Player(Player.WHITE), new Player(Player.BLACK));
+            this.initCustomBoard(white, black);
         }
     }
 
@@ -84,6 +100,7 @@ public class Board {
         for (int i = 0; i < 8; i++) {
             for (int j = 0; j < 8; j++) {
                 board[i][j] = new Square(null, i, j);
+                board[i][j].setBoard(this);
             }
         }
     }
@@ -114,6 +131,21 @@ public class Board {
     }
 
     public boolean checkMate(Game game, Piece tryKillKingPiece, King king) {
+        CheckMateEvent event = new CheckMateEvent();
+        event.begin();
+        long start = Metrics.start();
+        boolean checkMate = isCheckMate(game, king);
+        Metrics.stop(Metrics.CHECKMATE_DETECTION, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.color = king.getPlayer().getColor();
+            event.checkMate = checkMate;
+            event.commit();
+        }
+        return checkMate;
+    }
+
+    private boolean isCheckMate(Game game, King king) {
         if (!isKingInCheck(game, king)) {
             return false; // King is not in check, no checkmate
         }
@@ -150,26 +182,126 @@ public class Board {
         return true; // No valid moves left, checkmate
     }
 
-    public King checkKing(Game game) {
+    /**
+     * Copies the board with new piece objects and new players, so the copy can be changed
+     * (e.g. searched on another thread) without touching this board.
+     * @return independent copy of this board
+     */
+    public Board copy() {
+        return copy(new Player(Player.WHITE), new Player(Player.BLACK));
+    }
+
+    /**
+     * @param white owner of the copied white pieces
+     * @param black owner of the copied black pieces
+     * @return independent copy of this board
+     */
+    public Board copy(Player white, Player black) {
+        Board copy = new Board(BLANK_BOARD);
         for (int i = 0; i < 8; i++) {
             for (int j = 0; j < 8; j++) {
                 Piece piece = board[i][j].getPiece();
-                if (piece instanceof King) {
-                    System.out.println("Found a king at: " + i + ", " + j);
-                    King king = (King) piece;
-                    if (isKingInCheck(game, king)) {
-                        return king;
-                    }
+                Square square = copy.board[i][j];
+                if (piece == null) {
+                    continue;
+                }
+                Player player = piece.getColorCode() == Player.WHITE_CODE ? white : black;
+                Piece copied = piece.getType().create(player, square);
+                if (copied.getType() == PieceType.PAWN) {
+                    ((Pawn) copied).setFirstStep(((Pawn) piece).getFirstStep());
                 }
             }
         }
+        return copy;
+    }
+
+    /**
+     * Plays a move on the board without any turn or GUI bookkeeping, used by the engine.
+     * Handles the vampire conversion and the witch promotion the same way the GUI transforms do.
+     * @param move move to play, its undo information is filled in
+     */
+    public void makeMove(Move move) {
+        Square start = board[move.getStartX()][move.getStartY()];
+        Square dest = board[move.getDestX()][move.getDestY()];
+        Piece piece = start.getPiece();
+        Piece captured = dest.getPiece();
+
+        move.setMovedPiece(piece);
+        move.setCapturedPiece(captured);
+        PieceType type = piece.getType();
+        if (type == PieceType.PAWN) {
+            Pawn pawn = (Pawn) piece;
+            move.setPawnFirstStep(pawn.getFirstStep());
+            pawn.setFirstStep(false);
+        }
+
+        if (captured != null && type == PieceType.VAMPIRE) {
+            //victim changes sides and takes the vampire's old square
+            move.setCapturedPlayer(captured.getPlayer());
+            captured.setPlayer(piece.getPlayer());
+            start.setPiece(captured);
+            dest.setPiece(piece);
+        } else if (captured != null && type == PieceType.WITCH) {
+            //witch turns into a queen on the destination square
+            start.setNullPiece();
+            move.setPromotedPiece(new Queen(piece.getPlayer(), dest));
+        } else {
+            start.setNullPiece();
+            dest.setPiece(piece);
+        }
+        if (moveObserver != null) {
+            moveObserver.movePlayed(this, move);
+        }
+    }
+
+    /**
+     * Takes back a move played by {@link #makeMove(Move)}.
+     * @param move the last move played
+     */
+    public void unmakeMove(Move move) {
+        Square start = board[move.getStartX()][move.getStartY()];
+        Square dest = board[move.getDestX()][move.getDestY()];
+        Piece piece = move.getMovedPiece();
+        Piece captured = move.getCapturedPiece();
+
+        PieceType type = piece.getType();
+        if (captured != null && type == PieceType.VAMPIRE) {
+            captured.setPlayer(move.getCapturedPlayer());
+        }
+        start.setPiece(piece);
+        dest.setPiece(captured);
+
+        if (type == PieceType.PAWN) {
+            ((Pawn) piece).setFirstStep(move.getPawnFirstStep());
+        }
+        if (moveObserver != null) {
+            moveObserver.moveTakenBack(this, move);
+        }
+    }
+
+    public King checkKing(Game game) {
+        for (King king : kings) {
+            if (king != null && isKingInCheck(game, king)) {
+                return king;
+            }
+        }
         return null;
     }
 
     private boolean isKingInCheck(Game game, King king) {
-        Player opponent = game.getOpponent(king.getPlayer());
-        System.out.println("King of: " + king.getPlayer());
-        System.out.println("Opponent is: " + opponent);
+        long start = Metrics.start();
+        try {
+            return isAttackedByOpponent(game, king);
+        } finally {
+            Metrics.stop(Metrics.CHECK_DETECTION, start);
+        }
+    }
+
+    private boolean isAttackedByOpponent(Game game, King king) {
+        if (Debug.ENABLED) Debug.println("King of: " + king.getPlayer());
+        if (Debug.ENABLED) Debug.println("Opponent is: " + game.getOpponent(king.getPlayer()));
+        int kingColor = king.getColorCode();
+        Square kingSquare = king.getSquare();
 
         Board board = game.getBoard(); // Fetch the board
 
@@ -179,16 +311,16 @@ public class Board {
                 Square currentSquare = board.getSquare(i, j); // Get the current square
                 Piece piece = currentSquare.getPiece(); // Get the piece on the square
 
-                if (piece != null && !piece.getPlayer().equals(king.getPlayer())) { // If it's an opponent's piece
-                    System.out.println("Found opponent's piece: " + piece.getName());
+                if (piece != null && piece.getColorCode() != kingColor) { // If it's an opponent's piece
+                    if (Debug.ENABLED) Debug.println("Found opponent's piece: " + piece.getName());
 
                     // Get all possible moves of the opponent's piece
                     ArrayList<Square> possibleMoves = piece.generatePossibleMoves(game);
 
                     // Check if any of the possible moves would put the king in check
                     for (Square move : possibleMoves) {
-                        if (move.equals(king.getSquare())) {
-                            System.out.println("King is in check by: " + piece.getName());
+                        if (move == kingSquare) {
+                            if (Debug.ENABLED) Debug.println("King is in check by: " + piece.getName());
                             return true; // King is in check
                         }
                     }
@@ -198,6 +330,9 @@ public class Board {
         return false; // King is not in check
     }
     public boolean isMoveSafe(Game game, Piece piece, Square dest) {
+        MoveSafetyEvent event = new MoveSafetyEvent();
+        event.begin();
+
         // Backup the current state
         Square originalSquare = piece.getSquare();
         Piece capturedPiece = dest.getPiece(); // Might be null
@@ -215,6 +350,15 @@ public class Board {
         dest.setPiece(capturedPiece);
         piece.setSquare(originalSquare);
 
+        event.end();
+        if (event.shouldCommit()) {
+            event.piece = piece.getName();
+            event.from = Notation.squareName(originalSquare.getX(), originalSquare.getY());
+            event.to = Notation.squareName(dest.getX(), dest.getY());
+            event.safe = !kingInCheck;
+            event.commit();
+        }
+
         // Return false if the move leaves the king in check
         return !kingInCheck;
     }
@@ -236,47 +380,179 @@ public class Board {
     }
 
     public ArrayList<Piece> findSameColorPieces(String color) {
-        ArrayList<Piece> pieces = new ArrayList<>();
+        return new ArrayList<>(piecesOf(colorIndex(color)));
+    }
 
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece piece = getSquare(i,j).getPiece();
+    public King[] findKing(Game game) {
+        //found kings first, like the board scan this replaced
+        King[] found = new King[2];
+        int count = 0;
+        for (King king : kings) {
+            if (king != null) {
+                found[count++] = king;
+            }
+        }
+        return found;
+    }
 
-                if(piece != null && piece.getPlayer().getColor().equals(color)) {
-                    pieces.add(piece);
-                }
+    // New method to retrieve all pieces on the board
+    public ArrayList<Piece> getPieces() {
+        ArrayList<Piece> allPieces = new ArrayList<>(whitePieces.size() + blackPieces.size());
+        allPieces.addAll(whitePieces);
+        allPieces.addAll(blackPieces);
+        return allPieces;
+    }
+
+    /**
+     * @param color Player.WHITE or Player.BLACK
+     * @return the king of that color, null once it has been captured
+     */
+    public King getKing(String color) {
+        return getKing(colorIndex(color));
+    }
+
+    /**
+     * @param color Player.WHITE_CODE or Player.BLACK_CODE
+     */
+    public King getKing(int color) {
+        return kings[color];
+    }
+
+    /**
+     * @return number of pieces of both colors on the board
+     */
+    public int getPieceCount() {
+        return whitePieces.size() + blackPieces.size();
+    }
+
+    /**
+     * @return number of pieces of a color on the board
+     */
+    public int getPieceCount(String color) {
+        return piecesOf(colorIndex(color)).size();
+    }
+
+    /**
+     * @return true if the side has a piece other than pawns and its king, where passing a move is rarely a disadvantage
+     */
+    public boolean hasNonPawnMaterial(String color) {
+        return hasNonPawnMaterial(colorIndex(color));
+    }
+
+    /**
+     * @param color color code of the side
+     */
+    public boolean hasNonPawnMaterial(int color) {
+        for (Piece piece : piecesOf(color)) {
+            PieceType type = piece.getType();
+            if (type != PieceType.PAWN && type != PieceType.KING) {
+                return true;
             }
         }
-        return pieces;
+        return false;
     }
 
-    public King[] findKing(Game game) {
-        King[] kings = new King[2];
-        int count=0;
-
-        for(int i=0;i<8;i++){
-            for(int j=0;j<8;j++){
-                Piece piece=game.getBoard().getSquare(i,j).getPiece();
-                if(piece instanceof King){
-                    kings[count]=(King)piece;
-                    count++;
+    /**
+     * No side can capture the other king: only kings are left, or kings and a single knight or bishop.
+     * Any pawn, rook, queen, vampire or witch counts as enough, a witch turns into a queen after its first capture.
+     * @return true if the game is drawn by insufficient material
+     */
+    public boolean hasInsufficientMaterial() {
+        if (whitePieces.size() + blackPieces.size() > 3) {
+            return false;
+        }
+        int minors = 0;
+        for (int color = 0; color < 2; color++) {
+            for (Piece piece : piecesOf(color)) {
+                PieceType type = piece.getType();
+                if (type == PieceType.KNIGHT || type == PieceType.BISHOP) {
+                    minors++;
+                } else if (type != PieceType.KING) {
+                    return false;
                 }
             }
         }
-        return kings;
+        return minors <= 1;
     }
 
-    // New method to retrieve all pieces on the board
-    public ArrayList<Piece> getPieces() {
-        ArrayList<Piece> allPieces = new ArrayList<>();
-        for(int i=0;i<8;i++){
-            for(int j=0;j<8;j++){
-                Piece piece=board[i][j].getPiece();
-                if(piece!=null){
-                    allPieces.add(piece);
+    /**
+     * @return counter that changes whenever the position changes, for caching derived state
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @param moveObserver told about engine moves on this board, null for none
+     */
+    public void setMoveObserver(MoveObserver moveObserver) {
+        this.moveObserver = moveObserver;
+    }
+
+    public MoveObserver getMoveObserver() {
+        return moveObserver;
+    }
+
+    //called by Square whenever its piece changes
+    void occupantChanged(Piece previous, Piece current) {
+        version++;
+        if (previous != null && --previous.occupancy == 0) {
+            untrack(previous, previous.getPlayer());
+        }
+        if (current != null && current.occupancy++ == 0) {
+            track(current);
+        }
+    }
+
+    //called by Piece when a piece on this board changes sides
+    void playerChanged(Piece piece, Player previous) {
+        version++;
+        untrack(piece, previous);
+        track(piece);
+    }
+
+    private void track(Piece piece) {
+        int color = piece.getColorCode();
+        ArrayList<Piece> pieces = piecesOf(color);
+        piece.listIndex = pieces.size();
+        piece.trackedColor = color;
+        piece.trackedBoard = this;
+        pieces.add(piece);
+        if (piece.getType() == PieceType.KING) {
+            kings[color] = (King) piece;
+            piece.getPlayer().setKing((King) piece);
+        }
+    }
+
+    private void untrack(Piece piece, Player owner) {
+        ArrayList<Piece> pieces = piecesOf(piece.trackedColor);
+        //swap with the last piece, the list order does not matter
+        Piece last = pieces.remove(pieces.size() - 1);
+        if (last != piece) {
+            pieces.set(piece.listIndex, last);
+            last.listIndex = piece.listIndex;
+        }
+        piece.listIndex = -1;
+        piece.trackedBoard = null;
+        if (kings[piece.trackedColor] == piece) {
+            //a vampire can leave a side with two kings, fall back to the other one
+            kings[piece.trackedColor] = null;
+            for (Piece other : pieces) {
+                if (other.getType() == PieceType.KING) {
+                    kings[piece.trackedColor] = (King) other;
                 }
             }
         }
-        return allPieces;
+        if (owner != null && owner.getKing() == piece) {
+            owner.setKing(kings[piece.trackedColor]);
+        }
+    }
+
+    private ArrayList<Piece> piecesOf(int color) {
+        return color == Player.WHITE_CODE ? whitePieces : blackPieces;
+    }
+
+    private static int colorIndex(String color) {
+        return Player.codeOf(color);
     }
-}
\ No newline at end of file
+}
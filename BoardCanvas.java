@@ -0,0 +1,309 @@
+package chess;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Board drawn by Java2D as one component instead of a grid of 64 buttons.
+ * It paints from the board model: {@link #syncWithModel(Move)} compares the model with what was painted last
+ * and repaints only the squares that changed. Piece images come pre-scaled from the sprite atlas as compatible
+ * images, which Java2D keeps in video memory, and the empty board is cached the same way.
+ * A move can be animated; the animation is timed by the clock, not by frames, and every frame repaints
+ * only the area the moving piece covers, so a slow frame never slows the piece down.
+ * Squares are laid out like the button grid: rank x is the row, file y the column.
+ */
+public class BoardCanvas extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int MIN_SQUARE_SIZE = 24;
+    public static final int DEFAULT_SQUARE_SIZE = 72;
+    public static final int ANIMATION_MILLIS = 160;
+    public static final int FRAME_MILLIS = 16;//about 60 frames per second
+
+    private static final int EMPTY = -1;
+    private static final Color LIGHT = new Color(240, 217, 181);
+    private static final Color DARK = new Color(181, 136, 99);
+    private static final Color SELECTED = new Color(153, 204, 255);
+    private static final Color TARGET = new Color(153, 204, 255, 160);
+
+    /**
+     * Receives square clicks.
+     */
+    public interface SquareListener {
+        void squareClicked(int x, int y);
+    }
+
+    private Board board;
+    private final SpriteAtlas sprites;//pieces without an image are drawn as their letter
+    private SquareListener listener;
+
+    //what was painted last, by square index x * 8 + y: piece type code * 2 + color code, or EMPTY
+    private final int[] painted = new int[64];
+    private final boolean[] highlighted = new boolean[64];
+    private int selected = EMPTY;
+
+    //the empty board, rebuilt when the square size changes
+    private Image background;
+    private int cachedSize;
+
+    //animation of the last move: the piece slides from one square to another, which shows its old content
+    private final Timer animationTimer = new Timer(FRAME_MILLIS, e -> animationFrame());
+    private boolean animated = true;
+    private int animationFrom = EMPTY;//already painted with its new content, empty unless a vampire captured
+    private int animationTo = EMPTY;
+    private int animationCode = EMPTY;
+    private int hiddenCode = EMPTY;//old content of the destination, painted until the piece arrives
+    private long animationStart;
+    private Rectangle spriteBounds;
+
+    /**
+     * @param board board model to draw
+     * @param sprites piece images
+     */
+    public BoardCanvas(Board board, SpriteAtlas sprites) {
+        this.board = board;
+        this.sprites = sprites;
+        setOpaque(true);
+        setDoubleBuffered(true);
+        setPreferredSize(new Dimension(8 * DEFAULT_SQUARE_SIZE, 8 * DEFAULT_SQUARE_SIZE));
+        setMinimumSize(new Dimension(8 * MIN_SQUARE_SIZE, 8 * MIN_SQUARE_SIZE));
+        Arrays.fill(painted, EMPTY);
+        readModel(painted);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                int square = squareAt(e.getPoint());
+                if (square != EMPTY && listener != null && SwingUtilities.isLeftMouseButton(e)) {
+                    listener.squareClicked(square >>> 3, square & 7);
+                }
+            }
+        });
+    }
+
+    /**
+     * Switches to another board, e.g. for a new game, and repaints everything.
+     */
+    public void setBoard(Board board) {
+        this.board = board;
+        stopAnimation();
+        readModel(painted);
+        repaint();
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Repaints the squares whose pieces changed since the last paint.
+     * @param lastMove move that caused the change, animated if animation is on; null to change without animation
+     */
+    public void syncWithModel(Move lastMove) {
+        int[] current = new int[64];
+        readModel(current);
+        if (animated && lastMove != null && isShowing()) {
+            int from = lastMove.from();
+            int to = lastMove.to();
+            if (painted[from] != EMPTY && current[to] != EMPTY) {
+                startAnimation(from, to, current[to], painted[to]);
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            if (current[square] != painted[square]) {
+                painted[square] = current[square];
+                repaintSquare(square);
+            }
+        }
+    }
+
+    /**
+     * Marks the selected piece and the squares it can move to.
+     * @param square selected square, null to clear the selection
+     * @param targets squares to mark, may be empty
+     */
+    public void setSelection(Square square, Collection<Square> targets) {
+        if (selected != EMPTY) {
+            repaintSquare(selected);
+        }
+        for (int i = 0; i < 64; i++) {
+            if (highlighted[i]) {
+                highlighted[i] = false;
+                repaintSquare(i);
+            }
+        }
+        selected = square == null ? EMPTY : index(square);
+        if (selected != EMPTY) {
+            repaintSquare(selected);
+        }
+        for (Square target : targets) {
+            highlighted[index(target)] = true;
+            repaintSquare(index(target));
+        }
+    }
+
+    public void setSquareListener(SquareListener listener) {
+        this.listener = listener;
+    }
+
+    public void setAnimated(boolean animated) {
+        this.animated = animated;
+        if (!animated) {
+            stopAnimation();
+        }
+    }
+
+    public boolean isAnimated() {
+        return animated;
+    }
+
+    /**
+     * @return bounds of a square in this component's coordinates
+     */
+    public Rectangle getSquareBounds(int x, int y) {
+        int size = squareSize();
+        return new Rectangle(originX() + y * size, originY() + x * size, size, size);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        int size = squareSize();
+        if (size != cachedSize) {
+            rebuildCaches(size);
+        }
+        g.setColor(getBackground() != null ? getBackground() : Color.GRAY);
+        Rectangle clip = g.getClipBounds() != null ? g.getClipBounds() : new Rectangle(getSize());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        g.drawImage(background, originX(), originY(), null);
+
+        //only squares inside the dirty region are drawn
+        for (int square = 0; square < 64; square++) {
+            Rectangle bounds = getSquareBounds(square >>> 3, square & 7);
+            if (!bounds.intersects(clip)) {
+                continue;
+            }
+            if (square == selected || highlighted[square]) {
+                g.setColor(square == selected ? SELECTED : TARGET);
+                g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+            }
+            //the moving piece is drawn on its way, its destination keeps the old content until it arrives
+            int code = square == animationTo ? hiddenCode : painted[square];
+            paintPiece(g, code, bounds.x, bounds.y, size);
+        }
+        if (spriteBounds != null && spriteBounds.intersects(clip)) {
+            paintPiece(g, animationCode, spriteBounds.x, spriteBounds.y, size);
+        }
+    }
+
+    private void paintPiece(Graphics g, int code, int px, int py, int size) {
+        if (code == EMPTY) {
+            return;
+        }
+        Image sprite = sprites.getScaledImage(code, size);
+        if (sprite != null) {
+            g.drawImage(sprite, px, py, null);
+            return;
+        }
+        //no image for this piece: its letter in the owner's color
+        g.setColor(code % 2 == Player.WHITE_CODE ? Color.WHITE : Color.BLACK);
+        g.setFont(getFont() != null ? getFont().deriveFont(Font.BOLD, size * 0.6f) : new Font(Font.SANS_SERIF, Font.BOLD, size / 2));
+        FontMetrics metrics = g.getFontMetrics();
+        String letter = String.valueOf(PieceType.fromCode(code / 2).getLetter());
+        g.drawString(letter, px + (size - metrics.stringWidth(letter)) / 2,
+                py + (size - metrics.getHeight()) / 2 + metrics.getAscent());
+    }
+
+    private void rebuildCaches(int size) {
+        cachedSize = size;
+        background = SpriteAtlas.createCompatibleImage(8 * size, 8 * size, Transparency.OPAQUE);
+        Graphics2D g = (Graphics2D) background.getGraphics();
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                g.setColor((x + y) % 2 == 0 ? LIGHT : DARK);
+                g.fillRect(y * size, x * size, size, size);
+            }
+        }
+        g.dispose();
+    }
+
+    private void readModel(int[] codes) {
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                Piece piece = board.getSquare(x, y).getPiece();
+                codes[x * 8 + y] = piece == null ? EMPTY : SpriteAtlas.codeOf(piece);
+            }
+        }
+    }
+
+    private void startAnimation(int from, int to, int code, int hidden) {
+        stopAnimation();
+        animationFrom = from;
+        animationTo = to;
+        animationCode = code;
+        hiddenCode = hidden;
+        animationStart = System.nanoTime();
+        spriteBounds = getSquareBounds(from >>> 3, from & 7);
+        repaintSquare(from);
+        animationTimer.start();
+    }
+
+    private void animationFrame() {
+        double t = Math.min(1.0, (System.nanoTime() - animationStart) / (ANIMATION_MILLIS * 1e6));
+        double eased = 1 - (1 - t) * (1 - t) * (1 - t);//ease out
+        Rectangle from = getSquareBounds(animationFrom >>> 3, animationFrom & 7);
+        Rectangle to = getSquareBounds(animationTo >>> 3, animationTo & 7);
+        Rectangle previous = spriteBounds;
+        spriteBounds = new Rectangle((int) Math.round(from.x + (to.x - from.x) * eased),
+                (int) Math.round(from.y + (to.y - from.y) * eased), from.width, from.height);
+        repaint(previous.union(spriteBounds));
+        if (t >= 1.0) {
+            stopAnimation();
+        }
+    }
+
+    private void stopAnimation() {
+        animationTimer.stop();
+        if (animationTo != EMPTY) {
+            repaintSquare(animationTo);
+            repaintSquare(animationFrom);
+        }
+        if (spriteBounds != null) {
+            repaint(spriteBounds);
+        }
+        animationFrom = EMPTY;
+        animationTo = EMPTY;
+        spriteBounds = null;
+    }
+
+    private void repaintSquare(int square) {
+        repaint(getSquareBounds(square >>> 3, square & 7));
+    }
+
+    private int squareAt(Point point) {
+        int size = squareSize();
+        int column = Math.floorDiv(point.x - originX(), size);
+        int row = Math.floorDiv(point.y - originY(), size);
+        return row < 0 || row > 7 || column < 0 || column > 7 ? EMPTY : row * 8 + column;
+    }
+
+    private static int index(Square square) {
+        return square.getX() * 8 + square.getY();
+    }
+
+    private int squareSize() {
+        return Math.max(MIN_SQUARE_SIZE, Math.min(getWidth(), getHeight()) / 8);
+    }
+
+    //the board is centred in the component
+    private int originX() {
+        return Math.max(0, (getWidth() - 8 * squareSize()) / 2);
+    }
+
+    private int originY() {
+        return Math.max(0, (getHeight() - 8 * squareSize()) / 2);
+    }
+}
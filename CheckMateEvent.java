@@ -0,0 +1,25 @@
+package chess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a checkmate test by {@link Board#checkMate(Game, Piece, King)}.
+ */
+@Name("chess.CheckMate")
+@Label("Checkmate Test")
+@Category({"Chess", "Model"})
+@Description("Test whether a king is checkmated")
+@StackTrace(false)
+public class CheckMateEvent extends Event {
+
+    @Label("King Color")
+    public String color;
+
+    @Label("Checkmate")
+    public boolean checkMate;
+}
@@ -0,0 +1,137 @@
+package chess;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Two-player chess clock with a base time and a per-move (Fischer) increment.
+ * Time is measured with a monotonic nanosecond source, so wall clock changes never affect a game.
+ * Only the side to move has a running clock; pressing it charges the elapsed time, adds the increment
+ * and starts the opponent's clock.
+ */
+public class ChessClock {
+
+    private final long baseNanos;
+    private final long incrementNanos;
+    private final LongSupplier nanoTime;
+
+    private final long[] remaining = new long[2];//by color code, excluding the running period
+    private int running = -1;//color code of the running clock, -1 when stopped
+    private long runningSince;
+
+    public ChessClock(long baseNanos, long incrementNanos) {
+        this(baseNanos, incrementNanos, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime monotonic time source, System::nanoTime outside of tests
+     */
+    public ChessClock(long baseNanos, long incrementNanos, LongSupplier nanoTime) {
+        this.baseNanos = baseNanos;
+        this.incrementNanos = incrementNanos;
+        this.nanoTime = nanoTime;
+        reset();
+    }
+
+    /**
+     * @param text time control "minutes+seconds", e.g. "5+3", or just "minutes"
+     * @return clock for that time control
+     * @throws IllegalArgumentException if the text is not a time control
+     */
+    public static ChessClock parse(String text) {
+        String[] parts = text.trim().split("\\+");
+        try {
+            double minutes = Double.parseDouble(parts[0]);
+            double seconds = parts.length > 1 ? Double.parseDouble(parts[1]) : 0;
+            if (parts.length > 2 || minutes <= 0 || seconds < 0) {
+                throw new IllegalArgumentException("Bad time control: " + text);
+            }
+            return new ChessClock((long) (minutes * 60e9), (long) (seconds * 1e9));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad time control: " + text, e);
+        }
+    }
+
+    public synchronized void reset() {
+        remaining[Player.WHITE_CODE] = baseNanos;
+        remaining[Player.BLACK_CODE] = baseNanos;
+        running = -1;
+    }
+
+    /**
+     * Starts (or resumes) the clock of a side without adding any increment.
+     */
+    public synchronized void start(String color) {
+        stop();
+        running = Player.codeOf(color);
+        runningSince = nanoTime.getAsLong();
+    }
+
+    /**
+     * Ends the running side's move: charges its time, adds the increment and starts the other clock.
+     * Does nothing once the running side has run out of time.
+     */
+    public synchronized void press() {
+        if (running < 0 || isFlagged(Player.colorOf(running))) {
+            return;
+        }
+        int mover = running;
+        stop();
+        remaining[mover] += incrementNanos;
+        running = 1 - mover;
+        runningSince = nanoTime.getAsLong();
+    }
+
+    /**
+     * Stops the running clock, charging the elapsed time.
+     */
+    public synchronized void stop() {
+        if (running >= 0) {
+            remaining[running] -= nanoTime.getAsLong() - runningSince;
+            running = -1;
+        }
+    }
+
+    /**
+     * @return time left for a side right now, negative once its flag has fallen
+     */
+    public synchronized long getRemainingNanos(String color) {
+        int code = Player.codeOf(color);
+        long left = remaining[code];
+        if (code == running) {
+            left -= nanoTime.getAsLong() - runningSince;
+        }
+        return left;
+    }
+
+    public boolean isFlagged(String color) {
+        return getRemainingNanos(color) <= 0;
+    }
+
+    /**
+     * @return color whose clock is running, null when stopped
+     */
+    public synchronized String getRunning() {
+        return running < 0 ? null : Player.colorOf(running);
+    }
+
+    public long getBaseNanos() {
+        return baseNanos;
+    }
+
+    public long getIncrementNanos() {
+        return incrementNanos;
+    }
+
+    /**
+     * @return time left as m:ss, or s.t below ten seconds
+     */
+    public String format(String color) {
+        long nanos = Math.max(0, getRemainingNanos(color));
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+        if (seconds < 10) {
+            return String.format("%d.%d", seconds, TimeUnit.NANOSECONDS.toMillis(nanos) % 1000 / 100);
+        }
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+}
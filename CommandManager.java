@@ -32,7 +32,8 @@ public class CommandManager {
         String movedPieceName = command.getMovedPiece().getName();
         String killedPieceName = (command.getKilledPiece() != null) ? command.getKilledPiece().getName() : "blank";
 
-        System.out.printf("Moved: %s (%d, %d) %s (%d, %d)%n", movedPieceName, startX, startY, killedPieceName, destX, destY);
+        if (Debug.ENABLED) Debug.println(String.format("Moved: %s (%d, %d) %s (%d, %d)", movedPieceName, startX, startY,
+                killedPieceName, destX, destY));
     }
 
     /**
@@ -65,6 +66,8 @@ public class CommandManager {
 
         restoreGameState(undoCommand);
         togglePlayerTurn(viewController);
+        viewController.getGame().undoPosition();
+        restartClock(viewController.getGame());
         adjustPawnFirstStep(viewController, undoCommand);
 
         return true;
@@ -86,6 +89,16 @@ public class CommandManager {
         undoCommand.getDestButton().setIcon(undoCommand.getDestImage());
     }
 
+    /**
+     * Hands the clock back to the side whose move was taken back, without an increment.
+     * @param game The current game instance.
+     */
+    private static void restartClock(Game game) {
+        if (game.getClock() != null) {
+            game.getClock().start(game.getPlayerTurn());
+        }
+    }
+
     private static void togglePlayerTurn(ViewController viewController) {
         String currentTurn = viewController.getGame().getPlayerTurn();
         viewController.getGame().setPlayerTurn(currentTurn == Player.BLACK ? Player.WHITE : Player.BLACK);
@@ -134,7 +147,9 @@ public class CommandManager {
         for (int i = 0; i < 8; i++) {
             for (int j = 0; j < 8; j++) {
                 if (game.getBoard().getSquare(i, j).hasChess()) {
-                    chessBoardPanel.setImageIcon(chessBoardPanel.pieces[j][i], chessBoardPanel.getPieceImageIcon(i, j));
+                    //shared icons from the atlas, nothing is loaded or scaled here
+                    chessBoardPanel.setImageIcon(chessBoardPanel.pieces[j][i],
+                            game.getVc().getSprites().getIcon(game.getBoard().getSquare(i, j).getPiece()));
                 } else {
                     chessBoardPanel.pieces[j][i].setIcon(null);
                 }
@@ -0,0 +1,24 @@
+package chess;
+
+import java.util.logging.Level;
+
+/**
+ * Gate for debugging output of the rules code.
+ * ENABLED is a compile-time style constant read once at startup (-Dchess.debug=true), so call sites written as
+ * {@code if (Debug.ENABLED) Debug.println(...)} are removed by the JIT, message building included, when it is off.
+ */
+public class Debug {
+
+    public static final boolean ENABLED = Boolean.getBoolean("chess.debug");
+
+    private Debug() {
+    }
+
+    public static void println(Object message) {
+        System.out.println(message);
+    }
+
+    public static void log(String message) {
+        Main.LOGGER.log(Level.INFO, message);
+    }
+}
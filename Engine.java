@@ -0,0 +1,103 @@
+package chess;
+
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Computer player: answers from the opening book while the game is in book, otherwise searches.
+ * The default engine also uses the opening book and tablebases found in the working directory, and the
+ * neural network evaluation when -Dchess.nnue names a network file.
+ */
+public class Engine {
+
+    private final Search search;
+    private final OpeningBook book;
+    private final Random random = new Random();
+
+    public Engine() {
+        this(createSearch(), OpeningBook.openDefault());
+        search.setTablebase(Tablebase.openDefault());
+    }
+
+    //evaluates with the network given by -Dchess.nnue, if any
+    private static Search createSearch() {
+        NnueEvaluator network = NnueEvaluator.openDefault();
+        return network == null ? new Search() : new Search(network, new TranspositionTable());
+    }
+
+    /**
+     * @param search search used once the game leaves the book, null for subclasses that search otherwise
+     * @param book opening book, may be null
+     */
+    public Engine(Search search, OpeningBook book) {
+        this.search = search;
+        this.book = book;
+    }
+
+    /**
+     * @param game game model, the side to move is game.getPlayerTurn()
+     * @param depth search depth in plies when the position is not in the book
+     * @return the chosen move, depth 0 for a book move, no move once the game is over or drawn
+     */
+    public SearchResult think(Game game, int depth) {
+        SearchResult answer = answerWithoutSearch(game);
+        return answer != null ? answer : search.search(game, depth);
+    }
+
+    /**
+     * Timed play: answers from the book, otherwise searches within the time manager's limits.
+     * @param game game model, the side to move is game.getPlayerTurn()
+     * @param timeManager time manager, started for this move
+     * @return the chosen move, no move once the game is over
+     */
+    public SearchResult think(Game game, TimeManager timeManager) {
+        SearchResult answer = answerWithoutSearch(game);
+        if (answer != null) {
+            return answer;
+        }
+        return search.search(game, timeManager, null);
+    }
+
+    /**
+     * Searches on the opponent's time, without the book: the time manager is pondering until a ponder hit.
+     * @param game game model with the expected reply played
+     * @param timeManager time manager, started pondering
+     * @return the chosen move once the search ends
+     */
+    public SearchResult ponder(Game game, TimeManager timeManager) {
+        return search.search(game, timeManager, null);
+    }
+
+    /**
+     * Asks a running search to stop, from any thread.
+     */
+    public void stop() {
+        search.stop();
+    }
+
+    public void clearStop() {
+        search.clearStop();
+    }
+
+    //a finished game or a book move needs no search
+    protected SearchResult answerWithoutSearch(Game game) {
+        if (game.getStatus().isOver()) {
+            return new SearchResult(null, 0, 0, 0, 0, Collections.<Move>emptyList());//decided or drawn, nothing to play
+        }
+        if (book != null) {
+            Move bookMove = book.probe(game, random);
+            if (bookMove != null) {
+                return new SearchResult(bookMove, 0, 0, 0, 0, Collections.singletonList(bookMove));
+            }
+        }
+        return null;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public OpeningBook getBook() {
+        return book;
+    }
+}
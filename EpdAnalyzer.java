@@ -0,0 +1,256 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Headless batch analysis of an EPD or FEN file.
+ * Positions are read one line at a time and handed to a pool of workers, each with its own engine, through a
+ * bounded queue, so memory stays flat however large the file is. Results are appended to the output file as
+ * they complete, one tab separated line per position:
+ * <pre>line  id  bestmove  score  depth  nodes  millis</pre>
+ * where line is the 1-based line number in the input, id the EPD "id" operation (or "-") and bestmove is in
+ * coordinate notation. A position that can not be read gets "error" and the exception with its message instead.
+ * The output doubles as the checkpoint: it is forced to disk every {@link #CHECKPOINT_INTERVAL} results, and
+ * a rerun with the same files skips the lines already in it, dropping a last line cut short by the interruption.
+ *
+ * Usage: EpdAnalyzer [-depth N | -movetime MS] [-threads N] input.epd output.tsv
+ */
+public class EpdAnalyzer {
+
+    public static final int DEFAULT_DEPTH = 5;
+    public static final int CHECKPOINT_INTERVAL = 64;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final int depth;
+    private final long moveNanos;//0 for a fixed depth search
+    private final int threads;
+
+    //each worker thread keeps its engine, and so its hash table, for all of its positions
+    private final ThreadLocal<Engine> engines = ThreadLocal.withInitial(() -> new Engine(new Search(), null));
+
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private int unforced;
+    private final AtomicInteger analysed = new AtomicInteger();
+
+    /**
+     * @param depth search depth in plies, used when moveNanos is 0
+     * @param moveNanos time per position, 0 to search to the fixed depth
+     * @param threads worker threads
+     */
+    public EpdAnalyzer(int depth, long moveNanos, int threads) {
+        this.depth = depth;
+        this.moveNanos = moveNanos;
+        this.threads = Math.max(1, threads);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int depth = DEFAULT_DEPTH;
+        long moveNanos = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int arg = 0;
+        while (arg + 1 < args.length && args[arg].startsWith("-")) {
+            switch (args[arg]) {
+                case "-depth":
+                    depth = Integer.parseInt(args[arg + 1]);
+                    break;
+                case "-movetime":
+                    moveNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(args[arg + 1]));
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[arg + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[arg]);
+                    return;
+            }
+            arg += 2;
+        }
+        if (args.length - arg != 2) {
+            System.err.println("Usage: EpdAnalyzer [-depth N | -movetime MS] [-threads N] input.epd output.tsv");
+            return;
+        }
+
+        EpdAnalyzer analyzer = new EpdAnalyzer(depth, moveNanos, threads);
+        long start = System.nanoTime();
+        int count = analyzer.run(Paths.get(args[arg]), Paths.get(args[arg + 1]));
+        System.out.printf("Analysed %d positions in %d ms%n", count,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Analyses every position of the input not yet in the output.
+     * @return number of positions analysed by this run
+     */
+    public int run(Path input, Path output) throws IOException, InterruptedException {
+        BitSet done = readCheckpoint(output);
+        if (!done.isEmpty()) {
+            Main.LOGGER.log(Level.INFO, "Resuming, " + done.cardinality() + " positions already analysed");
+        }
+
+        //a full queue makes the reading thread analyse the next position itself, which throttles reading
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+        channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                String record = line.trim();
+                if (record.isEmpty() || record.startsWith("#") || done.get(number)) {
+                    continue;
+                }
+                int lineNumber = number;
+                pool.execute(() -> analyse(lineNumber, record));
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            flush(true);
+            channel.close();
+        }
+        return analysed.get();
+    }
+
+    private void analyse(int lineNumber, String record) {
+        String id = epdOperation(record, "id");
+        String result;
+        try {
+            Game game = Notation.parseFen(record);
+            Engine engine = engines.get();
+            SearchResult best;
+            if (moveNanos > 0) {
+                TimeManager timeManager = new TimeManager();
+                timeManager.startFixed(moveNanos);
+                best = engine.think(game, timeManager);
+            } else {
+                best = engine.think(game, depth);
+            }
+            String move = best.getBestMove() == null ? "-" : Notation.toCoordinate(best.getBestMove());
+            result = move + "\t" + best.getScore() + "\t" + best.getDepth() + "\t" + best.getNodes()
+                    + "\t" + best.getTimeMillis();
+        } catch (RuntimeException e) {
+            result = "error\t" + describe(e);
+        }
+        write(lineNumber + "\t" + (id == null ? "-" : id) + "\t" + result + "\n");
+        analysed.incrementAndGet();
+    }
+
+    private synchronized void write(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (bytes.length > buffer.remaining()) {
+                flush(false);
+            }
+            if (bytes.length > buffer.capacity()) {
+                channel.write(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+            if (++unforced >= CHECKPOINT_INTERVAL) {
+                flush(true);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not write results", e);
+        }
+    }
+
+    /**
+     * @param force also force the written results to disk, which makes them a checkpoint
+     */
+    private synchronized void flush(boolean force) throws IOException {
+        FileChannels.flush(channel, buffer);
+        if (force) {
+            channel.force(false);
+            unforced = 0;
+        }
+    }
+
+    //exception class and message on one field: the message may be null or hold tabs and line breaks
+    private static String describe(RuntimeException e) {
+        String message = e.getMessage();
+        String name = e.getClass().getSimpleName();
+        return message == null ? name : name + ": " + message.replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Reads the line numbers already in the output and cuts off a last line left incomplete by an interruption.
+     * The tail is found by reading backwards from the end and the lines are streamed, so a large output is never
+     * held in memory.
+     */
+    private static BitSet readCheckpoint(Path output) throws IOException {
+        BitSet done = new BitSet();
+        if (!Files.exists(output)) {
+            return done;
+        }
+        truncateIncompleteLine(output);
+        try (BufferedReader reader = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    try {
+                        done.set(Integer.parseInt(line.substring(0, tab)));
+                    } catch (NumberFormatException e) {
+                        //not a result line
+                    }
+                }
+            }
+        }
+        return done;
+    }
+
+    private static void truncateIncompleteLine(Path output) throws IOException {
+        try (FileChannel file = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer block = ByteBuffer.allocate(4096);
+            long end = file.size();
+            while (end > 0) {
+                long start = Math.max(0, end - block.capacity());
+                block.clear().limit((int) (end - start));
+                while (block.hasRemaining() && file.read(block, start + block.position()) >= 0) {
+                    //read the whole block
+                }
+                for (int i = block.position() - 1; i >= 0; i--) {
+                    if (block.get(i) == '\n') {
+                        if (start + i + 1 < file.size()) {
+                            file.truncate(start + i + 1);
+                        }
+                        return;
+                    }
+                }
+                end = start;
+            }
+            file.truncate(0);//not a single complete line
+        }
+    }
+
+    /**
+     * @return value of an EPD operation such as id "BK.01", without quotes; null if the record has none
+     */
+    static String epdOperation(String record, String opcode) {
+        //operations follow the position fields as "opcode operand;", which no position field looks like
+        int at = record.indexOf(" " + opcode + " ");
+        if (at < 0) {
+            return null;
+        }
+        int start = at + opcode.length() + 2;
+        int end = record.indexOf(';', start);
+        return record.substring(start, end < 0 ? record.length() : end).trim().replace("\"", "");
+    }
+}
@@ -0,0 +1,97 @@
+package chess;
+
+/**
+ * Static evaluation of a board position: material plus cached pawn structure.
+ * Scores are in centipawns from white's point of view.
+ */
+public class Evaluator {
+
+    //piece values indexed by PieceType code
+    public static final int[] PIECE_VALUES = {
+            100,    //pawn
+            320,    //knight
+            330,    //bishop
+            500,    //rook
+            900,    //queen
+            20000,  //king
+            450,    //vampire, knight jumps plus converting its victims
+            350     //witch, only jumps but turns into a queen after a capture
+    };
+
+    private final PawnHashTable pawnTable;
+
+    public Evaluator() {
+        this(new PawnHashTable());
+    }
+
+    public Evaluator(PawnHashTable pawnTable) {
+        this.pawnTable = pawnTable;
+    }
+
+    public static int valueOf(Piece piece) {
+        return PIECE_VALUES[piece.getType().getCode()];
+    }
+
+    /**
+     * @param board board model
+     * @return evaluation of the position, positive is good for white
+     */
+    public int evaluate(Board board) {
+        int score = 0;
+        long pawnKey = 0L;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Piece piece = board.getSquare(i, j).getPiece();
+                if (piece == null) {
+                    continue;
+                }
+                int value = valueOf(piece);
+                if (piece.getColorCode() == Player.WHITE_CODE) {
+                    score += value;
+                } else {
+                    score -= value;
+                }
+                if (piece.getType() == PieceType.PAWN) {
+                    pawnKey ^= Zobrist.pieceKey(piece, i, j);
+                }
+            }
+        }
+        return score + pawnTable.probe(board, pawnKey);
+    }
+
+    /**
+     * @param board board model
+     * @param color color of the side to move
+     * @return evaluation from the side to move's point of view
+     */
+    public int evaluate(Board board, String color) {
+        return evaluate(board, Player.codeOf(color));
+    }
+
+    /**
+     * @param board board model
+     * @param color color code of the side to move
+     * @return evaluation from the side to move's point of view
+     */
+    public int evaluate(Board board, int color) {
+        int score = evaluate(board);
+        return color == Player.WHITE_CODE ? score : -score;
+    }
+
+    /**
+     * Called before a search plays moves on a board, for evaluations that follow the moves incrementally.
+     * This one evaluates every position from scratch and keeps no state.
+     */
+    public void attach(Board board) {
+    }
+
+    /**
+     * Called when the search is done with the board.
+     */
+    public void detach() {
+    }
+
+    public PawnHashTable getPawnTable() {
+        return pawnTable;
+    }
+}
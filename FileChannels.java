@@ -0,0 +1,25 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered writing to file channels, shared by the book, explorer, database, tablebase and data generators.
+ */
+class FileChannels {
+
+    private FileChannels() {
+    }
+
+    /**
+     * Writes what was put into the buffer at the channel's position and clears the buffer for the next batch.
+     */
+    static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
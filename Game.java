@@ -2,53 +2,57 @@ package chess;
 
 import controllers.ViewController;
 
-import static chess.Player.*;
-
 
 public class Game {
 
     private Player player1, player2;
     private Board board;
     private String playerTurn; // Player.WHITE, Player.Black
+    private int turnCode; // Player.WHITE_CODE, Player.BLACK_CODE
 
     private ViewController vc;
 
+    private final PositionHistory history = new PositionHistory();
+    private ChessClock clock;//null for untimed games
+
+    private GameStatus status;//cached for statusVersion of the board and the history size
+    private int statusVersion;
+    private int statusHistorySize;
+
     public Game(Player player1, Player player2, Board board){
         this.board = board;
         this.player1 = player1;
         this.player2 = player2;
         setPlayerTurn(Player.BLACK);//black is first to act
+        resetHistory();
     }
 
     //start game
     public static Game newGame(){
-        return new Game(new Player(Player.WHITE), new Player(Player.BLACK), new Board(Board.START_BOARD));
+        Player white = new Player(Player.WHITE);
+        Player black = new Player(Player.BLACK);
+        return new Game(white, black, new Board(Board.START_BOARD, white, black));
     }
     //custom game
     public static Game customGame(){
-        return new Game(new Player(Player.WHITE), new Player(Player.BLACK), new Board(Board.CUSTOM_BOARD));
+        Player white = new Player(Player.WHITE);
+        Player black = new Player(Player.BLACK);
+        return new Game(white, black, new Board(Board.CUSTOM_BOARD, white, black));
     }
 
+    /**
+     * The board tracks its kings, so this is a constant time query.
+     * @return color of the winner, null if both kings are still on the board and no flag has fallen
+     */
     public static String gameOver(Game game){
-        King whiteKing = null;
-        King blackKing = null;
-        for(int i = 0; i < 8; i++){
-            for(int j = 0; j < 8;j++){
-                Piece piece = game.board.getSquare(i,j).getPiece();
-                if(piece instanceof King){
-                    if(piece.getPlayer().getColor().equals(Player.WHITE)){
-                        whiteKing = (King) piece;
-                    }
-                    else {
-                        blackKing = (King) piece;
-                    }
-                }
-            }
+        String flagged = game.getFlaggedPlayer();
+        if(flagged != null){
+            return Player.opposite(flagged);//ran out of time
         }
-        if(blackKing == null){
+        if(game.board.getKing(Player.BLACK) == null){
             return  Player.WHITE;//black player lose
         }
-        else if(whiteKing == null){
+        else if(game.board.getKing(Player.WHITE) == null){
             return Player.BLACK;//white player lose
         }
         else{
@@ -57,6 +61,112 @@ public class Game {
 
     }
 
+    /**
+     * Captured kings are known immediately; the check test is computed once per position and then cached.
+     * @return status of the current position
+     */
+    public GameStatus getStatus(){
+        if(getFlaggedPlayer() != null){
+            return GameStatus.TIME_FORFEIT;//depends on the time, never cached
+        }
+        if(statusVersion != board.getVersion() || statusHistorySize != history.size() || status == null){
+            if(gameOver(this) != null){
+                status = GameStatus.KING_CAPTURED;
+            }
+            else if(history.isThreefoldRepetition()){
+                status = GameStatus.DRAW_REPETITION;
+            }
+            else if(history.isFiftyMoveRule()){
+                status = GameStatus.DRAW_FIFTY_MOVES;
+            }
+            else if(board.hasInsufficientMaterial()){
+                status = GameStatus.DRAW_INSUFFICIENT_MATERIAL;
+            }
+            else{
+                status = board.checkKing(this) != null ? GameStatus.CHECK : GameStatus.ONGOING;
+            }
+            statusVersion = board.getVersion();
+            statusHistorySize = history.size();
+        }
+        return status;
+    }
+
+    /**
+     * Plays a move without the GUI: updates the board, the side to move and the position history.
+     * @param move move of the side to move, its undo information is filled in
+     */
+    public void playMove(Move move){
+        board.makeMove(move);
+        setPlayerTurn(Player.opposite(playerTurn));
+        recordPosition(move.isIrreversible());
+        if(clock != null){
+            clock.press();
+        }
+    }
+
+    /**
+     * Takes back the last move played by {@link #playMove(Move)}.
+     */
+    public void undoMove(Move move){
+        history.pop();
+        board.unmakeMove(move);
+        setPlayerTurn(Player.opposite(playerTurn));
+    }
+
+    /**
+     * Adds the current position to the history, called after every move and turn change.
+     * @param irreversible true after a capture (vampire conversions and witch promotions included) or a pawn move
+     */
+    public void recordPosition(boolean irreversible){
+        history.push(Zobrist.hash(board, playerTurn), irreversible);
+    }
+
+    /**
+     * Forgets the history when a move is taken back.
+     */
+    public void undoPosition(){
+        history.pop();
+    }
+
+    /**
+     * Restarts the history at the current position, e.g. after setting up a board by hand.
+     */
+    public void resetHistory(){
+        history.clear();
+        recordPosition(true);
+    }
+
+    /**
+     * @return color of the side whose clock ran out, null if none did or the game is untimed
+     */
+    public String getFlaggedPlayer(){
+        if(clock == null){
+            return null;
+        }
+        if(clock.isFlagged(Player.BLACK)){
+            return Player.BLACK;
+        }
+        return clock.isFlagged(Player.WHITE) ? Player.WHITE : null;
+    }
+
+    public ChessClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @param clock clock of a timed game, started for the side to move; null for an untimed game
+     */
+    public void setClock(ChessClock clock) {
+        this.clock = clock;
+        if(clock != null){
+            clock.start(playerTurn);
+        }
+    }
+
+    public PositionHistory getHistory() {
+        return history;
+    }
+
 
     public Board getBoard() {
         return board;
@@ -76,6 +186,8 @@ public class Game {
 
     public void setBoard(Board board) {
         this.board = board;
+        this.status = null;
+        resetHistory();
     }
 
     public void setPlayer1(Player player1) {
@@ -86,30 +198,22 @@ public class Game {
         return playerTurn;
     }
 
+    public int getTurnCode() {
+        return turnCode;
+    }
+
     public void setPlayerTurn(String playerTurn) {
         this.playerTurn = playerTurn;
+        this.turnCode = Player.codeOf(playerTurn);
     }
 
     public Game deepCopyGame(){
-        Game game;
-        Player player1 = getPlayer1();
-        Player player2 = getPlayer2();
-
-        Board board = new Board(Board.BLANK_BOARD);
-        for(int i = 0; i < 8; i++){
-            for(int j = 0; j < 8; j++){
-                if(this.getBoard().getSquare(i,j).getPiece()!=null){
-                    board.getSquare(i,j).setPiece(this.getBoard().getSquare(i,j).getPiece());
-
-                }
-                else{
-                    board.getSquare(i,j).setNullPiece();
-                }
-            }
-
-        }
-        game = new Game(player1,player2,board);
+        //copy the pieces too, moving the same piece objects onto another board would move them off this one
+        Player white = new Player(Player.WHITE);
+        Player black = new Player(Player.BLACK);
+        Game game = new Game(white, black, getBoard().copy(white, black));
         game.setPlayerTurn(this.getPlayerTurn());
+        game.history.copyFrom(history);
         return game;
     }
 
@@ -122,11 +226,12 @@ public class Game {
     }
 
     public Player getOpponent(Player currentPlayer) {
-        // Check the color of the current player to determine the opponent
-        if (currentPlayer.getColor().equals(WHITE)) {
-            return new Player(BLACK); // Return a new Player instance for the black player
-        } else {
-            return new Player(WHITE); // Return a new Player instance for the white player
+        // The other player of this game, or a shared flyweight if the player is not one of them
+        if (currentPlayer == player1) {
+            return player2;
+        } else if (currentPlayer == player2) {
+            return player1;
         }
+        return Player.of(1 - currentPlayer.getCode());
     }
 }
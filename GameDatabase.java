@@ -0,0 +1,533 @@
+package chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read side of a game database built by {@link GameDatabaseBuilder}: finds the games that reached a position,
+ * and what was played from it, through an inverted index from position hash to (game, ply, move, result).
+ *
+ * The index file {@link #INDEX_FILE} is a sorted run of postings cut into blocks of {@link #BLOCK_POSTINGS},
+ * each block compressed with variable-length deltas. A directory of (first hash, offset) per block is binary
+ * searched to find the first block of a position and only the blocks holding its postings are decoded.
+ * Both are memory mapped, the blocks in segments of at most {@link #SEGMENT_BYTES} that never cut a block, so
+ * the index may grow past the 2 GB of a single mapping. Games are read from {@link #GAMES_FILE} on demand.
+ *
+ * Index layout (big endian): int magic, int version, long postings, int blocks, int postings per block, then
+ * the directory of 16-byte entries (long first hash, long block offset in the file) and the blocks. A block
+ * starts at its first hash and holds per posting: unsigned varint hash delta to the previous posting, varint
+ * game id (a delta to the previous game id when the hash did not change), varint ply, short move key << 2 | result.
+ *
+ * Games layout (big endian): int magic, int version, long games, long offset of the game table, the games and
+ * the table of long offsets. A game is byte setup (0 start, 1 custom), byte result, short plies, the white and
+ * the black player names as a byte length and UTF-8, and a short {@link Move#key()} per ply.
+ *
+ * Usage: GameDatabase directory [fen]
+ */
+public class GameDatabase implements Closeable {
+
+    public static final String INDEX_FILE = "positions.idx";
+    public static final String GAMES_FILE = "games.bin";
+    public static final int INDEX_MAGIC = 0x43474931;//"CGI1"
+    public static final int GAMES_MAGIC = 0x43474431;//"CGD1"
+    public static final int VERSION = 1;
+    public static final int INDEX_HEADER_BYTES = 24;
+    public static final int GAMES_HEADER_BYTES = 24;
+    public static final int DIRECTORY_ENTRY_BYTES = 16;
+    public static final int BLOCK_POSTINGS = 128;
+    public static final long SEGMENT_BYTES = 1L << 30;
+
+    //result codes, in the PGN sense of white and black
+    public static final int UNKNOWN = 0;
+    public static final int WHITE_WINS = 1;
+    public static final int BLACK_WINS = 2;
+    public static final int DRAW = 3;
+    private static final String[] RESULTS = {PgnReader.UNKNOWN, PgnReader.WHITE_WINS, PgnReader.BLACK_WINS, PgnReader.DRAW};
+
+    /**
+     * A game reaching a position.
+     */
+    public static class Hit {
+        private final int gameId;
+        private final int ply;
+        private final Move move;
+        private final int result;
+
+        public Hit(int gameId, int ply, Move move, int result) {
+            this.gameId = gameId;
+            this.ply = ply;
+            this.move = move;
+            this.result = result;
+        }
+
+        public int getGameId() {
+            return gameId;
+        }
+
+        /**
+         * @return number of moves played before the position
+         */
+        public int getPly() {
+            return ply;
+        }
+
+        /**
+         * @return move the game played from the position, null if the game ended there
+         */
+        public Move getMove() {
+            return move;
+        }
+
+        public int getResult() {
+            return result;
+        }
+    }
+
+    /**
+     * How often a move was played from a position and how those games ended.
+     */
+    public static class MoveStats {
+        private final Move move;
+        private int games;
+        private int whiteWins;
+        private int draws;
+        private int blackWins;
+
+        public MoveStats(Move move) {
+            this.move = move;
+        }
+
+        public MoveStats(Move move, int games, int whiteWins, int draws, int blackWins) {
+            this.move = move;
+            this.games = games;
+            this.whiteWins = whiteWins;
+            this.draws = draws;
+            this.blackWins = blackWins;
+        }
+
+        void merge(MoveStats other) {
+            games += other.games;
+            whiteWins += other.whiteWins;
+            draws += other.draws;
+            blackWins += other.blackWins;
+        }
+
+        void add(int result) {
+            games++;
+            if (result == WHITE_WINS) {
+                whiteWins++;
+            } else if (result == BLACK_WINS) {
+                blackWins++;
+            } else if (result == DRAW) {
+                draws++;
+            }
+        }
+
+        /**
+         * @return the move, null for games that ended in the position
+         */
+        public Move getMove() {
+            return move;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getWhiteWins() {
+            return whiteWins;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        public int getBlackWins() {
+            return blackWins;
+        }
+    }
+
+    /**
+     * A stored game.
+     */
+    public static class GameRecord {
+        private final int id;
+        private final String setup;
+        private final int result;
+        private final String white;
+        private final String black;
+        private final List<Move> moves;
+
+        public GameRecord(int id, String setup, int result, String white, String black, List<Move> moves) {
+            this.id = id;
+            this.setup = setup;
+            this.result = result;
+            this.white = white;
+            this.black = black;
+            this.moves = moves;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return Board.START_BOARD or Board.CUSTOM_BOARD
+         */
+        public String getSetup() {
+            return setup;
+        }
+
+        public int getResult() {
+            return result;
+        }
+
+        public String getWhite() {
+            return white;
+        }
+
+        public String getBlack() {
+            return black;
+        }
+
+        public List<Move> getMoves() {
+            return moves;
+        }
+    }
+
+    //receives the postings of one position in (game, ply) order
+    private interface PostingVisitor {
+        boolean visit(int gameId, int ply, int move, int result);//false to stop
+    }
+
+    private final FileChannel games;
+    private final int gameCount;
+    private final long tableOffset;//the games end there
+    private final MappedByteBuffer gameTable;
+
+    private final long postings;
+    private final int blocks;
+    private final MappedByteBuffer directory;
+    private final MappedByteBuffer[] segments;
+    private final long[] segmentStarts;
+    private final int[] blockSegments;
+
+    private GameDatabase(Path directoryPath) throws IOException {
+        Path indexPath = directoryPath.resolve(INDEX_FILE);
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+            if (size < INDEX_HEADER_BYTES || channel.read(header, 0) != INDEX_HEADER_BYTES
+                    || header.getInt(0) != INDEX_MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a position index: " + indexPath);
+            }
+            postings = header.getLong(8);
+            blocks = header.getInt(16);
+            long directoryBytes = (long) blocks * DIRECTORY_ENTRY_BYTES;
+            if (blocks < 0 || header.getInt(20) != BLOCK_POSTINGS || INDEX_HEADER_BYTES + directoryBytes > size
+                    || directoryBytes > Integer.MAX_VALUE) {
+                throw new IOException("Bad position index: " + indexPath);
+            }
+            //the mappings stay valid after the channel is closed
+            directory = channel.map(FileChannel.MapMode.READ_ONLY, INDEX_HEADER_BYTES, directoryBytes);
+            directory.order(ByteOrder.BIG_ENDIAN);
+
+            //cut the blocks into segments, each starting at a block
+            List<MappedByteBuffer> mapped = new ArrayList<>();
+            List<Long> starts = new ArrayList<>();
+            blockSegments = new int[blocks];
+            int block = 0;
+            while (block < blocks) {
+                long start = blockOffset(block);
+                int last = block;
+                while (last + 1 < blocks && blockOffset(last + 1) - start < SEGMENT_BYTES) {
+                    last++;
+                }
+                long end = last + 1 < blocks ? blockOffset(last + 1) : size;
+                if (start < INDEX_HEADER_BYTES + directoryBytes || end > size || end - start > Integer.MAX_VALUE) {
+                    throw new IOException("Bad position index: " + indexPath);
+                }
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                segment.order(ByteOrder.BIG_ENDIAN);
+                for (; block <= last; block++) {
+                    blockSegments[block] = mapped.size();
+                }
+                mapped.add(segment);
+                starts.add(start);
+            }
+            segments = mapped.toArray(new MappedByteBuffer[0]);
+            segmentStarts = new long[starts.size()];
+            for (int i = 0; i < segmentStarts.length; i++) {
+                segmentStarts[i] = starts.get(i);
+            }
+        }
+
+        Path gamesPath = directoryPath.resolve(GAMES_FILE);
+        games = FileChannel.open(gamesPath, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(GAMES_HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+            if (games.read(header, 0) != GAMES_HEADER_BYTES || header.getInt(0) != GAMES_MAGIC
+                    || header.getInt(4) != VERSION) {
+                throw new IOException("Not a game file: " + gamesPath);
+            }
+            long count = header.getLong(8);
+            tableOffset = header.getLong(16);
+            if (count < 0 || count > Integer.MAX_VALUE / 8 || tableOffset + count * 8 > games.size()) {
+                throw new IOException("Truncated game file: " + gamesPath);
+            }
+            gameCount = (int) count;
+            gameTable = games.map(FileChannel.MapMode.READ_ONLY, tableOffset, count * 8);
+            gameTable.order(ByteOrder.BIG_ENDIAN);
+        } catch (IOException e) {
+            games.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a database directory written by {@link GameDatabaseBuilder}.
+     */
+    public static GameDatabase open(Path directory) throws IOException {
+        return new GameDatabase(directory);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: GameDatabase directory [fen]");
+            return;
+        }
+        try (GameDatabase database = open(Paths.get(args[0]))) {
+            Game game = args.length > 1 ? Notation.parseFen(joinFrom(args, 1)) : Game.newGame();
+            long start = System.nanoTime();
+            List<MoveStats> stats = database.stats(game.getBoard(), game.getPlayerTurn());
+            List<Hit> hits = database.find(game.getBoard(), game.getPlayerTurn(), 10);
+            long micros = (System.nanoTime() - start) / 1000;
+
+            int total = 0;
+            for (MoveStats move : stats) {
+                total += move.getGames();
+            }
+            System.out.printf("%d of %d games reach the position, %d postings searched in %d us%n",
+                    total, database.size(), database.postings, micros);
+            System.out.printf("%-6s %8s %8s %8s %8s%n", "move", "games", "1-0", "draw", "0-1");
+            for (MoveStats move : stats) {
+                System.out.printf("%-6s %8d %8d %8d %8d%n",
+                        move.getMove() == null ? "end" : Notation.toCoordinate(move.getMove()),
+                        move.getGames(), move.getWhiteWins(), move.getDraws(), move.getBlackWins());
+            }
+            for (Hit hit : hits) {
+                GameRecord record = database.game(hit.getGameId());
+                System.out.printf("#%d %s - %s %s, ply %d%n", record.getId(), record.getWhite(), record.getBlack(),
+                        resultText(record.getResult()), hit.getPly());
+            }
+        }
+    }
+
+    private static String joinFrom(String[] args, int from) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < args.length; i++) {
+            text.append(i > from ? " " : "").append(args[i]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the PGN result string of a result code
+     */
+    public static String resultText(int result) {
+        return RESULTS[result];
+    }
+
+    /**
+     * @param text PGN result such as "1-0"
+     * @return result code, UNKNOWN for anything that is not a result
+     */
+    public static int resultCode(String text) {
+        for (int code = 0; code < RESULTS.length; code++) {
+            if (RESULTS[code].equals(text)) {
+                return code;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * @return number of games
+     */
+    public int size() {
+        return gameCount;
+    }
+
+    public long getPostings() {
+        return postings;
+    }
+
+    /**
+     * @param board position
+     * @param color side to move
+     * @param limit maximum number of hits
+     * @return the first games, by id, that reached the position, with the ply they reached it at
+     */
+    public List<Hit> find(Board board, String color, int limit) {
+        return find(Zobrist.hash(board, color), limit);
+    }
+
+    /**
+     * @param key position hash as computed by Zobrist.hash
+     */
+    public List<Hit> find(long key, int limit) {
+        List<Hit> hits = new ArrayList<>();
+        if (limit > 0) {
+            scan(key, (gameId, ply, move, result) -> {
+                hits.add(new Hit(gameId, ply, move == 0 ? null : Move.fromKey(move), result));
+                return hits.size() < limit;
+            });
+        }
+        return hits;
+    }
+
+    /**
+     * A game that reached the position twice counts twice.
+     * @param board position
+     * @param color side to move
+     * @return moves played from the position, most played first; a null move counts the games that ended there
+     */
+    public List<MoveStats> stats(Board board, String color) {
+        return stats(Zobrist.hash(board, color));
+    }
+
+    /**
+     * @param key position hash as computed by Zobrist.hash
+     */
+    public List<MoveStats> stats(long key) {
+        Map<Integer, MoveStats> moves = new HashMap<>();
+        scan(key, (gameId, ply, move, result) -> {
+            moves.computeIfAbsent(move, k -> new MoveStats(k == 0 ? null : Move.fromKey(k))).add(result);
+            return true;
+        });
+        List<MoveStats> sorted = new ArrayList<>(moves.values());
+        sorted.sort((a, b) -> Integer.compare(b.getGames(), a.getGames()));
+        return sorted;
+    }
+
+    /**
+     * @param id game id, 0 to size() - 1
+     * @return the stored game
+     */
+    public GameRecord game(int id) throws IOException {
+        if (id < 0 || id >= gameCount) {
+            throw new IllegalArgumentException("No game " + id);
+        }
+        long offset = gameTable.getLong(id * 8);
+        long end = id + 1 < gameCount ? gameTable.getLong((id + 1) * 8) : tableOffset;
+        ByteBuffer in = readFully(offset, (int) (end - offset));
+        String setup = in.get() == 0 ? Board.START_BOARD : Board.CUSTOM_BOARD;
+        int result = in.get();
+        int plies = in.getShort() & 0xFFFF;
+        String white = readName(in);
+        String black = readName(in);
+        List<Move> moves = new ArrayList<>(plies);
+        for (int i = 0; i < plies; i++) {
+            moves.add(Move.fromKey(in.getShort()));
+        }
+        return new GameRecord(id, setup, result, white, black, moves);
+    }
+
+    private static String readName(ByteBuffer in) {
+        byte[] bytes = new byte[in.get() & 0xFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //positional reads are safe from several threads
+    private ByteBuffer readFully(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.BIG_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (games.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Truncated game " + offset);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes the postings of one hash, starting from the last block that begins before it.
+     */
+    private void scan(long key, PostingVisitor visitor) {
+        int block = Math.max(0, lowerBound(key) - 1);
+        for (; block < blocks; block++) {
+            ByteBuffer segment = segments[blockSegments[block]].duplicate();
+            segment.position((int) (blockOffset(block) - segmentStarts[blockSegments[block]]));
+            int count = (int) Math.min(BLOCK_POSTINGS, postings - (long) block * BLOCK_POSTINGS);
+            long hash = directory.getLong(block * DIRECTORY_ENTRY_BYTES);
+            if (hash > key) {
+                return;
+            }
+            int gameId = 0;
+            for (int i = 0; i < count; i++) {
+                long delta = readVarLong(segment);
+                hash += delta;
+                int game = (int) readVarLong(segment);
+                gameId = delta == 0 && i > 0 ? gameId + game : game;
+                int ply = (int) readVarLong(segment);
+                int packed = segment.getShort() & 0xFFFF;
+                if (hash == key) {
+                    if (!visitor.visit(gameId, ply, packed >>> 2, packed & 3)) {
+                        return;
+                    }
+                } else if (hash > key) {
+                    return;
+                }
+            }
+        }
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private long blockOffset(int block) {
+        return directory.getLong(block * DIRECTORY_ENTRY_BYTES + 8);
+    }
+
+    //index of the first block whose first hash is >= key
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = blocks;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (directory.getLong(mid * DIRECTORY_ENTRY_BYTES) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void close() throws IOException {
+        games.close();
+    }
+}
@@ -0,0 +1,420 @@
+package chess;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+
+/**
+ * Writes a {@link GameDatabase}: stores games as they are added and indexes every position they reach.
+ * Postings are collected in memory up to {@link #RUN_POSTINGS}, sorted and spilled to a run file, and the runs
+ * are merged into the block-compressed index when the builder is closed, so collections of millions of games
+ * are indexed with bounded memory.
+ *
+ * Usage: GameDatabaseBuilder output-directory games.pgn...
+ */
+public class GameDatabaseBuilder implements Closeable {
+
+    public static final int RUN_POSTINGS = 1 << 22;//64 MB of postings per run
+    public static final int MAX_PLIES = 0xFFFF;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final FileChannel games;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.BIG_ENDIAN);
+    private long gamesPosition;//file offset of the start of the buffer
+    private long[] offsets = new long[1024];
+    private int gameCount;
+    private int truncatedGames;
+
+    //postings of the current run: position hash, and game id << 32 | ply << 16 | move key << 2 | result
+    private final long[] hashes;
+    private final long[] values;
+    private int runSize;
+    private final List<Path> runs = new ArrayList<>();
+    private long postings;
+
+    /**
+     * @param directory output directory, created if missing; an existing database in it is replaced
+     */
+    public GameDatabaseBuilder(Path directory) throws IOException {
+        this(directory, RUN_POSTINGS);
+    }
+
+    GameDatabaseBuilder(Path directory, int runPostings) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        hashes = new long[runPostings];
+        values = new long[runPostings];
+        games = FileChannel.open(directory.resolve(GameDatabase.GAMES_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.position(GameDatabase.GAMES_HEADER_BYTES);//header written on close
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GameDatabaseBuilder output-directory games.pgn...");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        GameDatabaseBuilder builder = new GameDatabaseBuilder(Paths.get(args[0]));
+        try (builder) {
+            for (int arg = 1; arg < args.length; arg++) {
+                builder.addPgn(Paths.get(args[arg]));
+            }
+        }
+        //closing merges the runs into the index, so the time includes it
+        Main.LOGGER.log(Level.INFO, "Indexed " + builder.postings + " positions of " + builder.gameCount
+                + " games (" + builder.truncatedGames + " cut short) in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Adds every game of a PGN file.
+     */
+    public void addPgn(Path pgn) throws IOException {
+        try (PgnReader reader = new PgnReader(Files.newBufferedReader(pgn, StandardCharsets.ISO_8859_1))) {
+            PgnReader.PgnGame game;
+            while ((game = reader.next()) != null) {
+                addGame(game);
+            }
+        }
+    }
+
+    /**
+     * Replays a PGN game from the start position; like the opening book, a game is kept up to the first move
+     * the model can not play (castling, promotion, en passant).
+     * @return game id
+     */
+    public int addGame(PgnReader.PgnGame pgnGame) throws IOException {
+        Board board = new Board(Board.START_BOARD);
+        String color = Notation.modelColor(true);
+        List<Move> moves = new ArrayList<>();
+        for (String san : pgnGame.getMoves()) {
+            Move move = Notation.parseSan(board, color, san);
+            if (move == null) {
+                truncatedGames++;
+                break;
+            }
+            board.makeMove(move);
+            moves.add(move);
+            color = Player.opposite(color);
+        }
+        return addGame(Board.START_BOARD, moves, GameDatabase.resultCode(pgnGame.getResult()),
+                pgnGame.getTags().getOrDefault("White", "?"), pgnGame.getTags().getOrDefault("Black", "?"));
+    }
+
+    /**
+     * Stores a game and indexes the position before every move and the final one.
+     * Moves after the first one that is not pseudo-legal are dropped.
+     * @param setup Board.START_BOARD or Board.CUSTOM_BOARD
+     * @param moves moves from the setup, the side that moves first in notation starting
+     * @param result one of the GameDatabase result codes
+     * @return game id
+     */
+    public int addGame(String setup, List<Move> moves, int result, String white, String black) throws IOException {
+        int id = gameCount++;
+        if (id == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * id);
+        }
+        offsets[id] = gamesPosition + buffer.position();
+
+        Board board = new Board(setup);
+        String color = Notation.modelColor(true);
+        List<Move> played = new ArrayList<>();
+        for (Move move : moves) {
+            if (played.size() == MAX_PLIES || !MoveGenerator.isPseudoLegal(board, color, move)) {
+                break;
+            }
+            Move copy = Move.fromKey(move.key());
+            addPosting(Zobrist.hash(board, color), id, played.size(), copy.key(), result);
+            board.makeMove(copy);
+            played.add(copy);
+            color = Player.opposite(color);
+            if (board.getKing(Player.WHITE) == null || board.getKing(Player.BLACK) == null) {
+                break;//king captured
+            }
+        }
+        addPosting(Zobrist.hash(board, color), id, played.size(), 0, result);
+
+        byte[] whiteName = name(white);
+        byte[] blackName = name(black);
+        ensure(6 + whiteName.length + blackName.length);
+        buffer.put((byte) (setup.equals(Board.CUSTOM_BOARD) ? 1 : 0)).put((byte) result).putShort((short) played.size())
+                .put((byte) whiteName.length).put(whiteName).put((byte) blackName.length).put(blackName);
+        for (Move move : played) {
+            ensure(2);
+            buffer.putShort((short) move.key());
+        }
+        return id;
+    }
+
+    //UTF-8, cut to the 255 bytes a length byte can hold
+    private static byte[] name(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= 255 ? bytes : Arrays.copyOf(bytes, 255);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            gamesPosition += buffer.position();
+            FileChannels.flush(games, buffer);
+        }
+    }
+
+    private void addPosting(long hash, int gameId, int ply, int move, int result) throws IOException {
+        if (runSize == hashes.length) {
+            spill();
+        }
+        hashes[runSize] = hash;
+        values[runSize] = (long) gameId << 32 | (long) ply << 16 | move << 2 | result;
+        runSize++;
+        postings++;
+    }
+
+    /**
+     * Sorts the current run and writes it to a temporary file.
+     */
+    private void spill() throws IOException {
+        sort(hashes, values, 0, runSize - 1);
+        Path run = directory.resolve("run-" + runs.size() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), BUFFER_BYTES))) {
+            for (int i = 0; i < runSize; i++) {
+                out.writeLong(hashes[i]);
+                out.writeLong(values[i]);
+            }
+        }
+        runs.add(run);
+        runSize = 0;
+    }
+
+    /**
+     * Finishes the game file and merges the runs into the index.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!games.isOpen()) {
+            return;
+        }
+        try {
+            long tableOffset = gamesPosition + buffer.position();
+            for (int id = 0; id < gameCount; id++) {
+                ensure(8);
+                buffer.putLong(offsets[id]);
+            }
+            FileChannels.flush(games, buffer);
+            ByteBuffer header = ByteBuffer.allocate(GameDatabase.GAMES_HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+            header.putInt(GameDatabase.GAMES_MAGIC).putInt(GameDatabase.VERSION).putLong(gameCount).putLong(tableOffset);
+            header.flip();
+            games.write(header, 0);
+        } finally {
+            games.close();
+        }
+
+        if (runSize > 0 || runs.isEmpty()) {
+            spill();
+        }
+        try {
+            writeIndex();
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * One sorted run being merged.
+     */
+    private static class Run implements Closeable {
+        private final DataInputStream in;
+        private long hash;
+        private long value;
+
+        Run(Path path) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES));
+        }
+
+        //false at the end of the run
+        boolean advance() throws IOException {
+            try {
+                hash = in.readLong();
+                value = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        int blocks = (int) ((postings + GameDatabase.BLOCK_POSTINGS - 1) / GameDatabase.BLOCK_POSTINGS);
+        long[] directoryEntries = new long[2 * blocks];
+        PriorityQueue<Run> queue = new PriorityQueue<>((a, b) -> a.hash != b.hash ? Long.compare(a.hash, b.hash)
+                : Long.compare(a.value, b.value));
+        List<Run> open = new ArrayList<>();
+        try (FileChannel index = FileChannel.open(directory.resolve(GameDatabase.INDEX_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path path : runs) {
+                Run run = new Run(path);
+                open.add(run);
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+
+            long position = GameDatabase.INDEX_HEADER_BYTES + (long) blocks * GameDatabase.DIRECTORY_ENTRY_BYTES;
+            index.position(position);
+            buffer.clear();
+            long previousHash = 0;
+            int previousGame = 0;
+            long count = 0;
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                long hash = run.hash;
+                long value = run.value;
+                if (run.advance()) {
+                    queue.add(run);
+                }
+
+                int gameId = (int) (value >>> 32);
+                int inBlock = (int) (count % GameDatabase.BLOCK_POSTINGS);
+                if (buffer.remaining() < 32) {
+                    position += buffer.position();
+                    FileChannels.flush(index, buffer);
+                }
+                if (inBlock == 0) {
+                    int block = (int) (count / GameDatabase.BLOCK_POSTINGS);
+                    directoryEntries[2 * block] = hash;
+                    directoryEntries[2 * block + 1] = position + buffer.position();
+                    previousHash = hash;
+                }
+                long delta = hash - previousHash;
+                writeVarLong(buffer, delta);
+                writeVarLong(buffer, delta == 0 && inBlock > 0 ? gameId - previousGame : gameId);
+                writeVarLong(buffer, (value >>> 16) & 0xFFFF);
+                buffer.putShort((short) value);
+                previousHash = hash;
+                previousGame = gameId;
+                count++;
+            }
+            FileChannels.flush(index, buffer);
+
+            ByteBuffer head = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.BIG_ENDIAN);
+            head.putInt(GameDatabase.INDEX_MAGIC).putInt(GameDatabase.VERSION).putLong(count).putInt(blocks)
+                    .putInt(GameDatabase.BLOCK_POSTINGS);
+            long headPosition = 0;
+            for (int block = 0; block < blocks; block++) {
+                if (head.remaining() < GameDatabase.DIRECTORY_ENTRY_BYTES) {
+                    headPosition += writeAt(index, head, headPosition);
+                }
+                head.putLong(directoryEntries[2 * block]).putLong(directoryEntries[2 * block + 1]);
+            }
+            writeAt(index, head, headPosition);
+        } finally {
+            for (Run run : open) {
+                run.close();
+            }
+        }
+    }
+
+    //unsigned, seven bits a byte, lowest first
+    static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int writeAt(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    //quicksort of the postings by hash, then value
+    private static void sort(long[] hashes, long[] values, int low, int high) {
+        while (high - low > 16) {
+            int mid = (low + high) >>> 1;
+            long pivotHash = hashes[mid];
+            long pivotValue = values[mid];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(hashes[i], values[i], pivotHash, pivotValue) < 0) {
+                    i++;
+                }
+                while (compare(hashes[j], values[j], pivotHash, pivotValue) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(hashes, values, i++, j--);
+                }
+            }
+            //recurse into the smaller part, loop on the larger one
+            if (j - low < high - i) {
+                sort(hashes, values, low, j);
+                low = i;
+            } else {
+                sort(hashes, values, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compare(hashes[j - 1], values[j - 1], hashes[j], values[j]) > 0; j--) {
+                swap(hashes, values, j - 1, j);
+            }
+        }
+    }
+
+    private static int compare(long hashA, long valueA, long hashB, long valueB) {
+        return hashA != hashB ? Long.compare(hashA, hashB) : Long.compare(valueA, valueB);
+    }
+
+    private static void swap(long[] hashes, long[] values, int i, int j) {
+        long hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    public int getGames() {
+        return gameCount;
+    }
+
+    public int getTruncatedGames() {
+        return truncatedGames;
+    }
+
+    public long getPostings() {
+        return postings;
+    }
+}
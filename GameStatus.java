@@ -0,0 +1,22 @@
+package chess;
+
+/**
+ * State of a game as reported by {@link Game#getStatus()}
+ */
+public enum GameStatus {
+    ONGOING,
+    CHECK,
+    KING_CAPTURED,
+    TIME_FORFEIT,//a player's clock ran out
+    DRAW_REPETITION,//same position with the same side to move for the third time
+    DRAW_FIFTY_MOVES,//fifty moves by each side without a capture or pawn move
+    DRAW_INSUFFICIENT_MATERIAL;//no side has enough material left to capture a king
+
+    public boolean isDraw() {
+        return this == DRAW_REPETITION || this == DRAW_FIFTY_MOVES || this == DRAW_INSUFFICIENT_MATERIAL;
+    }
+
+    public boolean isOver() {
+        return this == KING_CAPTURED || this == TIME_FORFEIT || isDraw();
+    }
+}
@@ -15,12 +15,13 @@ public class King extends Piece {
     public King(Player player, Square square) {
         setPlayer(player);
         setSquare(square);
-        setName(King._NAME);
+        setType(PieceType.KING);
         square.setPiece(this);
     }
 
     @Override
     public boolean canMove(Board board, Square start, Square dest) {
+        if (Metrics.ENABLED) Metrics.CAN_MOVE.increment();
         // Check if the destination square is occupied by player's own piece
         // and if the destination square is out of bound
         if (!passBasicMoveRules(board, start, dest)) {
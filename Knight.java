@@ -18,12 +18,13 @@ public class Knight extends Piece{
     public Knight(Player player, Square square){
         setPlayer(player);
         setSquare(square);
-        setName(Knight._NAME);
+        setType(PieceType.KNIGHT);
         square.setPiece(this);
     }
 
     @Override
     public boolean canMove(Board board, Square start, Square dest) {
+        if (Metrics.ENABLED) Metrics.CAN_MOVE.increment();
 
         //check if the destination square is occupied by player's own piece
         //and if the destination square is out of bound
@@ -0,0 +1,151 @@
+package chess;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram.
+ * Values are counted in log-linear buckets: exact below 128, above that each power of two is split into 64
+ * sub-buckets, so any recorded value is reported within about 1.5% while the whole long range fits in
+ * a few thousand counters. Recording is a couple of atomic adds and never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR = 128;
+    private static final int SUB_BUCKETS = 64;
+    private static final int BUCKETS = LINEAR + 57 * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param nanos latency in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records the time elapsed since a System.nanoTime() start stamp.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - 6;//value >> shift is in [64, 128)
+        return LINEAR + (shift - 1) * SUB_BUCKETS + (int) ((value >> shift) - SUB_BUCKETS);
+    }
+
+    //highest value that falls into a bucket
+    static long highestValueOf(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR) / SUB_BUCKETS + 1;
+        long sub = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * @return consistent-enough copy of the current distribution (concurrent records may be partly included)
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(name, copy, total, sum.sum(), max.get());
+    }
+
+    /**
+     * Frozen view of a histogram.
+     */
+    public static class Snapshot {
+        private final String name;
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(String name, long[] counts, long count, long sum, long max) {
+            this.name = name;
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile 0 to 100
+         * @return value at or below which the given percentage of recorded values fall
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+                    name, count, getMean() / 1000, getValueAtPercentile(50) / 1000.0,
+                    getValueAtPercentile(90) / 1000.0, getValueAtPercentile(99) / 1000.0, max / 1000.0);
+        }
+    }
+}
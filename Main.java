@@ -4,6 +4,8 @@ import controllers.ViewController;
 import view.ChessBoardPanel;
 
 import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class Main {
@@ -14,6 +16,11 @@ public class Main {
             Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);//used for debugging
 
     public static void main(String[] args) {
+        //-Dchess.metrics.dump=<seconds> logs the hot path metrics periodically
+        long dumpSeconds = Long.getLong("chess.metrics.dump", 0L);
+        if (dumpSeconds > 0) {
+            Metrics.startPeriodicDump(dumpSeconds, TimeUnit.SECONDS);
+        }
         Runnable r = new Runnable() {
 
             @Override
@@ -26,7 +33,16 @@ public class Main {
                 ChessBoardPanel cb =  vc.getChessBoardPanel();
 
                 JFrame f = new JFrame("Chess");
-                f.add(cb.getGui());
+                if (vc.getBoardCanvas() != null) {
+                    //the Java2D board replaces the button grid
+                    f.add(vc.createControlBar(), BorderLayout.NORTH);
+                    f.add(vc.getBoardCanvas());
+                } else {
+                    f.add(cb.getGui());
+                }
+                f.add(vc.getAnalysisPanel(), BorderLayout.SOUTH);
+                f.setGlassPane(vc.getArrowLayer());
+                vc.getArrowLayer().setVisible(true);
                 f.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
                 f.setLocationByPlatform(true);
 
@@ -0,0 +1,59 @@
+package chess;
+
+import java.util.List;
+
+/**
+ * Outcome of a mate search: whether the side to move mates within the move limit, the forced line if it does
+ * and search statistics.
+ */
+public class MateResult {
+
+    public enum Status {
+        MATE,//the side to move mates within the limit whatever the defence
+        NO_MATE,//proven: the defender survives the limit
+        UNKNOWN//the node budget ran out first
+    }
+
+    private final Status status;
+    private final int mateIn;//moves of the mating side, 0 unless MATE
+    private final List<Move> line;//mating moves and the longest resisting replies, empty unless MATE
+    private final long nodes;
+    private final long timeMillis;
+
+    public MateResult(Status status, int mateIn, List<Move> line, long nodes, long timeMillis) {
+        this.status = status;
+        this.mateIn = mateIn;
+        this.line = line;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isMate() {
+        return status == Status.MATE;
+    }
+
+    public int getMateIn() {
+        return mateIn;
+    }
+
+    public List<Move> getLine() {
+        return line;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return status + (isMate() ? " in " + mateIn : "") + " nodes " + nodes + " time " + timeMillis + "ms line " + line;
+    }
+}
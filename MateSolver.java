@@ -0,0 +1,339 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Mate-in-N solver using depth-first proof-number search (df-pn).
+ * A proof number is the least number of unsolved positions that must turn out mates to prove a mate, a disproof
+ * number the least that must turn out escapes to refute it; the search always expands the most proving
+ * position and descends depth first under thresholds, so it needs memory only for its table.
+ * Mate means the defender is in check with no move that keeps its king, under the same piece rules as the
+ * game, Vampire and Witch included; a stalemate refutes the mate. The number of mating moves left is part
+ * of a position's key, so positions never repeat along a path.
+ * The table has a fixed number of entries in buckets of four; when a bucket is full the entry that took the
+ * least work to solve is replaced.
+ */
+public class MateSolver {
+
+    public static final int MAX_MOVES = 16;
+    public static final int DEFAULT_TABLE_ENTRIES = 1 << 20;//about 20 MB
+    public static final long DEFAULT_MAX_NODES = 5_000_000L;
+    static final int INFINITE = 1 << 28;
+    private static final int BUCKET = 4;
+
+    private static final long[] REMAINING_KEYS = new long[MAX_MOVES + 1];
+
+    static {
+        Random random = new Random(0x3A7E_5EEDL);
+        for (int i = 0; i <= MAX_MOVES; i++) {
+            REMAINING_KEYS[i] = random.nextLong();
+        }
+    }
+
+    private final long[] keys;
+    private final int[] proofs;
+    private final int[] disproofs;
+    private final int[] works;//nodes spent on the entry's subtree, the replacement priority
+    private final int mask;
+
+    private long maxNodes = DEFAULT_MAX_NODES;
+    private long nodes;
+    private boolean aborted;
+    private String attacker;
+
+    //proof and disproof number of the position mid() returned from, it may no longer be in the table
+    private int lastProof;
+    private int lastDisproof;
+
+    public MateSolver() {
+        this(DEFAULT_TABLE_ENTRIES);
+    }
+
+    /**
+     * @param tableEntries table size, rounded down to a power of two
+     */
+    public MateSolver(int tableEntries) {
+        int size = Integer.highestOneBit(Math.max(BUCKET, tableEntries));
+        keys = new long[size];
+        proofs = new int[size];
+        disproofs = new int[size];
+        works = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Looks for a mate by the side to move in at most maxMoves of its moves; shorter mates are tried first,
+     * so a mate found is the shortest. The game is left as it was.
+     * @param game game model, the side to move is the attacker
+     * @param maxMoves move limit of the attacker, at most {@link #MAX_MOVES}
+     * @return mate with its forced line, proof that there is none, or unknown if the node budget ran out
+     */
+    public MateResult solve(Game game, int maxMoves) {
+        if (maxMoves < 1 || maxMoves > MAX_MOVES) {
+            throw new IllegalArgumentException("Move limit must be between 1 and " + MAX_MOVES);
+        }
+        long startTime = System.currentTimeMillis();
+        Board board = game.getBoard();
+        attacker = game.getPlayerTurn();
+        nodes = 0;
+        aborted = false;
+        clear();
+
+        for (int n = 1; n <= maxMoves; n++) {
+            if (prove(board, attacker, n)) {
+                List<Move> line = new ArrayList<>();
+                forcedLine(board, attacker, n, line);
+                return new MateResult(aborted ? MateResult.Status.UNKNOWN : MateResult.Status.MATE, n,
+                        aborted ? Collections.<Move>emptyList() : line, nodes, System.currentTimeMillis() - startTime);
+            }
+            if (aborted) {
+                break;
+            }
+        }
+        return new MateResult(aborted ? MateResult.Status.UNKNOWN : MateResult.Status.NO_MATE, 0,
+                Collections.<Move>emptyList(), nodes, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Solves a position completely, or until the node budget runs out.
+     * @param remaining mating moves left to the attacker
+     * @return true if the position is proven a mate
+     */
+    private boolean prove(Board board, String color, int remaining) {
+        long key = key(board, color, remaining);
+        int index = probe(key);
+        if (index >= 0 && (proofs[index] == 0 || disproofs[index] == 0)) {
+            return proofs[index] == 0;
+        }
+        //unknown positions are expanded by mid, which needs no initial numbers
+        mid(board, color, remaining, key, INFINITE, INFINITE);
+        return !aborted && lastProof == 0;
+    }
+
+    /**
+     * Multiple iterative deepening: expands the position until its numbers reach the thresholds.
+     * Thresholds and numbers are kept as phi and delta: the proof and disproof number at the attacker's
+     * positions, the other way round at the defender's, so both node types share one rule.
+     */
+    private void mid(Board board, String color, int remaining, long key, int thPhi, int thDelta) {
+        nodes++;
+        long startNodes = nodes;
+        boolean attacking = color.equals(attacker);
+        String opponent = Player.opposite(color);
+        int childRemaining = attacking ? remaining - 1 : remaining;
+        if (attacking && remaining == 0) {
+            setLast(INFINITE, 0);
+            store(key, lastProof, lastDisproof, 1);
+            return;
+        }
+        List<Move> moves = MoveGenerator.legalMoves(board, color);
+        int count = moves.size();
+        if (count == 0) {
+            //mated or stalemated
+            boolean mated = !attacking && StaticExchange.isInCheck(board, color);
+            setLast(mated ? 0 : INFINITE, mated ? INFINITE : 0);
+            store(key, lastProof, lastDisproof, 1);
+            return;
+        }
+
+        int[] phis = new int[count];
+        int[] deltas = new int[count];
+        long[] childKeys = new long[count];
+        for (int i = 0; i < count; i++) {
+            Move move = moves.get(i);
+            board.makeMove(move);
+            childKeys[i] = key(board, opponent, childRemaining);
+            int index = probe(childKeys[i]);
+            if (index < 0) {
+                evaluate(board, opponent, childRemaining, childKeys[i]);
+            } else {
+                setLast(proofs[index], disproofs[index]);
+            }
+            board.unmakeMove(move);
+            //the child's phi is the number this node's delta is made of, and the other way round
+            phis[i] = childPhi(attacking);
+            deltas[i] = childDelta(attacking);
+        }
+
+        while (true) {
+            int phi = INFINITE;
+            long deltaSum = 0;
+            int best = 0;
+            int secondDelta = INFINITE;
+            for (int i = 0; i < count; i++) {
+                deltaSum += phis[i];
+                if (deltas[i] < phi) {
+                    secondDelta = phi;
+                    phi = deltas[i];
+                    best = i;
+                } else if (deltas[i] < secondDelta) {
+                    secondDelta = deltas[i];
+                }
+            }
+            int delta = (int) Math.min(INFINITE, deltaSum);
+            if (phi >= thPhi || delta >= thDelta || aborted) {
+                setLast(attacking ? phi : delta, attacking ? delta : phi);
+                store(key, lastProof, lastDisproof, (int) Math.min(Integer.MAX_VALUE, nodes - startNodes + 1));
+                return;
+            }
+            if (nodes >= maxNodes) {
+                aborted = true;
+                continue;
+            }
+
+            int childThPhi = (int) Math.min(INFINITE, (long) thDelta - delta + phis[best]);
+            int childThDelta = Math.min(thPhi, secondDelta == INFINITE ? INFINITE : secondDelta + 1);
+            Move move = moves.get(best);
+            board.makeMove(move);
+            mid(board, opponent, childRemaining, childKeys[best], childThPhi, childThDelta);
+            board.unmakeMove(move);
+            phis[best] = childPhi(attacking);
+            deltas[best] = childDelta(attacking);
+        }
+    }
+
+    /**
+     * Gives a new position its initial numbers without searching it: solved if it has no moves or the attacker
+     * has no moves left, otherwise the number of replies stands for the work to refute (or prove) it.
+     */
+    private void evaluate(Board board, String color, int remaining, long key) {
+        nodes++;
+        boolean attacking = color.equals(attacker);
+        if (attacking && remaining == 0) {
+            setLast(INFINITE, 0);
+            store(key, lastProof, lastDisproof, 1);
+            return;
+        }
+        int count = MoveGenerator.legalMoves(board, color).size();
+        if (count == 0) {
+            boolean mated = !attacking && StaticExchange.isInCheck(board, color);
+            setLast(mated ? 0 : INFINITE, mated ? INFINITE : 0);
+        } else if (!attacking && remaining == 0) {
+            setLast(INFINITE, 0);//the defender survives the last mating move
+        } else if (attacking) {
+            setLast(1, count);
+        } else {
+            setLast(count, 1);
+        }
+        store(key, lastProof, lastDisproof, 1);
+    }
+
+    /**
+     * Follows a proven position down to the mate: the quickest mating move, and the reply that delays the
+     * mate the longest.
+     */
+    private void forcedLine(Board board, String color, int remaining, List<Move> line) {
+        List<Move> moves = MoveGenerator.legalMoves(board, color);
+        if (moves.isEmpty() || aborted) {
+            return;
+        }
+        String opponent = Player.opposite(color);
+        if (color.equals(attacker)) {
+            //the child is the defender's position, proven with n mating moves left means mate in n + 1
+            for (int n = 0; n < remaining; n++) {
+                for (Move move : moves) {
+                    board.makeMove(move);
+                    boolean mate = prove(board, opponent, n);
+                    if (mate) {
+                        line.add(move);
+                        forcedLine(board, opponent, n, line);
+                    }
+                    board.unmakeMove(move);
+                    if (mate || aborted) {
+                        return;
+                    }
+                }
+            }
+        } else {
+            //every reply is mated within the limit: the longest resisting one is the one not mated sooner
+            Move longest = null;
+            int longestMoves = 0;
+            for (Move move : moves) {
+                board.makeMove(move);
+                int n = 1;
+                while (n < remaining && !prove(board, opponent, n) && !aborted) {
+                    n++;
+                }
+                board.unmakeMove(move);
+                if (longest == null || n > longestMoves) {
+                    longest = move;
+                    longestMoves = n;
+                }
+            }
+            line.add(longest);
+            board.makeMove(longest);
+            forcedLine(board, opponent, longestMoves, line);
+            board.unmakeMove(longest);
+        }
+    }
+
+    private static long key(Board board, String color, int remaining) {
+        return Zobrist.hash(board, color) ^ REMAINING_KEYS[remaining];
+    }
+
+    private void setLast(int proof, int disproof) {
+        lastProof = proof;
+        lastDisproof = disproof;
+    }
+
+    //lastProof and lastDisproof seen from the parent: its children are of the other node type
+    private int childPhi(boolean parentAttacking) {
+        return parentAttacking ? lastDisproof : lastProof;
+    }
+
+    private int childDelta(boolean parentAttacking) {
+        return parentAttacking ? lastProof : lastDisproof;
+    }
+
+    private int probe(long key) {
+        int bucket = (int) key & mask & -BUCKET;
+        for (int i = bucket; i < bucket + BUCKET; i++) {
+            if (keys[i] == key && works[i] > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void store(long key, int proof, int disproof, int work) {
+        int bucket = (int) key & mask & -BUCKET;
+        int target = bucket;
+        for (int i = bucket; i < bucket + BUCKET; i++) {
+            if (keys[i] == key || works[i] == 0) {
+                target = i;
+                break;
+            }
+            if (works[i] < works[target]) {
+                target = i;
+            }
+        }
+        //a position searched again keeps the larger of its works
+        works[target] = keys[target] == key ? Math.max(work, works[target]) : work;
+        keys[target] = key;
+        proofs[target] = proof;
+        disproofs[target] = disproof;
+    }
+
+    private void clear() {
+        Arrays.fill(works, 0);
+    }
+
+    /**
+     * @param maxNodes positions the solver may generate moves for before it gives up
+     */
+    public void setMaxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+}
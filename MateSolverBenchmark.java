@@ -0,0 +1,67 @@
+package chess;
+
+/**
+ * Mate puzzle suite comparing the proof-number mate solver against a plain alpha-beta search to the depth
+ * of the mate. Alpha-beta proves a mate in n when it scores a king capture within 2n plies; it has no notion
+ * of stalemate, which it counts as a mate.
+ * Usage: MateSolverBenchmark [maxMoves]
+ */
+public class MateSolverBenchmark {
+
+    public static final int DEFAULT_MAX_MOVES = 3;
+
+    //FEN (V and W are the Vampire and the Witch), shortest mate, 0 for none within the default limit
+    private static final String[][] PUZZLES = {
+            {"6k1/5ppp/8/8/8/8/5PPP/3R2K1 w", "1"},
+            {"k7/8/1K6/8/8/8/8/7R w", "1"},
+            {"k7/8/2K5/8/8/8/8/7R w", "2"},
+            {"6k1/5ppp/8/8/8/8/5PPP/2RR2K1 w", "1"},
+            {"5rk1/5ppp/8/8/8/8/5PPP/1RR3K1 w", "0"},
+            {"6k1/4rppp/8/8/8/8/5PPP/3R2K1 w", "2"},
+            {"k7/8/1K6/8/8/8/8/V7 w", "0"},//alpha-beta takes a stalemate for a mate in 3
+            {"k7/2K5/8/8/8/8/8/1V6 w", "3"},
+            {"k7/2K5/8/2V5/8/8/8/8 w", "1"},
+            {"k7/8/2K5/8/8/8/8/W6R w", "2"},
+            {"7k/8/8/8/8/8/8/K7 w", "0"},
+    };
+
+    public static void main(String[] args) {
+        int maxMoves = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_MOVES;
+        System.out.printf("%-34s %-9s %10s %9s %-9s %10s %9s%n", "position", "df-pn", "nodes", "time(ms)",
+                "alphabeta", "nodes", "time(ms)");
+        long solverNodes = 0;
+        long searchNodes = 0;
+        for (String[] puzzle : PUZZLES) {
+            MateResult mate = new MateSolver().solve(Notation.parseFen(puzzle[0]), maxMoves);
+            SearchResult search = mateSearch(Notation.parseFen(puzzle[0]), maxMoves);
+            int searchMate = mateIn(search, maxMoves);
+            System.out.printf("%-34s %-9s %10d %9d %-9s %10d %9d%n", puzzle[0],
+                    mate.isMate() ? "mate " + mate.getMateIn() : mate.getStatus().toString().toLowerCase(),
+                    mate.getNodes(), mate.getTimeMillis(),
+                    searchMate > 0 ? "mate " + searchMate : "no mate", search.getNodes(), search.getTimeMillis());
+            int expected = Integer.parseInt(puzzle[1]);
+            if ((expected > 0 || maxMoves <= DEFAULT_MAX_MOVES)
+                    && mate.getMateIn() != (expected <= maxMoves ? expected : 0)) {
+                System.out.println("  expected " + (expected == 0 ? "no mate" : "mate " + expected));
+            }
+            if (mate.isMate()) {
+                System.out.println("  line " + mate.getLine());
+            }
+            solverNodes += mate.getNodes();
+            searchNodes += search.getNodes();
+        }
+        System.out.printf("total nodes: df-pn %d, alpha-beta %d%n", solverNodes, searchNodes);
+    }
+
+    private static SearchResult mateSearch(Game game, int maxMoves) {
+        Search search = new Search();
+        search.setSelective(false);
+        //the king capture that ends a mate in n is ply 2n + 1
+        return search.search(game, 2 * maxMoves + 1);
+    }
+
+    private static int mateIn(SearchResult result, int maxMoves) {
+        int ply = Search.MATE - result.getScore();
+        return ply >= 2 && ply <= 2 * maxMoves ? ply / 2 : 0;
+    }
+}
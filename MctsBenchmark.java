@@ -0,0 +1,43 @@
+package chess;
+
+/**
+ * Monte Carlo tree search throughput: playouts per second per core on the standard and the custom board,
+ * for one thread up to the given number, and the part of the tree kept after a move and a reply.
+ * Usage: MctsBenchmark [millis per search] [max threads]
+ */
+public class MctsBenchmark {
+
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-8s %8s %10s %16s %10s %12s%n", "board", "threads", "playouts", "playouts/s/core",
+                "tree", "kept nodes");
+        for (String option : new String[]{Board.START_BOARD, Board.CUSTOM_BOARD}) {
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                run(option, threads, millis);
+            }
+        }
+    }
+
+    private static void run(String option, int threads, long millis) {
+        Game game = option.equals(Board.CUSTOM_BOARD) ? Game.customGame() : Game.newGame();
+        MctsEngine engine = new MctsEngine(threads, MctsEngine.DEFAULT_MEMORY_MB, null);
+        TimeManager timeManager = new TimeManager();
+        timeManager.startFixed(millis * 1_000_000L);
+        SearchResult result = engine.think(game, timeManager);
+        int tree = engine.getTreeSize();
+        double rate = MctsEngine.getPlayoutsPerSecondPerCore();
+
+        //play the engine's move and the reply it expects, the next search starts from that subtree
+        int kept = 0;
+        if (result.getPrincipalVariation().size() >= 2) {
+            game.playMove(Move.fromKey(result.getPrincipalVariation().get(0).key()));
+            game.playMove(Move.fromKey(result.getPrincipalVariation().get(1).key()));
+            engine.searchPlayouts(game, 0);
+            kept = engine.getTreeSize();
+        }
+        System.out.printf("%-8s %8d %10d %16.1f %10d %12d%n", option, threads, result.getNodes(),
+                rate, tree, kept);
+        engine.shutdown();
+    }
+}
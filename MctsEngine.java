@@ -0,0 +1,476 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computer player using Monte Carlo tree search instead of alpha-beta, for the custom variant where the
+ * handcrafted evaluation knows little about the Vampire and the Witch.
+ * Every playout walks the tree by UCT, expands a leaf on its second visit and plays random moves from it until a
+ * king is captured, or scores the position by the evaluator after {@link #PLAYOUT_PLIES}. Several threads share
+ * one tree; a thread adds a virtual loss to the nodes on its path so the others spread over different lines.
+ * Nodes come from a preallocated pool whose size is the memory cap; when it is full the tree stops growing and
+ * the playouts go on from its leaves. After a move the subtree of the new position is kept for the next search.
+ * Moves follow the engine's rules: a move may leave the own king capturable, capturing a king wins.
+ */
+public class MctsEngine extends Engine {
+
+    public static final int DEFAULT_MEMORY_MB = 64;
+    public static final int RESULT_SCALE = 1000;//a win, per playout
+    public static final double EXPLORATION = 1.4;
+    public static final int VIRTUAL_LOSS = 3;
+    public static final int PLAYOUT_PLIES = 60;
+    public static final int EVAL_SCALE = 400;//centipawns for odds of e to 1 at the playout cutoff
+    public static final int MAX_SCORE = 2000;//reported for a certain result
+    public static final int DEPTH_BATCH = 1000;//playouts between checks of the most visited line's depth
+    public static final long MAX_DEPTH_PLAYOUTS = 200_000;//bounds a search to a depth the tree does not reach
+    private static final int MAX_PATH = 256;
+
+    private static volatile double playoutsPerSecondPerCore;
+
+    static {
+        Metrics.gauge("mcts.playoutsPerSecondPerCore", () -> playoutsPerSecondPerCore);
+    }
+
+    private final int threads;
+    private final ExecutorService executor;
+    //the tree lives in one pool, the other receives the part kept after a move
+    private final MctsNodePool[] pools = new MctsNodePool[2];
+    private int current;
+    private int root = MctsNodePool.NONE;
+    private Game rootGame;//copy of the position at the root
+    private long rootKey;
+
+    private volatile boolean stopRequested;
+    private volatile boolean poolFull;
+    private long lastPlayouts;
+
+    public MctsEngine() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MEMORY_MB, OpeningBook.openDefault());
+    }
+
+    /**
+     * @param threads search threads sharing the tree
+     * @param memoryMegabytes memory cap of the tree, both node pools included
+     * @param book opening book, may be null
+     */
+    public MctsEngine(int threads, int memoryMegabytes, OpeningBook book) {
+        super(null, book);
+        this.threads = Math.max(1, threads);
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8,
+                (long) memoryMegabytes * 1024 * 1024 / (2 * MctsNodePool.NODE_BYTES));
+        pools[0] = new MctsNodePool(capacity);
+        pools[1] = new MctsNodePool(capacity);
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread thread = new Thread(r, "mcts-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Searches until the time manager's soft limit; there are no iterations to finish.
+     */
+    @Override
+    public SearchResult think(Game game, TimeManager timeManager) {
+        SearchResult answer = answerWithoutSearch(game);
+        return answer != null ? answer : search(game, timeManager, Long.MAX_VALUE);
+    }
+
+    /**
+     * Runs playouts until the most visited line is the given number of plies long, at most
+     * {@link #MAX_DEPTH_PLAYOUTS}; the tree search has no iterations, so this is the nearest meaning of depth.
+     * @param depth length of the most visited line in plies
+     */
+    @Override
+    public SearchResult think(Game game, int depth) {
+        SearchResult answer = answerWithoutSearch(game);
+        return answer != null ? answer : searchDepth(game, depth);
+    }
+
+    /**
+     * Fixed-effort play: answers from the book, otherwise runs the given number of playouts.
+     * @param playouts number of playouts, 0 only moves the root to the game's position
+     */
+    public SearchResult searchPlayouts(Game game, long playouts) {
+        SearchResult answer = answerWithoutSearch(game);
+        return answer != null ? answer : search(game, null, playouts);
+    }
+
+    @Override
+    public SearchResult ponder(Game game, TimeManager timeManager) {
+        return search(game, timeManager, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public void clearStop() {
+        stopRequested = false;
+    }
+
+    /**
+     * Runs playouts on all threads until the time is up, the playouts are done or the search is stopped.
+     */
+    private synchronized SearchResult search(Game game, TimeManager timeManager, long maxPlayouts) {
+        long start = System.nanoTime();
+        reroot(game);
+        AtomicLong playouts = new AtomicLong();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(game.deepCopyGame(), start + i);
+            workers.add(executor.submit(() -> worker.run(timeManager, maxPlayouts, playouts)));
+        }
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            stopRequested = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tree search failed", e.getCause());
+        }
+
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        lastPlayouts = Math.min(playouts.get(), maxPlayouts);//every thread counts one playout too many
+        int cores = Math.min(threads, Runtime.getRuntime().availableProcessors());
+        playoutsPerSecondPerCore = lastPlayouts * 1e9 / elapsed / cores;
+        if (Metrics.ENABLED) {
+            Metrics.MCTS_PLAYOUTS.add(lastPlayouts);
+        }
+        return result(lastPlayouts, elapsed / 1_000_000);
+    }
+
+    /**
+     * Searches in batches of playouts until the most visited line is deep enough or the playout cap is reached.
+     */
+    private synchronized SearchResult searchDepth(Game game, int depth) {
+        long playouts = 0;
+        long millis = 0;
+        SearchResult result;
+        do {
+            result = search(game, null, Math.min(DEPTH_BATCH, MAX_DEPTH_PLAYOUTS - playouts));
+            playouts += result.getNodes();
+            millis += result.getTimeMillis();
+        } while (result.getDepth() < depth && playouts < MAX_DEPTH_PLAYOUTS && !stopRequested);
+        lastPlayouts = playouts;
+        return new SearchResult(result.getBestMove(), result.getScore(), result.getDepth(), playouts, millis,
+                result.getPrincipalVariation());
+    }
+
+    /**
+     * Moves the root to the game's position, keeping the subtree if it is the root or two plies below it.
+     */
+    private void reroot(Game game) {
+        MctsNodePool pool = pools[current];
+        long key = Zobrist.hash(game.getBoard(), game.getPlayerTurn());
+        int found = MctsNodePool.NONE;
+        if (rootGame != null) {
+            found = key == rootKey ? root : findDescendant(rootGame.getBoard(), rootGame.getPlayerTurn(), root, key, 2);
+        }
+        if (found == MctsNodePool.NONE) {
+            root = pool.reset();
+        } else if (found != root) {
+            int spare = 1 - current;
+            root = pools[spare].copySubtree(pool, found);
+            current = spare;
+        }
+        poolFull = false;
+        rootGame = game.deepCopyGame();
+        rootKey = key;
+    }
+
+    private int findDescendant(Board board, String color, int node, long key, int plies) {
+        MctsNodePool pool = pools[current];
+        int count = pool.getChildCount(node);
+        String opponent = Player.opposite(color);
+        for (int child = pool.getFirstChild(node); count > 0 && child < pool.getFirstChild(node) + count; child++) {
+            Move move = Move.fromKey(pool.getMove(child));
+            board.makeMove(move);
+            int found = Zobrist.hash(board, opponent) == key ? child
+                    : plies > 1 ? findDescendant(board, opponent, child, key, plies - 1) : MctsNodePool.NONE;
+            board.unmakeMove(move);
+            if (found != MctsNodePool.NONE) {
+                return found;
+            }
+        }
+        return MctsNodePool.NONE;
+    }
+
+    /**
+     * @return the most visited move, its win rate as a score and the most visited line
+     */
+    private SearchResult result(long playouts, long millis) {
+        MctsNodePool pool = pools[current];
+        List<Move> line = new ArrayList<>();
+        int node = root;
+        int best = MctsNodePool.NONE;
+        while (true) {
+            int child = mostVisited(pool, node);
+            if (child == MctsNodePool.NONE) {
+                break;
+            }
+            if (best == MctsNodePool.NONE) {
+                best = child;
+            }
+            line.add(Move.fromKey(pool.getMove(child)));
+            node = child;
+        }
+        if (best == MctsNodePool.NONE) {
+            return new SearchResult(null, 0, 0, playouts, millis, line);
+        }
+        int score;
+        if (pool.isKingCapture(best)) {
+            score = Search.MATE;
+        } else {
+            double winRate = (double) pool.getWins(best) / pool.getVisits(best) / RESULT_SCALE;
+            score = (int) Math.max(-MAX_SCORE, Math.min(MAX_SCORE, Math.round(EVAL_SCALE * Math.log(winRate / (1 - winRate)))));
+        }
+        return new SearchResult(line.get(0), score, line.size(), playouts, millis, line);
+    }
+
+    private static int mostVisited(MctsNodePool pool, int node) {
+        int count = pool.getChildCount(node);
+        int best = MctsNodePool.NONE;
+        for (int child = pool.getFirstChild(node); count > 0 && child < pool.getFirstChild(node) + count; child++) {
+            if (pool.getVisits(child) > 0 && (best == MctsNodePool.NONE || pool.getVisits(child) > pool.getVisits(best))) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return playouts of the last search
+     */
+    public long getLastPlayouts() {
+        return lastPlayouts;
+    }
+
+    /**
+     * @return throughput of the last search
+     */
+    public static double getPlayoutsPerSecondPerCore() {
+        return playoutsPerSecondPerCore;
+    }
+
+    /**
+     * @return nodes in the tree
+     */
+    public synchronized int getTreeSize() {
+        return pools[current].size();
+    }
+
+    public int getNodeCapacity() {
+        return pools[current].getCapacity();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void shutdown() {
+        stop();
+        executor.shutdownNow();
+    }
+
+    /**
+     * One search thread with its own copy of the root position and scratch space.
+     */
+    private final class Worker {
+        private final Board board;
+        private final String rootColor;
+        private final Random random;
+        private final Evaluator evaluator = new Evaluator();
+        private final int[] path = new int[MAX_PATH];
+        private final Move[] made = new Move[MAX_PATH + PLAYOUT_PLIES];
+        private final Square[] own = new Square[64];
+        private final Square[] targets = new Square[64];
+        private final List<Move> moves = new ArrayList<>();
+
+        Worker(Game game, long seed) {
+            this.board = game.getBoard();
+            this.rootColor = game.getPlayerTurn();
+            this.random = new Random(seed);
+        }
+
+        void run(TimeManager timeManager, long maxPlayouts, AtomicLong playouts) {
+            while (!stopRequested && !isOutOfTime(timeManager) && playouts.getAndIncrement() < maxPlayouts) {
+                playout();
+            }
+        }
+
+        private boolean isOutOfTime(TimeManager timeManager) {
+            return timeManager != null && (timeManager.isHardLimitReached()
+                    || !timeManager.isPondering() && timeManager.getElapsedNanos() >= timeManager.getSoftNanos());
+        }
+
+        /**
+         * Selection, expansion, simulation and backpropagation of one playout.
+         */
+        private void playout() {
+            MctsNodePool pool = pools[current];
+            int node = root;
+            int length = 0;
+            int numMade = 0;
+            String color = rootColor;
+            long result;//for the root's side to move
+            while (true) {
+                path[length++] = node;
+                pool.addVisits(node, VIRTUAL_LOSS);
+                if (pool.isKingCapture(node)) {
+                    //the side not to move now captured the king
+                    result = color.equals(rootColor) ? 0 : RESULT_SCALE;
+                    break;
+                }
+                int count = pool.getChildCount(node);
+                if (count == MctsNodePool.UNEXPANDED && (node == root || pool.getVisits(node) > VIRTUAL_LOSS)
+                        && length < MAX_PATH && expand(pool, node, color)) {
+                    count = pool.getChildCount(node);
+                }
+                if (count <= 0 || length == MAX_PATH) {
+                    result = count == 0 ? RESULT_SCALE / 2 : simulate(color, numMade);//no moves at all is a draw
+                    break;
+                }
+                node = select(pool, node, count);
+                Move move = Move.fromKey(pool.getMove(node));
+                board.makeMove(move);
+                made[numMade++] = move;
+                color = Player.opposite(color);
+            }
+            for (int i = numMade - 1; i >= 0; i--) {
+                board.unmakeMove(made[i]);
+            }
+
+            //the root is reached by the opponent's move, its children by the root side's and so on
+            for (int i = 0; i < length; i++) {
+                pool.addVisits(path[i], 1 - VIRTUAL_LOSS);
+                pool.addWins(path[i], i % 2 == 1 ? result : RESULT_SCALE - result);
+            }
+        }
+
+        private boolean expand(MctsNodePool pool, int node, String color) {
+            if (poolFull || !pool.startExpansion(node)) {
+                return false;
+            }
+            moves.clear();
+            MoveGenerator.generateAll(board, color, moves);
+            int first = pool.allocate(moves.size());
+            if (first == MctsNodePool.NONE) {
+                poolFull = true;
+            } else {
+                for (int i = 0; i < moves.size(); i++) {
+                    Move move = moves.get(i);
+                    Piece victim = board.getSquare(move.getDestX(), move.getDestY()).getPiece();
+                    pool.setMove(first + i, move.key(), victim != null && victim.getType() == PieceType.KING);
+                }
+            }
+            pool.finishExpansion(node, first, moves.size());
+            return first != MctsNodePool.NONE;
+        }
+
+        /**
+         * UCT: the child with the best win rate plus exploration bonus; a king capture is always taken.
+         */
+        private int select(MctsNodePool pool, int node, int count) {
+            int first = pool.getFirstChild(node);
+            double logParent = Math.log(Math.max(1, pool.getVisits(node)));
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < first + count; child++) {
+                if (pool.isKingCapture(child)) {
+                    return child;
+                }
+                int visits = pool.getVisits(child);
+                if (visits == 0) {
+                    return child;
+                }
+                double value = (double) pool.getWins(child) / visits / RESULT_SCALE
+                        + EXPLORATION * Math.sqrt(logParent / visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Plays random moves from the current position and takes them back.
+         * @param start entries of made[] already in use by the tree path
+         * @return result for the root's side to move
+         */
+        private long simulate(String color, int start) {
+            int numMade = start;
+            long result = -1;
+            String side = color;
+            for (int ply = 0; ply < PLAYOUT_PLIES; ply++) {
+                if (StaticExchange.isInCheck(board, Player.opposite(side))) {
+                    result = side.equals(rootColor) ? RESULT_SCALE : 0;//the side to move takes the king
+                    break;
+                }
+                Move move = randomMove(side);
+                if (move == null) {
+                    result = RESULT_SCALE / 2;
+                    break;
+                }
+                board.makeMove(move);
+                made[numMade++] = move;
+                side = Player.opposite(side);
+            }
+            if (result < 0) {
+                int score = evaluator.evaluate(board, rootColor);
+                result = Math.round(RESULT_SCALE / (1 + Math.exp(-(double) score / EVAL_SCALE)));
+            }
+            for (int i = numMade - 1; i >= start; i--) {
+                board.unmakeMove(made[i]);
+            }
+            return result;
+        }
+
+        /**
+         * Picks a random piece that can move, then a random move of it; much cheaper than generating all moves.
+         */
+        private Move randomMove(String color) {
+            int code = Player.codeOf(color);
+            int numOwn = 0;
+            for (int i = 0; i < 8; i++) {
+                for (int j = 0; j < 8; j++) {
+                    Square square = board.getSquare(i, j);
+                    if (square.getPiece() != null && square.getPiece().getColorCode() == code) {
+                        own[numOwn++] = square;
+                    }
+                }
+            }
+            while (numOwn > 0) {
+                int pick = random.nextInt(numOwn);
+                Square start = own[pick];
+                own[pick] = own[--numOwn];
+                Piece piece = start.getPiece();
+                int numTargets = 0;
+                for (int square = 0; square < 64; square++) {
+                    Square dest = board.getSquare(square >>> 3, square & 7);
+                    if (piece.canMove(board, start, dest)) {
+                        targets[numTargets++] = dest;
+                    }
+                }
+                if (numTargets > 0) {
+                    return new Move(start, targets[random.nextInt(numTargets)]);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package chess;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated node storage of a Monte Carlo search tree.
+ * Nodes are indices into parallel arrays, so growing the tree allocates no objects; a node's children are
+ * consecutive and are allocated together when the node is expanded. Statistics are atomic for the search threads.
+ * The pool is never shrunk: between moves the part of the tree still in use is copied into a second, empty pool.
+ */
+class MctsNodePool {
+
+    static final int NONE = -1;
+    //child counts of nodes without children yet
+    static final int UNEXPANDED = -1;
+    static final int EXPANDING = -2;//a thread is generating the children
+    //bytes per node: move, first child, child count, visits, wins and the terminal flag
+    static final int NODE_BYTES = 4 + 4 + 4 + 4 + 8 + 1;
+
+    private final int capacity;
+    private final int[] moves;//key of the move leading to the node
+    private final int[] firstChild;
+    private final AtomicIntegerArray childCount;
+    private final AtomicIntegerArray visits;
+    private final AtomicLongArray wins;//in MctsEngine.RESULT_SCALE units, for the side that played the move
+    private final boolean[] kingCaptures;//the move captures the king, it wins at once
+    private final AtomicInteger size = new AtomicInteger();
+
+    MctsNodePool(int capacity) {
+        this.capacity = capacity;
+        moves = new int[capacity];
+        firstChild = new int[capacity];
+        childCount = new AtomicIntegerArray(capacity);
+        visits = new AtomicIntegerArray(capacity);
+        wins = new AtomicLongArray(capacity);
+        kingCaptures = new boolean[capacity];
+    }
+
+    /**
+     * Allocates consecutive nodes, each unexpanded and unvisited.
+     * @return index of the first one, NONE when the pool is full
+     */
+    int allocate(int count) {
+        //a failed allocation must leave the size alone: rolling it back could undo a later thread's allocation
+        int first;
+        do {
+            first = size.get();
+            if (first + count > capacity) {
+                return NONE;
+            }
+        } while (!size.compareAndSet(first, first + count));
+        for (int node = first; node < first + count; node++) {
+            moves[node] = MoveOrdering.NO_MOVE;
+            firstChild[node] = NONE;
+            childCount.set(node, UNEXPANDED);
+            visits.set(node, 0);
+            wins.set(node, 0);
+            kingCaptures[node] = false;
+        }
+        return first;
+    }
+
+    /**
+     * Starts a new tree with a single root node.
+     * @return the root
+     */
+    int reset() {
+        size.set(0);
+        return allocate(1);
+    }
+
+    /**
+     * Copies a subtree of another pool into this one, which is cleared first. Nodes being expanded are copied
+     * as unexpanded, so the copy must be taken while no search runs.
+     * @return the copied root, the first node of this pool
+     */
+    int copySubtree(MctsNodePool from, int root) {
+        reset();
+        copyNode(from, root, 0);
+        //breadth first: each node's children are copied as one consecutive block
+        for (int node = 0; node < size.get(); node++) {
+            int count = childCount.get(node);
+            if (count <= 0) {
+                continue;
+            }
+            int source = firstChild[node];
+            int first = allocate(count);
+            for (int i = 0; i < count; i++) {
+                copyNode(from, source + i, first + i);
+            }
+            firstChild[node] = first;
+        }
+        return 0;
+    }
+
+    //copies statistics and the child count, the children themselves are copied by copySubtree
+    private void copyNode(MctsNodePool from, int source, int target) {
+        moves[target] = from.moves[source];
+        int count = from.childCount.get(source);
+        //points into the other pool until copySubtree has copied the children
+        firstChild[target] = count > 0 ? from.firstChild[source] : NONE;
+        childCount.set(target, count < 0 ? UNEXPANDED : count);
+        visits.set(target, from.visits.get(source));
+        wins.set(target, from.wins.get(source));
+        kingCaptures[target] = from.kingCaptures[source];
+    }
+
+    int getMove(int node) {
+        return moves[node];
+    }
+
+    void setMove(int node, int move, boolean kingCapture) {
+        moves[node] = move;
+        kingCaptures[node] = kingCapture;
+    }
+
+    boolean isKingCapture(int node) {
+        return kingCaptures[node];
+    }
+
+    int getFirstChild(int node) {
+        return firstChild[node];
+    }
+
+    /**
+     * @return number of children, UNEXPANDED or EXPANDING
+     */
+    int getChildCount(int node) {
+        return childCount.get(node);
+    }
+
+    /**
+     * Claims a node for expansion.
+     * @return false if the node is expanded or another thread is expanding it
+     */
+    boolean startExpansion(int node) {
+        return childCount.compareAndSet(node, UNEXPANDED, EXPANDING);
+    }
+
+    /**
+     * Publishes a node's children, written before, to all threads.
+     * @param first first child, NONE to leave the node unexpanded (the pool was full)
+     */
+    void finishExpansion(int node, int first, int count) {
+        firstChild[node] = first;
+        childCount.set(node, first == NONE ? UNEXPANDED : count);
+    }
+
+    int getVisits(int node) {
+        return visits.get(node);
+    }
+
+    long getWins(int node) {
+        return wins.get(node);
+    }
+
+    void addVisits(int node, int delta) {
+        visits.addAndGet(node, delta);
+    }
+
+    void addWins(int node, long delta) {
+        wins.addAndGet(node, delta);
+    }
+
+    int size() {
+        return Math.min(size.get(), capacity);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+}
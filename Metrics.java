@@ -0,0 +1,158 @@
+package chess;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+
+/**
+ * In-process metrics registry: counters, gauges and latency histograms by name.
+ * Recording is lock-free and allocation-free; reading goes through {@link #snapshot()} or a periodic dump to the log.
+ * Metrics can be switched off at startup with -Dchess.metrics=false, the hot path then only tests a constant.
+ */
+public class Metrics {
+
+    public static final boolean ENABLED = !"false".equals(System.getProperty("chess.metrics"));
+
+    private static final ConcurrentHashMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, DoubleSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    //metrics of the move handling hot path
+    public static final LongAdder CAN_MOVE = counter("piece.canMove");
+    public static final LatencyHistogram GENERATE_MOVES = histogram("piece.generatePossibleMoves");
+    public static final LatencyHistogram CHECK_DETECTION = histogram("board.checkDetection");
+    public static final LatencyHistogram CHECKMATE_DETECTION = histogram("board.checkMate");
+    public static final LatencyHistogram MOVE_HANDLING = histogram("gui.moveHandling");
+    public static final LongAdder PAWN_HASH_HITS = counter("eval.pawnHash.hits");
+    public static final LongAdder PAWN_HASH_MISSES = counter("eval.pawnHash.misses");
+    public static final LongAdder MOVE_CACHE_HITS = counter("gui.moveCache.hits");
+    public static final LongAdder MOVE_CACHE_MISSES = counter("gui.moveCache.misses");
+    public static final LongAdder MCTS_PLAYOUTS = counter("mcts.playouts");
+
+    static {
+        gauge("eval.pawnHash.hitRate", () -> {
+            long hits = PAWN_HASH_HITS.sum();
+            long probes = hits + PAWN_HASH_MISSES.sum();
+            return probes == 0 ? 0.0 : (double) hits / probes;
+        });
+        gauge("gui.moveCache.hitRate", () -> {
+            long hits = MOVE_CACHE_HITS.sum();
+            long probes = hits + MOVE_CACHE_MISSES.sum();
+            return probes == 0 ? 0.0 : (double) hits / probes;
+        });
+    }
+
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    public static void gauge(String name, DoubleSupplier supplier) {
+        GAUGES.put(name, supplier);
+    }
+
+    /**
+     * @return start stamp for {@link LatencyHistogram#recordSince(long)}, 0 when metrics are off
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the time since a {@link #start()} stamp.
+     */
+    public static void stop(LatencyHistogram histogram, long start) {
+        if (ENABLED) {
+            histogram.recordSince(start);
+        }
+    }
+
+    /**
+     * @return current values of all metrics
+     */
+    public static Snapshot snapshot() {
+        Map<String, Long> counters = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> counters.put(name, counter.sum()));
+        Map<String, Double> gauges = new TreeMap<>();
+        GAUGES.forEach((name, gauge) -> gauges.put(name, gauge.getAsDouble()));
+        Map<String, LatencyHistogram.Snapshot> histograms = new TreeMap<>();
+        HISTOGRAMS.forEach((name, histogram) -> histograms.put(name, histogram.snapshot()));
+        return new Snapshot(counters, gauges, histograms);
+    }
+
+    public static void reset() {
+        COUNTERS.values().forEach(LongAdder::reset);
+        HISTOGRAMS.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Logs a snapshot at a fixed rate on a daemon thread until {@link #stopPeriodicDump()}.
+     */
+    public static synchronized void startPeriodicDump(long period, TimeUnit unit) {
+        stopPeriodicDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> Main.LOGGER.log(Level.INFO, snapshot().toString()), period, period, unit);
+    }
+
+    public static synchronized void stopPeriodicDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Values of all metrics at one point in time.
+     */
+    public static class Snapshot {
+        private final Map<String, Long> counters;
+        private final Map<String, Double> gauges;
+        private final Map<String, LatencyHistogram.Snapshot> histograms;
+
+        Snapshot(Map<String, Long> counters, Map<String, Double> gauges, Map<String, LatencyHistogram.Snapshot> histograms) {
+            this.counters = counters;
+            this.gauges = gauges;
+            this.histograms = histograms;
+        }
+
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+
+        public Map<String, Double> getGauges() {
+            return gauges;
+        }
+
+        public Map<String, LatencyHistogram.Snapshot> getHistograms() {
+            return histograms;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("metrics");
+            counters.forEach((name, value) -> text.append("\n  ").append(name).append(": ").append(value));
+            gauges.forEach((name, value) -> text.append("\n  ").append(name).append(": ")
+                    .append(String.format("%.3f", value)));
+            histograms.values().forEach(histogram -> text.append("\n  ").append(histogram));
+            return text.toString();
+        }
+    }
+}
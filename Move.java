@@ -0,0 +1,136 @@
+package chess;
+
+/**
+ * A move of one piece from a start square to a destination square, used by the engine.
+ * Besides the coordinates it remembers what is needed to take the move back with Board.unmakeMove.
+ */
+public class Move {
+
+    private final int startX, startY, destX, destY;
+
+    //filled in by Board.makeMove
+    private Piece movedPiece;
+    private Piece capturedPiece;
+    private Player capturedPlayer;//victim's owner before a vampire converted it
+    private Piece promotedPiece;//queen created by a witch capture
+    private boolean pawnFirstStep;
+
+    private int score;//ordering score assigned by the move picker
+
+    public Move(int startX, int startY, int destX, int destY) {
+        this.startX = startX;
+        this.startY = startY;
+        this.destX = destX;
+        this.destY = destY;
+    }
+
+    public Move(Square start, Square dest) {
+        this(start.getX(), start.getY(), dest.getX(), dest.getY());
+    }
+
+    /**
+     * @param key move key as returned by {@link #key()}
+     * @return move with the same coordinates
+     */
+    public static Move fromKey(int key) {
+        int from = key >>> 6;
+        int to = key & 63;
+        return new Move(from >>> 3, from & 7, to >>> 3, to & 7);
+    }
+
+    /**
+     * @return compact 12-bit key of the start and destination squares
+     */
+    public int key() {
+        return (from() << 6) | to();
+    }
+
+    public int from() {
+        return startX * 8 + startY;
+    }
+
+    public int to() {
+        return destX * 8 + destY;
+    }
+
+    public boolean sameSquares(Move move) {
+        return move != null && move.key() == key();
+    }
+
+    public int getStartX() {
+        return startX;
+    }
+
+    public int getStartY() {
+        return startY;
+    }
+
+    public int getDestX() {
+        return destX;
+    }
+
+    public int getDestY() {
+        return destY;
+    }
+
+    public Piece getMovedPiece() {
+        return movedPiece;
+    }
+
+    public void setMovedPiece(Piece movedPiece) {
+        this.movedPiece = movedPiece;
+    }
+
+    public Piece getCapturedPiece() {
+        return capturedPiece;
+    }
+
+    public void setCapturedPiece(Piece capturedPiece) {
+        this.capturedPiece = capturedPiece;
+    }
+
+    public Player getCapturedPlayer() {
+        return capturedPlayer;
+    }
+
+    public void setCapturedPlayer(Player capturedPlayer) {
+        this.capturedPlayer = capturedPlayer;
+    }
+
+    /**
+     * @return true if the played move can not repeat an earlier position: a capture (including vampire conversions
+     * and witch promotions) or a pawn move. Only valid after the move was made.
+     */
+    public boolean isIrreversible() {
+        return capturedPiece != null || (movedPiece != null && movedPiece.getType() == PieceType.PAWN);
+    }
+
+    public Piece getPromotedPiece() {
+        return promotedPiece;
+    }
+
+    public void setPromotedPiece(Piece promotedPiece) {
+        this.promotedPiece = promotedPiece;
+    }
+
+    public boolean getPawnFirstStep() {
+        return pawnFirstStep;
+    }
+
+    public void setPawnFirstStep(boolean pawnFirstStep) {
+        this.pawnFirstStep = pawnFirstStep;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + startX + ", " + startY + ")->(" + destX + ", " + destY + ")";
+    }
+}
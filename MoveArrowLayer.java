@@ -0,0 +1,122 @@
+package chess;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Transparent layer that draws moves as arrows over the board buttons, e.g. the top lines of the analysis.
+ * Meant as the frame's glass pane: it has no mouse listeners, so clicks still reach the board.
+ * The first arrow is drawn strongest, later ones fainter and thinner.
+ */
+public class MoveArrowLayer extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Color ARROW_COLOR = new Color(0, 120, 215);
+    private static final float MIN_ALPHA = 0.25f;
+
+    private final JButton[][] squares;//indexed [y][x] like the board panel's buttons, null over a canvas
+    private final BoardCanvas canvas;
+    private List<Move> arrows = Collections.emptyList();
+
+    /**
+     * @param squares board buttons, indexed [file][rank]
+     */
+    public MoveArrowLayer(JButton[][] squares) {
+        this.squares = squares;
+        this.canvas = null;
+        setOpaque(false);
+    }
+
+    /**
+     * @param canvas board drawn by Java2D
+     */
+    public MoveArrowLayer(BoardCanvas canvas) {
+        this.squares = null;
+        this.canvas = canvas;
+        setOpaque(false);
+    }
+
+    /**
+     * @param moves moves to draw, most important first; an empty list clears the board
+     */
+    public void setArrows(List<Move> moves) {
+        arrows = new ArrayList<>(moves);
+        repaint();
+    }
+
+    public void clearArrows() {
+        setArrows(Collections.<Move>emptyList());
+    }
+
+    public List<Move> getArrows() {
+        return Collections.unmodifiableList(arrows);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (arrows.isEmpty()) {
+            return;
+        }
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            //drawn last to first so the best move ends up on top
+            for (int i = arrows.size() - 1; i >= 0; i--) {
+                float strength = arrows.size() == 1 ? 1f : 1f - (1f - MIN_ALPHA) * i / (arrows.size() - 1);
+                paintArrow(g2, arrows.get(i), strength);
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private void paintArrow(Graphics2D g2, Move move, float strength) {
+        Rectangle fromSquare = boundsOf(move.getStartX(), move.getStartY());
+        Rectangle toSquare = boundsOf(move.getDestX(), move.getDestY());
+        if (fromSquare == null || toSquare == null) {
+            return;
+        }
+        Point from = new Point((int) fromSquare.getCenterX(), (int) fromSquare.getCenterY());
+        Point to = new Point((int) toSquare.getCenterX(), (int) toSquare.getCenterY());
+        int size = Math.min(toSquare.width, toSquare.height);
+        float width = Math.max(2f, size * 0.12f * (0.5f + strength / 2));
+        double length = from.distance(to);
+        double head = Math.min(width * 3, length / 2);
+
+        //an arrow along the x axis, rotated into place
+        Path2D.Double arrow = new Path2D.Double();
+        arrow.moveTo(0, -width / 2);
+        arrow.lineTo(length - head, -width / 2);
+        arrow.lineTo(length - head, -head * 0.6);
+        arrow.lineTo(length, 0);
+        arrow.lineTo(length - head, head * 0.6);
+        arrow.lineTo(length - head, width / 2);
+        arrow.lineTo(0, width / 2);
+        arrow.closePath();
+        AffineTransform placement = AffineTransform.getTranslateInstance(from.x, from.y);
+        placement.rotate(to.x - from.x, to.y - from.y);
+
+        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, strength * 0.8f));
+        g2.setColor(ARROW_COLOR);
+        g2.fill(placement.createTransformedShape(arrow));
+    }
+
+    //square in this layer's coordinates, null until the board has been laid out
+    private Rectangle boundsOf(int x, int y) {
+        if (canvas != null) {
+            return canvas.getParent() == null ? null
+                    : SwingUtilities.convertRectangle(canvas, canvas.getSquareBounds(x, y), this);
+        }
+        JButton button = squares[y][x];
+        if (button == null || button.getParent() == null) {
+            return null;
+        }
+        return SwingUtilities.convertRectangle(button.getParent(), button.getBounds(), this);
+    }
+}
@@ -0,0 +1,72 @@
+package chess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a move applied to the model through {@link Piece#move(Game, Square)}.
+ * Disabled events cost a begin/shouldCommit check only; enable with e.g. "jcmd &lt;pid&gt; JFR.start settings=profile"
+ * or a custom .jfc that turns on chess.Move.
+ */
+@Name("chess.Move")
+@Label("Move")
+@Category({"Chess", "Model"})
+@Description("A piece move tried on the board model")
+@StackTrace(false)
+public class MoveEvent extends Event {
+
+    public static final String SPECIAL_NONE = "none";
+    public static final String SPECIAL_VAMPIRE = "vampire conversion";
+    public static final String SPECIAL_WITCH = "witch promotion";
+
+    @Label("Piece")
+    public String piece;
+
+    @Label("Color")
+    public String color;
+
+    @Label("From")
+    public String from;
+
+    @Label("To")
+    public String to;
+
+    @Label("Captured")
+    @Description("Captured piece, null for a quiet move")
+    public String captured;
+
+    @Label("Special")
+    public String special;
+
+    @Label("Moved")
+    @Description("False when the move was rejected by the piece's rules")
+    public boolean moved;
+
+    /**
+     * Fills in and commits the event if recording is enabled.
+     */
+    void commit(Piece piece, Square from, Square dest, Piece captured, boolean moved) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.piece = piece.getName();
+        this.color = piece.getPlayer().getColor();
+        this.from = from == null ? null : Notation.squareName(from.getX(), from.getY());
+        this.to = dest == null ? null : Notation.squareName(dest.getX(), dest.getY());
+        this.captured = captured == null ? null : captured.getName();
+        if (captured != null && piece.getType() == PieceType.VAMPIRE) {
+            this.special = SPECIAL_VAMPIRE;
+        } else if (captured != null && piece.getType() == PieceType.WITCH) {
+            this.special = SPECIAL_WITCH;
+        } else {
+            this.special = SPECIAL_NONE;
+        }
+        this.moved = moved;
+        commit();
+    }
+}
@@ -0,0 +1,165 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Generates engine moves from the pieces' own canMove rules.
+ * Captures and quiet moves can be generated separately so a move picker only pays for the stage it needs.
+ */
+public class MoveGenerator {
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * All moves of one side in raw 8x8 scan order, the same order as Piece.generatePossibleMoves.
+     */
+    public static void generateAll(Board board, String color, List<Move> moves) {
+        generateAll(board, Player.codeOf(color), moves);
+    }
+
+    /**
+     * @param code color code of the side to move
+     */
+    public static void generateAll(Board board, int code, List<Move> moves) {
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Square start = board.getSquare(i, j);
+                Piece piece = start.getPiece();
+                if (piece == null || piece.getColorCode() != code) {
+                    continue;
+                }
+                for (int x = 0; x < 8; x++) {
+                    for (int y = 0; y < 8; y++) {
+                        Square dest = board.getSquare(x, y);
+                        if (piece.canMove(board, start, dest)) {
+                            moves.add(new Move(start, dest));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return moves of a side that do not leave its own king capturable, in generateAll order
+     */
+    public static List<Move> legalMoves(Board board, String color) {
+        return legalMoves(board, Player.codeOf(color));
+    }
+
+    /**
+     * @param code color code of the side to move
+     */
+    public static List<Move> legalMoves(Board board, int code) {
+        List<Move> moves = new ArrayList<>();
+        generateAll(board, code, moves);
+        List<Move> legal = new ArrayList<>(moves.size());
+        for (Move move : moves) {
+            board.makeMove(move);
+            if (!StaticExchange.isInCheck(board, code)) {
+                legal.add(move);
+            }
+            board.unmakeMove(move);
+        }
+        return legal;
+    }
+
+    /**
+     * Moves of one side that land on an enemy piece.
+     */
+    public static void generateCaptures(Board board, String color, List<Move> moves) {
+        generate(board, Player.codeOf(color), moves, true, null);
+    }
+
+    public static void generateCaptures(Board board, int code, List<Move> moves) {
+        generate(board, code, moves, true, null);
+    }
+
+    /**
+     * Moves of one side that land on an enemy piece, giving up early once a search is stopped.
+     * @param stop polled before each piece's moves, the list is incomplete once it returned true
+     */
+    public static void generateCaptures(Board board, int code, List<Move> moves, BooleanSupplier stop) {
+        generate(board, code, moves, true, stop);
+    }
+
+    /**
+     * Moves of one side that land on an empty square.
+     */
+    public static void generateQuiets(Board board, String color, List<Move> moves) {
+        generate(board, Player.codeOf(color), moves, false, null);
+    }
+
+    public static void generateQuiets(Board board, int code, List<Move> moves) {
+        generate(board, code, moves, false, null);
+    }
+
+    /**
+     * Moves of one side that land on an empty square, giving up early once a search is stopped.
+     * @param stop polled before each piece's moves, the list is incomplete once it returned true
+     */
+    public static void generateQuiets(Board board, int code, List<Move> moves, BooleanSupplier stop) {
+        generate(board, code, moves, false, stop);
+    }
+
+    private static void generate(Board board, int code, List<Move> moves, boolean captures, BooleanSupplier stop) {
+        Square[] own = new Square[64];
+        Square[] targets = new Square[64];
+        int numOwn = 0;
+        int numTargets = 0;
+
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Square square = board.getSquare(i, j);
+                Piece piece = square.getPiece();
+                if (piece == null) {
+                    if (!captures) {
+                        targets[numTargets++] = square;
+                    }
+                } else if (piece.getColorCode() == code) {
+                    own[numOwn++] = square;
+                } else if (captures) {
+                    targets[numTargets++] = square;
+                }
+            }
+        }
+
+        for (int p = 0; p < numOwn; p++) {
+            //a piece's sweep over all targets runs the canMove rules up to 63 times, longer than a whole node
+            if (stop != null && stop.getAsBoolean()) {
+                return;
+            }
+            Square start = own[p];
+            Piece piece = start.getPiece();
+            for (int t = 0; t < numTargets; t++) {
+                if (piece.canMove(board, start, targets[t])) {
+                    moves.add(new Move(start, targets[t]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that a move remembered from another position (hash move, killer) is playable here.
+     * @param board board model
+     * @param color side to move
+     * @param move candidate move
+     * @return true if the side to move has a piece on the start square that can reach the destination
+     */
+    public static boolean isPseudoLegal(Board board, String color, Move move) {
+        return isPseudoLegal(board, Player.codeOf(color), move);
+    }
+
+    /**
+     * @param code color code of the side to move
+     */
+    public static boolean isPseudoLegal(Board board, int code, Move move) {
+        Square start = board.getSquare(move.getStartX(), move.getStartY());
+        Square dest = board.getSquare(move.getDestX(), move.getDestY());
+        Piece piece = start.getPiece();
+        return piece != null && piece.getColorCode() == code && piece.canMove(board, start, dest);
+    }
+}
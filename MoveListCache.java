@@ -0,0 +1,134 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Bounded LRU cache of the GUI's move lists and check tests, keyed by position.
+ * A piece's possible moves only depend on the pieces on the board and, for a pawn, whether it has moved yet,
+ * so entries are keyed by the Zobrist hash of the position plus the square (and pawn flag). A move or an undo
+ * changes the hash, which retires the old entries without any explicit invalidation; going back to a position,
+ * e.g. by undoing, finds them again. Moves are stored as square indices, so entries are valid on any board
+ * showing the same position.
+ */
+public class MoveListCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    //mixed into the position hash: one key per square and pawn first step flag
+    private static final long[] SQUARE_KEYS = new long[64 * 2];
+    private static final long CHECK_KEY;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x4d4f56454cL);
+        for (int i = 0; i < SQUARE_KEYS.length; i++) {
+            SQUARE_KEYS[i] = random.nextLong();
+        }
+        CHECK_KEY = random.nextLong();
+    }
+
+    private final Map<Long, int[]> moves;
+    private final Map<Long, Integer> checks;//color code of the king in check, -1 for none
+
+    //hash of the last position looked up, reused while the board does not change
+    private Board hashedBoard;
+    private long hashedVersion;
+    private String hashedTurn;
+    private long hash;
+
+    public MoveListCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity most entries kept, the least recently used are dropped first
+     */
+    public MoveListCache(int capacity) {
+        moves = lruMap(capacity);
+        checks = lruMap(capacity);
+    }
+
+    /**
+     * Cached {@link Piece#generatePossibleMoves(Game)}.
+     * @param game game model
+     * @param piece piece on the game's board
+     * @return squares the piece can move to, a new list the caller may change
+     */
+    public ArrayList<Square> getPossibleMoves(Game game, Piece piece) {
+        Board board = game.getBoard();
+        Square from = piece.getSquare();
+        boolean firstStep = piece.getType() == PieceType.PAWN && ((Pawn) piece).getFirstStep();
+        long key = positionHash(game)
+                ^ SQUARE_KEYS[(from.getX() * 8 + from.getY()) * 2 + (firstStep ? 1 : 0)];
+
+        int[] targets = moves.get(key);
+        if (targets == null) {
+            if (Metrics.ENABLED) Metrics.MOVE_CACHE_MISSES.increment();
+            List<Square> generated = piece.generatePossibleMoves(game);
+            targets = new int[generated.size()];
+            for (int i = 0; i < targets.length; i++) {
+                targets[i] = generated.get(i).getX() * 8 + generated.get(i).getY();
+            }
+            moves.put(key, targets);
+        } else if (Metrics.ENABLED) {
+            Metrics.MOVE_CACHE_HITS.increment();
+        }
+
+        ArrayList<Square> squares = new ArrayList<>(targets.length);
+        for (int target : targets) {
+            squares.add(board.getSquare(target >>> 3, target & 7));
+        }
+        return squares;
+    }
+
+    /**
+     * Cached {@link Board#checkKing(Game)}: only the pieces on the board decide whether a king is attacked.
+     * @return a king in check, null if none is
+     */
+    public King checkKing(Game game) {
+        Board board = game.getBoard();
+        long key = positionHash(game) ^ CHECK_KEY;
+        Integer color = checks.get(key);
+        if (color == null) {
+            if (Metrics.ENABLED) Metrics.MOVE_CACHE_MISSES.increment();
+            King king = board.checkKing(game);
+            checks.put(key, king == null ? -1 : king.getColorCode());
+            return king;
+        }
+        if (Metrics.ENABLED) Metrics.MOVE_CACHE_HITS.increment();
+        return color < 0 ? null : board.getKing(Player.colorOf(color));
+    }
+
+    public void clear() {
+        moves.clear();
+        checks.clear();
+        hashedBoard = null;
+    }
+
+    public int size() {
+        return moves.size() + checks.size();
+    }
+
+    private long positionHash(Game game) {
+        Board board = game.getBoard();
+        if (board != hashedBoard || board.getVersion() != hashedVersion || !game.getPlayerTurn().equals(hashedTurn)) {
+            hash = Zobrist.hash(board, game.getPlayerTurn());
+            hashedBoard = board;
+            hashedVersion = board.getVersion();
+            hashedTurn = game.getPlayerTurn();
+        }
+        return hash;
+    }
+
+    private static <V> Map<Long, V> lruMap(int capacity) {
+        return new LinkedHashMap<Long, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+}
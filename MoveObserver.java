@@ -0,0 +1,13 @@
+package chess;
+
+/**
+ * Told about every move played and taken back with {@link Board#makeMove(Move)} and {@link Board#unmakeMove(Move)},
+ * e.g. to keep state derived from the position up to date incrementally during a search.
+ * Called on the thread playing the move, after the board has changed.
+ */
+public interface MoveObserver {
+
+    void movePlayed(Board board, Move move);
+
+    void moveTakenBack(Board board, Move move);
+}
@@ -0,0 +1,63 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Search state used to order moves: killer moves per ply and the history heuristic.
+ * Killers are quiet moves that caused a beta cutoff at the same ply in a sibling node,
+ * history counts how often a quiet move caused a cutoff anywhere in the tree.
+ */
+public class MoveOrdering {
+
+    public static final int MAX_PLY = 128;
+    public static final int NO_MOVE = -1;
+    public static final int HISTORY_MAX = 1 << 20;
+
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[2][64 * 64];//[color][move key]
+
+    public MoveOrdering() {
+        clear();
+    }
+
+    public void clear() {
+        for (int[] killer : killers) {
+            Arrays.fill(killer, NO_MOVE);
+        }
+        for (int[] table : history) {
+            Arrays.fill(table, 0);
+        }
+    }
+
+    /**
+     * Records a quiet move that caused a beta cutoff.
+     * @param color color code of the side that played the move
+     * @param move the cutoff move
+     * @param ply distance from the root
+     * @param depth remaining depth, deeper cutoffs weigh more
+     */
+    public void updateQuietCutoff(int color, Move move, int ply, int depth) {
+        int key = move.key();
+        if (ply < MAX_PLY && killers[ply][0] != key) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = key;
+        }
+
+        int[] table = history[color];
+        table[key] += depth * depth;
+        if (table[key] > HISTORY_MAX) {
+            //age the whole table so old cutoffs fade out
+            for (int i = 0; i < table.length; i++) {
+                table[i] >>= 1;
+            }
+        }
+    }
+
+    public int getKiller(int ply, int slot) {
+        return ply < MAX_PLY ? killers[ply][slot] : NO_MOVE;
+    }
+
+    public int getHistory(int color, Move move) {
+        return history[color][move.key()];
+    }
+}
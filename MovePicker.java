@@ -0,0 +1,229 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Hands out the moves of a position one at a time in the order most likely to cause a cutoff: hash move, captures by
+ * MVV-LVA, killer moves, quiet moves by history score, then captures that lose material by static exchange
+ * evaluation. In captures-only mode the losing captures are dropped. Each stage is only generated when the previous
+ * one is exhausted, so a cutoff on the hash move or a capture skips generating the quiet moves altogether.
+ */
+public class MovePicker {
+
+    private static final int STAGE_HASH = 0;
+    private static final int STAGE_CAPTURES_INIT = 1;
+    private static final int STAGE_CAPTURES = 2;
+    private static final int STAGE_KILLERS = 3;
+    private static final int STAGE_QUIETS_INIT = 4;
+    private static final int STAGE_QUIETS = 5;
+    private static final int STAGE_BAD_CAPTURES = 6;
+    private static final int STAGE_DONE = 7;
+
+    private final Board board;
+    private final int color;
+    private final MoveOrdering ordering;
+    private final int ply;
+    private final int hashMove;
+    private final boolean capturesOnly;
+    private final BooleanSupplier stop;
+
+    private int stage;
+    private final ArrayList<Move> moves = new ArrayList<>();
+    private final ArrayList<Move> badCaptures = new ArrayList<>();
+    private int index;
+    private int killerSlot;
+    private final int[] killersPlayed = {MoveOrdering.NO_MOVE, MoveOrdering.NO_MOVE};
+
+    /**
+     * @param board board model
+     * @param color color code of the side to move
+     * @param ordering killer and history tables
+     * @param ply distance from the root, selects the killer slots
+     * @param hashMove key of the transposition table move or MoveOrdering.NO_MOVE
+     */
+    public MovePicker(Board board, int color, MoveOrdering ordering, int ply, int hashMove) {
+        this(board, color, ordering, ply, hashMove, false);
+    }
+
+    /**
+     * @param capturesOnly only hand out captures, used by quiescence search
+     */
+    public MovePicker(Board board, int color, MoveOrdering ordering, int ply, int hashMove, boolean capturesOnly) {
+        this(board, color, ordering, ply, hashMove, capturesOnly, null);
+    }
+
+    /**
+     * @param stop polled before every stage and between the pieces while generating, once it returns true
+     *             the picker hands out no more moves; null to never stop early
+     */
+    public MovePicker(Board board, int color, MoveOrdering ordering, int ply, int hashMove, boolean capturesOnly,
+                      BooleanSupplier stop) {
+        this.board = board;
+        this.color = color;
+        this.ordering = ordering;
+        this.ply = ply;
+        this.hashMove = capturesOnly ? MoveOrdering.NO_MOVE : hashMove;
+        this.capturesOnly = capturesOnly;
+        this.stop = stop;
+        this.stage = this.hashMove == MoveOrdering.NO_MOVE ? STAGE_CAPTURES_INIT : STAGE_HASH;
+    }
+
+    /**
+     * @return the next move to search, or null when all moves have been handed out or the search was stopped
+     */
+    public Move next() {
+        while (true) {
+            if (stop != null && stop.getAsBoolean()) {
+                return null;
+            }
+            switch (stage) {
+                case STAGE_HASH:
+                    stage = STAGE_CAPTURES_INIT;
+                    Move move = Move.fromKey(hashMove);
+                    if (MoveGenerator.isPseudoLegal(board, color, move)) {
+                        return move;
+                    }
+                    break;
+
+                case STAGE_CAPTURES_INIT:
+                    MoveGenerator.generateCaptures(board, color, moves, stop);
+                    for (Move capture : moves) {
+                        capture.setScore(mvvLva(capture));
+                    }
+                    index = 0;
+                    stage = STAGE_CAPTURES;
+                    break;
+
+                case STAGE_CAPTURES:
+                    Move capture = pickBest();
+                    if (capture != null) {
+                        if (capture.key() == hashMove) {
+                            break;
+                        }
+                        if (losesMaterial(capture)) {
+                            if (!capturesOnly) {
+                                badCaptures.add(capture);
+                            }
+                            break;
+                        }
+                        return capture;
+                    }
+                    stage = capturesOnly ? STAGE_DONE : STAGE_KILLERS;
+                    break;
+
+                case STAGE_KILLERS:
+                    if (killerSlot < 2) {
+                        int killer = ordering.getKiller(ply, killerSlot++);
+                        if (killer == MoveOrdering.NO_MOVE || killer == hashMove) {
+                            break;
+                        }
+                        Move killerMove = Move.fromKey(killer);
+                        //killers are quiet moves, a capture here was already handed out above
+                        if (!board.getSquare(killerMove.getDestX(), killerMove.getDestY()).hasChess()
+                                && MoveGenerator.isPseudoLegal(board, color, killerMove)) {
+                            killersPlayed[killerSlot - 1] = killer;
+                            return killerMove;
+                        }
+                        break;
+                    }
+                    stage = STAGE_QUIETS_INIT;
+                    break;
+
+                case STAGE_QUIETS_INIT:
+                    moves.clear();
+                    MoveGenerator.generateQuiets(board, color, moves, stop);
+                    for (Move quiet : moves) {
+                        quiet.setScore(ordering.getHistory(color, quiet));
+                    }
+                    index = 0;
+                    stage = STAGE_QUIETS;
+                    break;
+
+                case STAGE_QUIETS:
+                    Move quiet = pickBest();
+                    if (quiet != null) {
+                        int key = quiet.key();
+                        if (key != hashMove && key != killersPlayed[0] && key != killersPlayed[1]) {
+                            return quiet;
+                        }
+                        break;
+                    }
+                    index = 0;
+                    stage = STAGE_BAD_CAPTURES;
+                    break;
+
+                case STAGE_BAD_CAPTURES:
+                    if (index < badCaptures.size()) {
+                        return badCaptures.get(index++);
+                    }
+                    stage = STAGE_DONE;
+                    break;
+
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Selection sort step: swaps the best scored remaining move to the front of the list.
+     * Cheaper than sorting since most nodes cut off after the first few moves.
+     */
+    private Move pickBest() {
+        if (index >= moves.size()) {
+            return null;
+        }
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (moves.get(i).getScore() > moves.get(best).getScore()) {
+                best = i;
+            }
+        }
+        Move move = moves.get(best);
+        moves.set(best, moves.get(index));
+        moves.set(index, move);
+        index++;
+        return move;
+    }
+
+    /**
+     * Captures of a piece worth at least the attacker never lose material, only the others need the exchange evaluated.
+     */
+    private boolean losesMaterial(Move capture) {
+        Piece attacker = board.getSquare(capture.getStartX(), capture.getStartY()).getPiece();
+        Piece victim = board.getSquare(capture.getDestX(), capture.getDestY()).getPiece();
+        if (captureGain(attacker, victim) >= Evaluator.valueOf(attacker)) {
+            return false;
+        }
+        return StaticExchange.evaluate(board, capture) < 0;
+    }
+
+    /**
+     * Most valuable victim, least valuable attacker.
+     */
+    private int mvvLva(Move move) {
+        Piece attacker = board.getSquare(move.getStartX(), move.getStartY()).getPiece();
+        Piece victim = board.getSquare(move.getDestX(), move.getDestY()).getPiece();
+        return captureGain(attacker, victim) * 16 - Evaluator.valueOf(attacker) / 100;
+    }
+
+    /**
+     * Material won by a capture, counting the custom pieces' special effects.
+     * @param attacker capturing piece
+     * @param victim captured piece
+     * @return material gained by the capturing side
+     */
+    public static int captureGain(Piece attacker, Piece victim) {
+        int value = Evaluator.valueOf(victim);
+        PieceType type = attacker.getType();
+        if (type == PieceType.VAMPIRE) {
+            //the victim is not removed but joins the vampire's side
+            return 2 * value;
+        }
+        if (type == PieceType.WITCH) {
+            return value + Evaluator.PIECE_VALUES[PieceType.QUEEN.getCode()] - Evaluator.PIECE_VALUES[PieceType.WITCH.getCode()];
+        }
+        return value;
+    }
+}
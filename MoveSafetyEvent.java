@@ -0,0 +1,31 @@
+package chess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a legality test by {@link Board#isMoveSafe(Game, Piece, Square)}.
+ */
+@Name("chess.MoveSafety")
+@Label("Move Safety Check")
+@Category({"Chess", "Model"})
+@Description("Test whether a move leaves the own king in check")
+@StackTrace(false)
+public class MoveSafetyEvent extends Event {
+
+    @Label("Piece")
+    public String piece;
+
+    @Label("From")
+    public String from;
+
+    @Label("To")
+    public String to;
+
+    @Label("Safe")
+    public boolean safe;
+}
@@ -0,0 +1,12 @@
+package chess;
+
+import java.util.List;
+
+/**
+ * Receives the lines of every completed iteration of a multi-PV search, best first.
+ * Called on the searching thread.
+ */
+public interface MultiPvListener {
+
+    void linesUpdated(List<SearchResult> lines);
+}
@@ -0,0 +1,270 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.nio.file.Paths;
+
+/**
+ * Neural network evaluation (NNUE) with incrementally updated accumulators.
+ * While a search runs, the evaluator observes its board: every move played pushes a copy of the accumulators
+ * with only the inputs of the two squares the move changed taken out and put in, and every move taken back
+ * pops it, so a position costs a few vector additions instead of a sum over all its pieces. A king move changes
+ * every input of its own side, whose accumulator is then rebuilt.
+ * Boards that are not being searched, or were changed behind the evaluator's back, are evaluated from scratch.
+ * Inference is integer arithmetic on flat arrays in loops simple enough for the JIT to vectorize; the Vector API
+ * is an incubator module from Java 16 on and so not available to the Java 11 release this builds for.
+ * A position without both kings falls back to the material evaluation.
+ */
+public class NnueEvaluator extends Evaluator implements MoveObserver {
+
+    public static final int MAX_STACK = 2 * MoveOrdering.MAX_PLY;//deeper lines are evaluated from scratch
+
+    private final NnueNetwork network;
+    private final int size;//units per accumulator
+
+    //accumulators by stack entry and perspective (color code): entry * 2 * size + perspective * size + unit;
+    //the last entry is scratch space for evaluations from scratch
+    private final short[] accumulators;
+    private final boolean[] valid;//entry * 2 + perspective
+    private int top;
+    private int overflow;//moves played past the end of the stack
+    private Board board;//board being searched, null when none
+    private int syncedVersion;//board version the top entry belongs to
+
+    private final int[] input;
+    private final int[] hidden1;
+    private final int[] hidden2;
+
+    public NnueEvaluator(NnueNetwork network) {
+        super(new PawnHashTable(0));//only the material fallback uses it
+        this.network = network;
+        this.size = network.getAccumulatorSize();
+        accumulators = new short[(MAX_STACK + 1) * 2 * size];
+        valid = new boolean[(MAX_STACK + 1) * 2];
+        input = new int[2 * size];
+        hidden1 = new int[network.getHidden1()];
+        hidden2 = new int[network.getHidden2()];
+    }
+
+    /**
+     * @param path network file, see {@link NnueNetwork}
+     */
+    public static NnueEvaluator load(String path) throws IOException {
+        return new NnueEvaluator(NnueNetwork.load(Paths.get(path)));
+    }
+
+    /**
+     * @return evaluator with the network named by -Dchess.nnue, null if none is set or it can not be loaded
+     */
+    public static NnueEvaluator openDefault() {
+        String path = System.getProperty("chess.nnue");
+        if (path == null) {
+            return null;
+        }
+        try {
+            return load(path);
+        } catch (IOException e) {
+            Main.LOGGER.warning("Can not load network: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void attach(Board board) {
+        detach();
+        this.board = board;
+        board.setMoveObserver(this);
+        top = 0;
+        overflow = 0;
+        refresh(board, 0, Player.WHITE_CODE);
+        refresh(board, 0, Player.BLACK_CODE);
+        syncedVersion = board.getVersion();
+    }
+
+    @Override
+    public void detach() {
+        if (board != null && board.getMoveObserver() == this) {
+            board.setMoveObserver(null);
+        }
+        board = null;
+    }
+
+    @Override
+    public void movePlayed(Board board, Move move) {
+        if (board != this.board) {
+            return;
+        }
+        if (overflow > 0 || top + 1 >= MAX_STACK) {
+            overflow++;
+            return;
+        }
+        System.arraycopy(accumulators, top * 2 * size, accumulators, (top + 1) * 2 * size, 2 * size);
+        top++;
+
+        Piece moved = move.getMovedPiece();
+        Piece captured = move.getCapturedPiece();
+        //a vampire's victim has already changed sides
+        int capturedColor = captured == null ? 0 : moved.getType() == PieceType.VAMPIRE
+                ? Player.codeOf(move.getCapturedPlayer().getColor()) : captured.getColorCode();
+        Square start = board.getSquare(move.getStartX(), move.getStartY());
+        Square dest = board.getSquare(move.getDestX(), move.getDestY());
+        for (int perspective = 0; perspective < 2; perspective++) {
+            int entry = top * 2 + perspective;
+            valid[entry] = valid[entry - 2];
+            if (!valid[entry]) {
+                continue;
+            }
+            if (moved.getType() == PieceType.KING && moved.getColorCode() == perspective) {
+                refresh(board, top, perspective);
+                continue;
+            }
+            King king = board.getKing(Player.colorOf(perspective));
+            if (king == null) {
+                valid[entry] = false;//captured
+                continue;
+            }
+            int kingSquare = orient(king.getSquare().getX() * 8 + king.getSquare().getY(), perspective);
+            int base = entry * size;
+            update(base, kingSquare, perspective, moved.getType(), moved.getColorCode(), start, -1);
+            if (captured != null) {
+                update(base, kingSquare, perspective, captured.getType(), capturedColor, dest, -1);
+            }
+            if (start.getPiece() != null) {
+                update(base, kingSquare, perspective, start.getPiece().getType(), start.getPiece().getColorCode(), start, 1);
+            }
+            update(base, kingSquare, perspective, dest.getPiece().getType(), dest.getPiece().getColorCode(), dest, 1);
+        }
+        syncedVersion = board.getVersion();
+    }
+
+    @Override
+    public void moveTakenBack(Board board, Move move) {
+        if (board != this.board) {
+            return;
+        }
+        if (overflow > 0) {
+            overflow--;
+        } else if (top > 0) {
+            top--;
+        }
+        syncedVersion = board.getVersion();
+    }
+
+    @Override
+    public int evaluate(Board board) {
+        return evaluate(board, Player.WHITE_CODE);
+    }
+
+    @Override
+    public int evaluate(Board board, int color) {
+        if (board.getKing(Player.WHITE) == null || board.getKing(Player.BLACK) == null) {
+            return super.evaluate(board, color);
+        }
+        int entry;
+        if (board == this.board && overflow == 0 && board.getVersion() == syncedVersion) {
+            entry = top;
+            for (int perspective = 0; perspective < 2; perspective++) {
+                if (!valid[top * 2 + perspective]) {
+                    refresh(board, top, perspective);
+                }
+            }
+        } else {
+            entry = MAX_STACK;
+            refresh(board, entry, Player.WHITE_CODE);
+            refresh(board, entry, Player.BLACK_CODE);
+        }
+        return forward(entry, color);
+    }
+
+    /**
+     * Rebuilds one accumulator from all pieces on the board.
+     */
+    private void refresh(Board board, int entry, int perspective) {
+        int base = (entry * 2 + perspective) * size;
+        System.arraycopy(network.getFeatureBiases(), 0, accumulators, base, size);
+        King king = board.getKing(Player.colorOf(perspective));
+        valid[entry * 2 + perspective] = king != null;
+        if (king == null) {
+            return;
+        }
+        int kingSquare = orient(king.getSquare().getX() * 8 + king.getSquare().getY(), perspective);
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                Piece piece = board.getSquare(x, y).getPiece();
+                if (piece != null) {
+                    update(base, kingSquare, perspective, piece.getType(), piece.getColorCode(), board.getSquare(x, y), 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds (sign 1) or subtracts (sign -1) the weights of one piece's input; kings have none.
+     */
+    private void update(int base, int kingSquare, int perspective, PieceType type, int colorCode, Square square, int sign) {
+        int kind = NnueNetwork.kindOf(type);
+        if (kind < 0) {
+            return;
+        }
+        int piece = kind * 2 + (colorCode == perspective ? 0 : 1);
+        int feature = NnueNetwork.featureIndex(kingSquare, piece, orient(square.getX() * 8 + square.getY(), perspective));
+        ShortBuffer weights = network.getFeatureWeights();
+        int offset = feature * size;
+        if (sign > 0) {
+            for (int i = 0; i < size; i++) {
+                accumulators[base + i] += weights.get(offset + i);
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                accumulators[base + i] -= weights.get(offset + i);
+            }
+        }
+    }
+
+    /**
+     * Runs the layers after the feature transformer, the side to move's accumulator first.
+     * @return centipawns from the side to move's point of view
+     */
+    private int forward(int entry, int us) {
+        int ours = (entry * 2 + us) * size;
+        int theirs = (entry * 2 + (1 - us)) * size;
+        for (int i = 0; i < size; i++) {
+            input[i] = clip(accumulators[ours + i]);
+            input[size + i] = clip(accumulators[theirs + i]);
+        }
+        layer(input, network.getBiases1(), network.getWeights1(), hidden1);
+        layer(hidden1, network.getBiases2(), network.getWeights2(), hidden2);
+
+        byte[] weights = network.getOutputWeights();
+        long sum = network.getOutputBias();
+        for (int i = 0; i < hidden2.length; i++) {
+            sum += hidden2[i] * weights[i];
+        }
+        return (int) (sum * network.getOutputScale() / (NnueNetwork.QA << NnueNetwork.WEIGHT_SHIFT));
+    }
+
+    private static void layer(int[] in, int[] biases, byte[] weights, int[] out) {
+        int inputs = in.length;
+        for (int unit = 0; unit < out.length; unit++) {
+            int sum = biases[unit];
+            int row = unit * inputs;
+            for (int i = 0; i < inputs; i++) {
+                sum += in[i] * weights[row + i];
+            }
+            out[unit] = clip(sum >> NnueNetwork.WEIGHT_SHIFT);
+        }
+    }
+
+    private static int clip(int value) {
+        return Math.max(0, Math.min(NnueNetwork.QA, value));
+    }
+
+    //black sees the board with the ranks flipped, so both sides' pieces start at the same end
+    private static int orient(int square, int perspective) {
+        return perspective == Player.WHITE_CODE ? square : square ^ 56;
+    }
+
+    public NnueNetwork getNetwork() {
+        return network;
+    }
+}
@@ -0,0 +1,295 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Quantized weights of an efficiently updatable neural network (NNUE) evaluation.
+ * Inputs are (own king square, piece, square) triples seen from one side, the piece being one of the seven
+ * non-king kinds, Vampire and Witch included, of either color; a perspective flips the ranks so both sides see
+ * their own pieces from the same end. The feature transformer sums int16 weights into an accumulator per side,
+ * followed by two hidden layers and the output with int8 weights, each after a clipped ReLU to [0, {@link #QA}].
+ * Int8 weights are scaled by 2^{@link #WEIGHT_SHIFT}.
+ *
+ * The binary file is little endian: a header of seven ints (magic, version, accumulator size, first and second
+ * hidden layer size, output scale, output bias), then the feature transformer's int16 biases and weights,
+ * and for each further layer its int32 biases followed by its int8 weights, row by row.
+ * The feature weights, by far the largest part, are read straight from the memory-mapped file.
+ */
+public class NnueNetwork {
+
+    public static final int MAGIC = 0x4E4E5545;//"NNUE"
+    public static final int VERSION = 1;
+    public static final int KINDS = 7;//piece kinds with features, the king has none
+    public static final int PIECES = KINDS * 2;//own and enemy
+    public static final int FEATURES = 64 * PIECES * 64;
+    public static final int QA = 127;//activations are clipped to [0, QA]
+    public static final int WEIGHT_SHIFT = 6;
+    public static final int DEFAULT_ACCUMULATOR = 128;
+    public static final int DEFAULT_HIDDEN = 32;
+    private static final int HEADER_BYTES = 7 * 4;
+
+    //feature kind by PieceType code, -1 for the king
+    private static final int[] KIND_OF_TYPE = {0, 1, 2, 3, 4, -1, 5, 6};
+
+    private final int accumulatorSize;
+    private final int hidden1;
+    private final int hidden2;
+    private final int outputScale;//centipawns of an output of QA << WEIGHT_SHIFT
+
+    private final short[] featureBiases;
+    private final ShortBuffer featureWeights;//feature * accumulatorSize + unit
+    private final int[] biases1;
+    private final byte[] weights1;//unit * (2 * accumulatorSize) + input
+    private final int[] biases2;
+    private final byte[] weights2;
+    private final int outputBias;
+    private final byte[] outputWeights;
+
+    public NnueNetwork(int accumulatorSize, int hidden1, int hidden2, int outputScale,
+                       short[] featureBiases, ShortBuffer featureWeights, int[] biases1, byte[] weights1,
+                       int[] biases2, byte[] weights2, int outputBias, byte[] outputWeights) {
+        this.accumulatorSize = accumulatorSize;
+        this.hidden1 = hidden1;
+        this.hidden2 = hidden2;
+        this.outputScale = outputScale;
+        this.featureBiases = featureBiases;
+        this.featureWeights = featureWeights;
+        this.biases1 = biases1;
+        this.weights1 = weights1;
+        this.biases2 = biases2;
+        this.weights2 = weights2;
+        this.outputBias = outputBias;
+        this.outputWeights = outputWeights;
+    }
+
+    /**
+     * Maps a network file into memory.
+     * @throws IOException if the file can not be read or is not a network of this version
+     */
+    public static NnueNetwork load(Path path) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());//stays valid after closing
+        }
+        ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " network: " + path);
+            }
+            int accumulatorSize = in.getInt();
+            int hidden1 = in.getInt();
+            int hidden2 = in.getInt();
+            int outputScale = in.getInt();
+            int outputBias = in.getInt();
+            if (accumulatorSize <= 0 || hidden1 <= 0 || hidden2 <= 0 || in.remaining() != bodyBytes(accumulatorSize, hidden1, hidden2)) {
+                throw new IOException("Bad network layout: " + path);
+            }
+
+            short[] featureBiases = new short[accumulatorSize];
+            in.asShortBuffer().get(featureBiases);
+            in.position(in.position() + 2 * accumulatorSize);
+            int featureBytes = 2 * FEATURES * accumulatorSize;
+            ByteBuffer features = in.slice().order(ByteOrder.LITTLE_ENDIAN);
+            features.limit(featureBytes);
+            ShortBuffer featureWeights = features.asShortBuffer();
+            in.position(in.position() + featureBytes);
+
+            int[] biases1 = readInts(in, hidden1);
+            byte[] weights1 = readBytes(in, hidden1 * 2 * accumulatorSize);
+            int[] biases2 = readInts(in, hidden2);
+            byte[] weights2 = readBytes(in, hidden2 * hidden1);
+            byte[] outputWeights = readBytes(in, hidden2);
+            return new NnueNetwork(accumulatorSize, hidden1, hidden2, outputScale, featureBiases, featureWeights,
+                    biases1, weights1, biases2, weights2, outputBias, outputWeights);
+        } catch (RuntimeException e) {
+            throw new IOException("Bad network file: " + path, e);
+        }
+    }
+
+    /**
+     * Writes the network in the format {@link #load(Path)} reads.
+     */
+    public void save(Path path) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + bodyBytes(accumulatorSize, hidden1, hidden2))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(accumulatorSize).putInt(hidden1).putInt(hidden2)
+                .putInt(outputScale).putInt(outputBias);
+        for (short bias : featureBiases) {
+            out.putShort(bias);
+        }
+        for (int i = 0; i < FEATURES * accumulatorSize; i++) {
+            out.putShort(featureWeights.get(i));
+        }
+        for (int bias : biases1) {
+            out.putInt(bias);
+        }
+        out.put(weights1);
+        for (int bias : biases2) {
+            out.putInt(bias);
+        }
+        out.put(weights2);
+        out.put(outputWeights);
+        out.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    /**
+     * A network that only counts material with the evaluator's piece values, to a resolution of about 35
+     * centipawns: a starting point for training and a known answer for testing the inference.
+     * Accumulator unit k counts the side's own pieces of kind k, unit 7 + k the enemy's. The first hidden layer
+     * sums the minor pieces and pawns and the major pieces (the Vampire and the Witch among them) of each side in
+     * separate units, which keeps a full custom army below the clipping limit; the second passes them on and the
+     * output adds the side to move's and subtracts the other side's.
+     */
+    public static NnueNetwork material(int accumulatorSize) {
+        if (accumulatorSize < PIECES) {
+            throw new IllegalArgumentException("Accumulator needs at least " + PIECES + " units");
+        }
+        final int count = 15;//per piece, eight pawns still fit under QA
+        short[] featureWeights = new short[FEATURES * accumulatorSize];
+        for (int king = 0; king < 64; king++) {
+            for (int piece = 0; piece < PIECES; piece++) {
+                for (int square = 0; square < 64; square++) {
+                    int unit = piece % 2 == 0 ? piece / 2 : KINDS + piece / 2;
+                    featureWeights[featureIndex(king, piece, square) * accumulatorSize + unit] = count;
+                }
+            }
+        }
+        int inputs = 2 * accumulatorSize;
+        byte[] weights1 = new byte[DEFAULT_HIDDEN * inputs];
+        int[] values = new int[KINDS];//evaluator piece values by feature kind
+        for (PieceType type : PieceType.values()) {
+            if (kindOf(type) >= 0) {
+                values[kindOf(type)] = Evaluator.PIECE_VALUES[type.getCode()];
+            }
+        }
+        for (int kind = 0; kind < KINDS; kind++) {
+            //units 0 and 1: pawns and minors of the side to move and of the other side, 2 and 3: the rest;
+            //the side to move's own accumulator comes first in the input
+            int unit = kind < 3 ? 0 : 2;
+            weights1[unit * inputs + kind] = (byte) (values[kind] / 8);
+            weights1[(unit + 1) * inputs + KINDS + kind] = (byte) (values[kind] / 8);
+        }
+        byte[] weights2 = new byte[DEFAULT_HIDDEN * DEFAULT_HIDDEN];
+        byte[] outputWeights = new byte[DEFAULT_HIDDEN];
+        for (int unit = 0; unit < 4; unit++) {
+            weights2[unit * DEFAULT_HIDDEN + unit] = 1 << WEIGHT_SHIFT;
+            outputWeights[unit] = (byte) (unit % 2 == 0 ? 1 : -1);
+        }
+        //one material unit is (8 << WEIGHT_SHIFT) / count centipawns
+        int outputScale = (QA << WEIGHT_SHIFT) * (8 << WEIGHT_SHIFT) / count;
+        return new NnueNetwork(accumulatorSize, DEFAULT_HIDDEN, DEFAULT_HIDDEN, outputScale,
+                new short[accumulatorSize], ShortBuffer.wrap(featureWeights), new int[DEFAULT_HIDDEN], weights1,
+                new int[DEFAULT_HIDDEN], weights2, 0, outputWeights);
+    }
+
+    /**
+     * Writes the material network, e.g. to try the NNUE evaluation before a trained network exists.
+     * Usage: NnueNetwork output.nnue
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: NnueNetwork output.nnue");
+            return;
+        }
+        material(DEFAULT_ACCUMULATOR).save(Paths.get(args[0]));
+    }
+
+    /**
+     * @param kingSquare the perspective's king square, ranks flipped for black
+     * @param piece feature kind * 2, plus one for an enemy piece
+     * @param square the piece's square, ranks flipped for black
+     * @return input index
+     */
+    public static int featureIndex(int kingSquare, int piece, int square) {
+        return (kingSquare * PIECES + piece) * 64 + square;
+    }
+
+    /**
+     * @return feature kind of a piece type, -1 for the king
+     */
+    public static int kindOf(PieceType type) {
+        return KIND_OF_TYPE[type.getCode()];
+    }
+
+    private static int bodyBytes(int accumulatorSize, int hidden1, int hidden2) {
+        return 2 * accumulatorSize + 2 * FEATURES * accumulatorSize
+                + 4 * hidden1 + hidden1 * 2 * accumulatorSize
+                + 4 * hidden2 + hidden2 * hidden1
+                + hidden2;
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    private static byte[] readBytes(ByteBuffer in, int count) {
+        byte[] values = new byte[count];
+        in.get(values);
+        return values;
+    }
+
+    public int getAccumulatorSize() {
+        return accumulatorSize;
+    }
+
+    public int getHidden1() {
+        return hidden1;
+    }
+
+    public int getHidden2() {
+        return hidden2;
+    }
+
+    public int getOutputScale() {
+        return outputScale;
+    }
+
+    short[] getFeatureBiases() {
+        return featureBiases;
+    }
+
+    ShortBuffer getFeatureWeights() {
+        return featureWeights;
+    }
+
+    int[] getBiases1() {
+        return biases1;
+    }
+
+    byte[] getWeights1() {
+        return weights1;
+    }
+
+    int[] getBiases2() {
+        return biases2;
+    }
+
+    byte[] getWeights2() {
+        return weights2;
+    }
+
+    int getOutputBias() {
+        return outputBias;
+    }
+
+    byte[] getOutputWeights() {
+        return outputWeights;
+    }
+}
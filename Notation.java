@@ -0,0 +1,232 @@
+package chess;
+
+/**
+ * Conversion between standard chess notation and the board model.
+ *
+ * The model differs from standard chess in who moves first: black opens the game from x = 7..6.
+ * Standard notation is mapped onto it with a color swap plus a vertical mirror, which is an exact symmetry
+ * of the starting position: notation "white" is the model's black, rank r is x = 8 - r and file a..h is y = 0..7.
+ * A standard game such as 1.e4 e5 therefore replays move for move with the model's own turn order.
+ */
+public class Notation {
+
+    private static final String FILES = "abcdefgh";
+
+    private Notation() {
+    }
+
+    /**
+     * @param notationWhite true for the side notation calls white (the side that moves first)
+     * @return model color playing that side
+     */
+    public static String modelColor(boolean notationWhite) {
+        return notationWhite ? Player.BLACK : Player.WHITE;
+    }
+
+    /**
+     * @return square name such as "e4" for model coordinates
+     */
+    public static String squareName(int x, int y) {
+        return "" + FILES.charAt(y) + (char) ('0' + (8 - x));
+    }
+
+    /**
+     * @param name square name such as "e4"
+     * @return {x, y} model coordinates, or null if the name is not a square
+     */
+    public static int[] parseSquare(String name) {
+        if (name.length() != 2) {
+            return null;
+        }
+        int y = FILES.indexOf(name.charAt(0));
+        int rank = name.charAt(1) - '0';
+        if (y < 0 || rank < 1 || rank > 8) {
+            return null;
+        }
+        return new int[]{8 - rank, y};
+    }
+
+    /**
+     * @return coordinate notation such as "e2e4"
+     */
+    public static String toCoordinate(Move move) {
+        return squareName(move.getStartX(), move.getStartY()) + squareName(move.getDestX(), move.getDestY());
+    }
+
+    /**
+     * @param text coordinate notation such as "e2e4"
+     * @return move, or null if the text is not a coordinate move
+     */
+    public static Move parseCoordinate(String text) {
+        if (text.length() != 4) {
+            return null;
+        }
+        int[] start = parseSquare(text.substring(0, 2));
+        int[] dest = parseSquare(text.substring(2, 4));
+        if (start == null || dest == null) {
+            return null;
+        }
+        return new Move(start[0], start[1], dest[0], dest[1]);
+    }
+
+    /**
+     * @param letter SAN piece letter, 'P' for pawns
+     * @return PieceType code, or -1 if the letter is unknown
+     */
+    public static int kindOfLetter(char letter) {
+        for (PieceType type : PieceType.values()) {
+            if (type.getLetter() == letter) {
+                return type.getCode();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Resolves a move in standard algebraic notation against the board.
+     * Castling, promotion and en passant do not exist in the model and are rejected.
+     * @param board board model
+     * @param color model color of the side to move
+     * @param san move text such as "Nf3", "exd5" or "Qh4+"
+     * @return the matching move, or null if the text does not describe exactly one playable move
+     */
+    public static Move parseSan(Board board, String color, String san) {
+        String text = san.replaceAll("[+#!?]", "");
+        if (text.isEmpty() || text.startsWith("O-") || text.startsWith("0-") || text.indexOf('=') >= 0) {
+            return null;
+        }
+
+        int kind = PieceType.PAWN.getCode();
+        int pos = 0;
+        if (Character.isUpperCase(text.charAt(0))) {
+            kind = kindOfLetter(text.charAt(0));
+            pos = 1;
+        }
+        if (kind < 0 || text.length() - pos < 2) {
+            return null;
+        }
+
+        int[] dest = parseSquare(text.substring(text.length() - 2));
+        if (dest == null) {
+            return null;
+        }
+
+        //optional disambiguation between the piece letter and the destination
+        int fromFile = -1;
+        int fromRank = -1;
+        for (char c : text.substring(pos, text.length() - 2).toCharArray()) {
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = 8 - (c - '0');
+            }
+        }
+
+        Square destSquare = board.getSquare(dest[0], dest[1]);
+        Move found = null;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Square start = board.getSquare(i, j);
+                Piece piece = start.getPiece();
+                if (piece == null || piece.getColorCode() != Player.codeOf(color) || piece.getType().getCode() != kind
+                        || (fromFile >= 0 && fromFile != j) || (fromRank >= 0 && fromRank != i)) {
+                    continue;
+                }
+                if (piece.canMove(board, start, destSquare)) {
+                    if (found != null) {
+                        return null;//ambiguous
+                    }
+                    found = new Move(start, destSquare);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Sets up a game from the first fields of a FEN or EPD record: piece placement and side to move.
+     * Castling and en passant fields are accepted and ignored. Besides the standard letters, V and W stand for
+     * the vampire and the witch. A pawn on its starting rank may still advance two squares.
+     * @param fen record such as "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1"
+     * @return game with the position and the side to move, its history starting there
+     * @throws IllegalArgumentException if the placement or the side to move is malformed
+     */
+    public static Game parseFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("Bad FEN: " + fen);
+        }
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("Bad FEN placement: " + fields[0]);
+        }
+        Player white = new Player(Player.WHITE);
+        Player black = new Player(Player.BLACK);
+        Board board = new Board(Board.BLANK_BOARD, white, black);
+        for (int r = 0; r < 8; r++) {
+            int x = r;//the first field is rank 8, x = 0
+            int y = 0;
+            for (char c : ranks[r].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    y += c - '0';
+                    continue;
+                }
+                int kind = kindOfLetter(Character.toUpperCase(c));
+                if (kind < 0 || y > 7) {
+                    throw new IllegalArgumentException("Bad FEN placement: " + fields[0]);
+                }
+                Player owner = modelColor(Character.isUpperCase(c)).equals(Player.WHITE) ? white : black;
+                Piece piece = PieceType.fromCode(kind).create(owner, board.getSquare(x, y));
+                if (kind == PieceType.PAWN.getCode()) {
+                    //pawns advance towards x = 7 for white and x = 0 for black
+                    int startRank = owner == white ? 1 : 6;
+                    ((Pawn) piece).setFirstStep(x == startRank);
+                }
+                y++;
+            }
+            if (y != 8) {
+                throw new IllegalArgumentException("Bad FEN placement: " + fields[0]);
+            }
+        }
+        if (!fields[1].equals("w") && !fields[1].equals("b")) {
+            throw new IllegalArgumentException("Bad FEN side to move: " + fields[1]);
+        }
+        Game game = new Game(white, black, board);
+        game.setPlayerTurn(modelColor(fields[1].equals("w")));
+        game.resetHistory();
+        return game;
+    }
+
+    /**
+     * @return FEN of the game's position, with no castling or en passant and the history's halfmove clock
+     */
+    public static String toFen(Game game) {
+        StringBuilder fen = new StringBuilder();
+        for (int x = 0; x < 8; x++) {
+            int empty = 0;
+            for (int y = 0; y < 8; y++) {
+                Piece piece = game.getBoard().getSquare(x, y).getPiece();
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char letter = piece.getType().getLetter();
+                boolean notationWhite = piece.getPlayer().getColor().equals(modelColor(true));
+                fen.append(notationWhite ? Character.toUpperCase(letter) : Character.toLowerCase(letter));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (x < 7) {
+                fen.append('/');
+            }
+        }
+        fen.append(game.getPlayerTurn().equals(modelColor(true)) ? " w" : " b");
+        fen.append(" - - ").append(game.getHistory().getHalfmoveClock()).append(" 1");
+        return fen.toString();
+    }
+}
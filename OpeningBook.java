@@ -0,0 +1,178 @@
+package chess;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opening book backed by a memory-mapped file of (position hash, move, weight) entries sorted by hash.
+ * Lookups binary search the mapping directly, nothing is parsed or copied onto the heap when the book is opened.
+ * Books are shared per file, so every engine in the JVM uses the same mapping.
+ *
+ * File layout (big endian): int magic, int version, long entry count, then 16-byte entries of
+ * long position hash, int move key, int weight.
+ */
+public class OpeningBook {
+
+    public static final int MAGIC = 0x43424B31;//"CBK1"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int ENTRY_BYTES = 16;
+    public static final String DEFAULT_FILE = "book.bin";
+
+    private static final ConcurrentHashMap<Path, OpeningBook> SHARED = new ConcurrentHashMap<>();
+
+    /**
+     * A book move with its weight.
+     */
+    public static class BookMove {
+        private final Move move;
+        private final int weight;
+
+        public BookMove(Move move, int weight) {
+            this.move = move;
+            this.weight = weight;
+        }
+
+        public Move getMove() {
+            return move;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+
+    private final MappedByteBuffer buffer;
+    private final int entries;
+
+    private OpeningBook(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            //the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an opening book: " + path);
+        }
+        long count = buffer.getLong(8);
+        if (count < 0 || HEADER_BYTES + count * ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("Truncated opening book: " + path);
+        }
+        entries = (int) count;
+    }
+
+    /**
+     * Opens a book file, reusing the mapping if the file is already open in this JVM.
+     * @param path book file
+     * @return shared book instance
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try {
+            return SHARED.computeIfAbsent(path.toAbsolutePath().normalize(), p -> {
+                try {
+                    return new OpeningBook(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the default book in the working directory, or null if there is none
+     */
+    public static OpeningBook openDefault() {
+        Path path = Paths.get(DEFAULT_FILE);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            return open(path);
+        } catch (IOException e) {
+            Main.LOGGER.warning("Can not open opening book: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * @param key position hash as computed by Zobrist.hash
+     * @return book moves for the position, empty if the position is not in the book
+     */
+    public List<BookMove> lookup(long key) {
+        List<BookMove> moves = new ArrayList<>();
+        for (int i = lowerBound(key); i < entries && keyAt(i) == key; i++) {
+            int offset = HEADER_BYTES + i * ENTRY_BYTES;
+            moves.add(new BookMove(Move.fromKey(buffer.getInt(offset + 8)), buffer.getInt(offset + 12)));
+        }
+        return moves;
+    }
+
+    /**
+     * Picks a book move for the side to move, weighted by how often it was played.
+     * @param game game model
+     * @param random source of randomness for the weighted choice
+     * @return a playable book move, or null if the position is not in the book
+     */
+    public Move probe(Game game, Random random) {
+        Board board = game.getBoard();
+        String color = game.getPlayerTurn();
+        List<BookMove> moves = lookup(Zobrist.hash(board, color));
+
+        long total = 0;
+        List<BookMove> playable = new ArrayList<>();
+        for (BookMove bookMove : moves) {
+            //guards against hash collisions with positions outside the book
+            if (MoveGenerator.isPseudoLegal(board, color, bookMove.getMove())) {
+                playable.add(bookMove);
+                total += bookMove.getWeight();
+            }
+        }
+        if (total <= 0) {
+            return null;
+        }
+        long pick = (long) (random.nextDouble() * total);
+        for (BookMove bookMove : playable) {
+            pick -= bookMove.getWeight();
+            if (pick < 0) {
+                return bookMove.getMove();
+            }
+        }
+        return playable.get(playable.size() - 1).getMove();
+    }
+
+    private long keyAt(int index) {
+        return buffer.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    //index of the first entry with a hash >= key
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
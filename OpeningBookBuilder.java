@@ -0,0 +1,131 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Compiles PGN game collections into a sorted opening book file for {@link OpeningBook}.
+ * Each position of the first plies of every game is recorded with the move played from it;
+ * the weight of a book move is the number of games that played it.
+ *
+ * Usage: OpeningBookBuilder [-plies N] output.bin games.pgn...
+ */
+public class OpeningBookBuilder {
+
+    public static final int DEFAULT_MAX_PLIES = 20;
+
+    private final int maxPlies;
+    private final Map<Long, Map<Integer, Integer>> positions = new HashMap<>();
+    private int games;
+    private int truncatedGames;
+
+    public OpeningBookBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int maxPlies = DEFAULT_MAX_PLIES;
+        int arg = 0;
+        if (args.length > 1 && args[0].equals("-plies")) {
+            maxPlies = Integer.parseInt(args[1]);
+            arg = 2;
+        }
+        if (args.length - arg < 2) {
+            System.err.println("Usage: OpeningBookBuilder [-plies N] output.bin games.pgn...");
+            return;
+        }
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(maxPlies);
+        Path output = Paths.get(args[arg++]);
+        for (; arg < args.length; arg++) {
+            builder.addPgn(Paths.get(args[arg]));
+        }
+        int entries = builder.write(output);
+        Main.LOGGER.log(Level.INFO, "Wrote " + entries + " book entries from " + builder.games + " games to " + output);
+    }
+
+    /**
+     * Adds every game of a PGN file.
+     */
+    public void addPgn(Path pgn) throws IOException {
+        try (PgnReader reader = new PgnReader(Files.newBufferedReader(pgn, StandardCharsets.ISO_8859_1))) {
+            PgnReader.PgnGame game;
+            while ((game = reader.next()) != null) {
+                addGame(game);
+            }
+        }
+    }
+
+    /**
+     * Replays a game from the start position and records its first moves.
+     * Replay stops at the first move the model can not play (castling, promotion, en passant).
+     */
+    public void addGame(PgnReader.PgnGame pgnGame) {
+        Board board = new Board(Board.START_BOARD);
+        String color = Notation.modelColor(true);
+        games++;
+
+        int plies = Math.min(maxPlies, pgnGame.getMoves().size());
+        for (int ply = 0; ply < plies; ply++) {
+            Move move = Notation.parseSan(board, color, pgnGame.getMoves().get(ply));
+            if (move == null) {
+                truncatedGames++;
+                return;
+            }
+            long key = Zobrist.hash(board, color);
+            positions.computeIfAbsent(key, k -> new HashMap<>()).merge(move.key(), 1, Integer::sum);
+
+            board.makeMove(move);
+            color = Player.opposite(color);
+        }
+    }
+
+    /**
+     * Writes the book sorted by position hash, heaviest move first within a position.
+     * @param output book file
+     * @return number of entries written
+     */
+    public int write(Path output) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        for (Map.Entry<Long, Map<Integer, Integer>> position : positions.entrySet()) {
+            for (Map.Entry<Integer, Integer> move : position.getValue().entrySet()) {
+                entries.add(new long[]{position.getKey(), move.getKey(), move.getValue()});
+            }
+        }
+        entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[2], a[2]));
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.BIG_ENDIAN);
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putLong(entries.size());
+            for (long[] entry : entries) {
+                if (buffer.remaining() < OpeningBook.ENTRY_BYTES) {
+                    FileChannels.flush(channel, buffer);
+                }
+                buffer.putLong(entry[0]).putInt((int) entry[1]).putInt((int) Math.min(entry[2], Integer.MAX_VALUE));
+            }
+            FileChannels.flush(channel, buffer);
+        }
+        return entries.size();
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public int getTruncatedGames() {
+        return truncatedGames;
+    }
+}
@@ -0,0 +1,112 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opening tree written by {@link OpeningExplorerBuilder}: for every position of the first plies of a game
+ * collection, the moves played from it and how those games ended.
+ * Like the opening book, the file is memory mapped and binary searched in place, so a lookup for the board
+ * shown in the GUI costs a few page reads.
+ *
+ * File layout (big endian): int magic, int version, long entry count, then 26-byte entries of
+ * long position hash, short move key, int games, int white wins, int draws, int black wins,
+ * sorted by hash and by games, most first, within a position. White and black are meant in the PGN sense.
+ */
+public class OpeningExplorer {
+
+    public static final int MAGIC = 0x43455831;//"CEX1"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int ENTRY_BYTES = 26;
+
+    private final MappedByteBuffer buffer;
+    private final int entries;
+
+    private OpeningExplorer(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            //the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an opening tree: " + path);
+        }
+        long count = buffer.getLong(8);
+        if (count < 0 || HEADER_BYTES + count * ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("Truncated opening tree: " + path);
+        }
+        entries = (int) count;
+    }
+
+    public static OpeningExplorer open(Path path) throws IOException {
+        return new OpeningExplorer(path);
+    }
+
+    /**
+     * @return the tree named by -Dchess.explorer, null if none is set or it can not be opened
+     */
+    public static OpeningExplorer openDefault() {
+        String name = System.getProperty("chess.explorer");
+        if (name == null || !Files.isRegularFile(Paths.get(name))) {
+            return null;
+        }
+        try {
+            return open(Paths.get(name));
+        } catch (IOException e) {
+            Main.LOGGER.warning("Can not open opening tree: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * @param board position
+     * @param color side to move
+     * @return moves played from the position, most played first, empty if it is not in the tree
+     */
+    public List<GameDatabase.MoveStats> lookup(Board board, String color) {
+        List<GameDatabase.MoveStats> moves = new ArrayList<>();
+        long key = Zobrist.hash(board, color);
+        for (int i = lowerBound(key); i < entries && keyAt(i) == key; i++) {
+            int offset = HEADER_BYTES + i * ENTRY_BYTES;
+            Move move = Move.fromKey(buffer.getShort(offset + 8) & 0xFFFF);
+            //guards against hash collisions with positions outside the tree
+            if (MoveGenerator.isPseudoLegal(board, color, move)) {
+                moves.add(new GameDatabase.MoveStats(move, buffer.getInt(offset + 10), buffer.getInt(offset + 14),
+                        buffer.getInt(offset + 18), buffer.getInt(offset + 22)));
+            }
+        }
+        return moves;
+    }
+
+    private long keyAt(int index) {
+        return buffer.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+
+    //index of the first entry with a hash >= key
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
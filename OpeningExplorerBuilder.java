@@ -0,0 +1,222 @@
+package chess;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+/**
+ * Builds the {@link OpeningExplorer} tree of a PGN collection or a {@link GameDatabase}.
+ * Games are replayed on the common fork-join pool through parallel streams: every split of the stream counts
+ * into a tree of its own and the trees are merged when the splits join, so the replay threads never share a map.
+ * PGN text is read on the calling thread in batches of {@link #BATCH_GAMES} games, the replay of a batch runs in
+ * parallel.
+ *
+ * Usage: OpeningExplorerBuilder [-plies N] output.bin (games.pgn | database-directory)...
+ */
+public class OpeningExplorerBuilder {
+
+    public static final int DEFAULT_MAX_PLIES = 20;
+    public static final int BATCH_GAMES = 4096;
+
+    private final int maxPlies;
+    private Tree tree = new Tree();
+
+    /**
+     * Move statistics by position hash and move key, the unit of the parallel aggregation.
+     */
+    static class Tree {
+        final Map<Long, Map<Integer, GameDatabase.MoveStats>> positions = new HashMap<>();
+        int truncated;
+
+        void add(long key, Move move, int result) {
+            positions.computeIfAbsent(key, k -> new HashMap<>())
+                    .computeIfAbsent(move.key(), k -> new GameDatabase.MoveStats(Move.fromKey(k)))
+                    .add(result);
+        }
+
+        //merges the smaller tree into the larger one
+        Tree merge(Tree other) {
+            Tree into = positions.size() >= other.positions.size() ? this : other;
+            Tree from = into == this ? other : this;
+            for (Map.Entry<Long, Map<Integer, GameDatabase.MoveStats>> position : from.positions.entrySet()) {
+                Map<Integer, GameDatabase.MoveStats> moves = into.positions.get(position.getKey());
+                if (moves == null) {
+                    into.positions.put(position.getKey(), position.getValue());
+                    continue;
+                }
+                for (Map.Entry<Integer, GameDatabase.MoveStats> move : position.getValue().entrySet()) {
+                    GameDatabase.MoveStats stats = moves.get(move.getKey());
+                    if (stats == null) {
+                        moves.put(move.getKey(), move.getValue());
+                    } else {
+                        stats.merge(move.getValue());
+                    }
+                }
+            }
+            into.truncated += from.truncated;
+            return into;
+        }
+    }
+
+    public OpeningExplorerBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int maxPlies = DEFAULT_MAX_PLIES;
+        int arg = 0;
+        if (args.length > 1 && args[0].equals("-plies")) {
+            maxPlies = Integer.parseInt(args[1]);
+            arg = 2;
+        }
+        if (args.length - arg < 2) {
+            System.err.println("Usage: OpeningExplorerBuilder [-plies N] output.bin (games.pgn | database-directory)...");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        OpeningExplorerBuilder builder = new OpeningExplorerBuilder(maxPlies);
+        Path output = Paths.get(args[arg++]);
+        for (; arg < args.length; arg++) {
+            Path input = Paths.get(args[arg]);
+            if (Files.isDirectory(input)) {
+                builder.addDatabase(input);
+            } else {
+                builder.addPgn(input);
+            }
+        }
+        int entries = builder.write(output);
+        System.out.printf("Wrote %d moves of %d positions in %d ms, %d games cut short%n", entries,
+                builder.tree.positions.size(), System.currentTimeMillis() - start, builder.getTruncatedGames());
+    }
+
+    /**
+     * Collects trees per split of a parallel stream and merges them as the splits join.
+     */
+    private static <T> Collector<T, Tree, Tree> collector(BiConsumer<Tree, T> replay) {
+        return Collector.of(Tree::new, replay, Tree::merge, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Adds every game of a PGN file.
+     */
+    public void addPgn(Path pgn) throws IOException {
+        try (PgnReader reader = new PgnReader(Files.newBufferedReader(pgn, StandardCharsets.ISO_8859_1))) {
+            List<PgnReader.PgnGame> batch = new ArrayList<>(BATCH_GAMES);
+            PgnReader.PgnGame game;
+            do {
+                game = reader.next();
+                if (game != null) {
+                    batch.add(game);
+                }
+                if (batch.size() == BATCH_GAMES || (game == null && !batch.isEmpty())) {
+                    add(batch.parallelStream().collect(collector(this::replay)));
+                    batch.clear();
+                }
+            } while (game != null);
+        }
+    }
+
+    /**
+     * Adds every game of a game database, reading them in parallel.
+     */
+    public void addDatabase(Path directory) throws IOException {
+        try (GameDatabase database = GameDatabase.open(directory)) {
+            Tree games = IntStream.range(0, database.size()).parallel().boxed()
+                    .collect(collector((into, id) -> {
+                        try {
+                            replay(into, database.game(id));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+            add(games);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void add(Tree games) {
+        tree = tree.merge(games);
+    }
+
+    //the first plies of a PGN game, up to the first move the model can not play, as for the opening book
+    private void replay(Tree into, PgnReader.PgnGame game) {
+        Board board = new Board(Board.START_BOARD);
+        String color = Notation.modelColor(true);
+        int result = GameDatabase.resultCode(game.getResult());
+        int plies = Math.min(maxPlies, game.getMoves().size());
+        for (int ply = 0; ply < plies; ply++) {
+            Move move = Notation.parseSan(board, color, game.getMoves().get(ply));
+            if (move == null) {
+                into.truncated++;
+                return;
+            }
+            into.add(Zobrist.hash(board, color), move, result);
+            board.makeMove(move);
+            color = Player.opposite(color);
+        }
+    }
+
+    private void replay(Tree into, GameDatabase.GameRecord game) {
+        Board board = new Board(game.getSetup());
+        String color = Notation.modelColor(true);
+        int plies = Math.min(maxPlies, game.getMoves().size());
+        for (int ply = 0; ply < plies; ply++) {
+            Move move = game.getMoves().get(ply);
+            into.add(Zobrist.hash(board, color), move, game.getResult());
+            board.makeMove(move);
+            color = Player.opposite(color);
+        }
+    }
+
+    /**
+     * Writes the tree sorted by position hash, most played move first within a position.
+     * @return number of entries written
+     */
+    public int write(Path output) throws IOException {
+        List<Long> keys = new ArrayList<>(tree.positions.keySet());
+        keys.sort(null);
+        int entries = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.BIG_ENDIAN);
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(OpeningExplorer.MAGIC).putInt(OpeningExplorer.VERSION).putLong(0);//count written last
+            for (long key : keys) {
+                List<Map.Entry<Integer, GameDatabase.MoveStats>> moves = new ArrayList<>(tree.positions.get(key).entrySet());
+                moves.sort((a, b) -> Integer.compare(b.getValue().getGames(), a.getValue().getGames()));
+                for (Map.Entry<Integer, GameDatabase.MoveStats> move : moves) {
+                    if (buffer.remaining() < OpeningExplorer.ENTRY_BYTES) {
+                        FileChannels.flush(channel, buffer);
+                    }
+                    GameDatabase.MoveStats stats = move.getValue();
+                    buffer.putLong(key).putShort((short) (int) move.getKey()).putInt(stats.getGames())
+                            .putInt(stats.getWhiteWins()).putInt(stats.getDraws()).putInt(stats.getBlackWins());
+                    entries++;
+                }
+            }
+            FileChannels.flush(channel, buffer);
+            buffer.putLong(entries).flip();
+            channel.write(buffer, 8);
+        }
+        return entries;
+    }
+
+    public int getTruncatedGames() {
+        return tree.truncated;
+    }
+}
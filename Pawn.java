@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.logging.Level;
-
 /**
  * This is the chess.Pawn object.
  *
@@ -19,21 +17,21 @@ public class Pawn extends Piece implements Moveable {
     public Pawn(Player player, Square square) {
         setPlayer(player);
         setSquare(square);
-        setName(Pawn._NAME);
+        setType(PieceType.PAWN);
         square.setPiece(this);
     }
 
     @Override
-    public boolean move(Game game, Square dest) {
+    protected boolean applyMove(Game game, Square dest) {
         // Check if it's the player's turn
-        if (!this.getPlayer().getColor().equals(game.getPlayerTurn())) {
-            System.out.println("Not Your Turn");
+        if (this.getPlayer().getCode() != game.getTurnCode()) {
+            if (Debug.ENABLED) Debug.println("Not Your Turn");
             return false;
         }
 
         // Check if the destination is valid and within bounds
         if (dest == null || game.getBoard().getSquare(dest.getX(), dest.getY()) == null) {
-            Main.LOGGER.log(Level.INFO, "Destination Out Of Bound");
+            if (Debug.ENABLED) Debug.log("Destination Out Of Bound");
             return false;
         }
 
@@ -46,7 +44,7 @@ public class Pawn extends Piece implements Moveable {
 
             // If capturing an opponent's piece
             if (dest.hasChess() && !this.hasSameColorWith(dest.getPiece())) {
-                System.out.println("Captured " + dest.getPiece().getName());
+                if (Debug.ENABLED) Debug.println("Captured " + dest.getPiece().getName());
             }
 
             this.firstStep = false; // After the first move, it can't move two squares anymore
@@ -59,8 +57,9 @@ public class Pawn extends Piece implements Moveable {
 
     @Override
     public boolean canMove(Board board, Square start, Square dest) {
+        if (Metrics.ENABLED) Metrics.CAN_MOVE.increment();
         // Determine movement direction based on player color (black moves up, white moves down)
-        int directionMultiplier = this.getPlayer().getColor().equals(Player.WHITE) ? 1 : -1;
+        int directionMultiplier = this.getPlayer().getCode() == Player.WHITE_CODE ? 1 : -1;
 
         int startX = start.getX();
         int startY = start.getY();
@@ -80,7 +79,7 @@ public class Pawn extends Piece implements Moveable {
                 if (!intermediateSquare.hasChess()) {
                     return true; // Allow moving two squares forward if both squares are empty
                 } else {
-                    System.out.println("Pawn cannot move two squares; intermediate square is occupied.");
+                    if (Debug.ENABLED) Debug.println("Pawn cannot move two squares; intermediate square is occupied.");
                 }
             }
         }
@@ -90,12 +89,12 @@ public class Pawn extends Piece implements Moveable {
             if (dest.hasChess() && !this.hasSameColorWith(dest.getPiece())) {
                 return true; // Allow capturing an opponent's piece
             } else {
-                System.out.println("Pawn cannot capture; destination does not have an opponent's piece.");
+                if (Debug.ENABLED) Debug.println("Pawn cannot capture; destination does not have an opponent's piece.");
             }
         }
 
         // If none of the conditions are met, the move is invalid
-        System.out.println("Invalid pawn move from (" + startX + ", " + startY + ") to (" + destX + ", " + destY + ").");
+        if (Debug.ENABLED) Debug.println("Invalid pawn move from (" + startX + ", " + startY + ") to (" + destX + ", " + destY + ").");
         return false;
     }
 
@@ -103,7 +102,7 @@ public class Pawn extends Piece implements Moveable {
     public boolean hasPieceOnThePath(Board board, Square dest) {
         // Check for pieces on the path if moving two squares forward on the first move
         if (firstStep && Math.abs(dest.getX() - getSquare().getX()) == 2) {
-            int directionMultiplier = this.getPlayer().getColor().equals(Player.WHITE) ? -1 : 1;
+            int directionMultiplier = this.getPlayer().getCode() == Player.WHITE_CODE ? -1 : 1;
             return board.getSquare(this.getX() + directionMultiplier, this.getY()).hasChess(); // Check the square in between
         }
         return false;
@@ -0,0 +1,89 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size cache of pawn structure scores keyed by the pawn-only Zobrist hash.
+ * Entries live in two flat arrays sized from a memory budget and are replaced on collision,
+ * so the table never grows past its budget.
+ */
+public class PawnHashTable {
+
+    public static final int DEFAULT_SIZE_BYTES = 1 << 20;//1 MB
+    private static final int ENTRY_BYTES = 12;//long key + int score
+
+    private final long[] keys;
+    private final int[] scores;
+    private final int mask;
+
+    private long hits;
+    private long misses;
+
+    public PawnHashTable() {
+        this(DEFAULT_SIZE_BYTES);
+    }
+
+    /**
+     * @param sizeBytes memory budget, rounded down to a power of two number of entries
+     */
+    public PawnHashTable(int sizeBytes) {
+        int entries = Integer.highestOneBit(Math.max(1, sizeBytes / ENTRY_BYTES));
+        keys = new long[entries];
+        scores = new int[entries];
+        mask = entries - 1;
+    }
+
+    public int probe(Board board) {
+        return probe(board, Zobrist.pawnHash(board));
+    }
+
+    /**
+     * Returns the cached pawn structure score, evaluating and storing it on a miss.
+     * @param board board model
+     * @param key pawn-only hash of the board, usually gathered by the caller's own piece scan
+     * @return pawn structure score from white's point of view
+     */
+    public int probe(Board board, long key) {
+        int index = (int) (key ^ (key >>> 32)) & mask;
+
+        //empty slots hold key 0 and score 0, which is also the right answer for a board without pawns
+        if (keys[index] == key) {
+            hits++;
+            if (Metrics.ENABLED) Metrics.PAWN_HASH_HITS.increment();
+            return scores[index];
+        }
+        misses++;
+        if (Metrics.ENABLED) Metrics.PAWN_HASH_MISSES.increment();
+        int score = PawnStructure.evaluate(board);
+        keys[index] = key;
+        scores[index] = score;
+        return score;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(scores, 0);
+        hits = 0;
+        misses = 0;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return fraction of probes answered from the table
+     */
+    public double getHitRate() {
+        long probes = hits + misses;
+        return probes == 0 ? 0.0 : (double) hits / probes;
+    }
+}
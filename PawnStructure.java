@@ -0,0 +1,78 @@
+package chess;
+
+/**
+ * Pawn structure evaluation: passed, isolated and doubled pawns.
+ * Scores are in centipawns from white's point of view.
+ *
+ * White pawns advance towards higher x (rank), black pawns towards lower x. y is the file.
+ */
+public class PawnStructure {
+
+    public static final int DOUBLED_PENALTY = 12;
+    public static final int ISOLATED_PENALTY = 15;
+    public static final int[] PASSED_BONUS = {0, 5, 10, 20, 35, 60, 100, 0};//indexed by ranks advanced
+
+    private PawnStructure() {
+    }
+
+    /**
+     * Scans the board for pawns and scores their structure.
+     * @param board board model
+     * @return pawn structure score, positive is good for white
+     */
+    public static int evaluate(Board board) {
+        //pawn ranks per file, bit x set when a pawn stands on rank x
+        int[] whiteFiles = new int[8];
+        int[] blackFiles = new int[8];
+
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Piece piece = board.getSquare(i, j).getPiece();
+                if (piece != null && piece.getType() == PieceType.PAWN) {
+                    if (piece.getColorCode() == Player.WHITE_CODE) {
+                        whiteFiles[j] |= 1 << i;
+                    } else {
+                        blackFiles[j] |= 1 << i;
+                    }
+                }
+            }
+        }
+        return scoreSide(whiteFiles, blackFiles, true) - scoreSide(blackFiles, whiteFiles, false);
+    }
+
+    private static int scoreSide(int[] own, int[] enemy, boolean white) {
+        int score = 0;
+        for (int file = 0; file < 8; file++) {
+            int pawns = own[file];
+            if (pawns == 0) {
+                continue;
+            }
+            int count = Integer.bitCount(pawns);
+
+            //doubled pawns
+            if (count > 1) {
+                score -= DOUBLED_PENALTY * (count - 1);
+            }
+
+            //isolated pawns: no friendly pawn on an adjacent file
+            int left = file > 0 ? own[file - 1] : 0;
+            int right = file < 7 ? own[file + 1] : 0;
+            if (left == 0 && right == 0) {
+                score -= ISOLATED_PENALTY * count;
+            }
+
+            //passed pawns: no enemy pawn ahead on this or an adjacent file
+            int blockers = enemy[file] | (file > 0 ? enemy[file - 1] : 0) | (file < 7 ? enemy[file + 1] : 0);
+            for (int rank = 0; rank < 8; rank++) {
+                if ((pawns & (1 << rank)) == 0) {
+                    continue;
+                }
+                int ahead = white ? (0xFF & ~((2 << rank) - 1)) : ((1 << rank) - 1);
+                if ((blockers & ahead) == 0) {
+                    score += PASSED_BONUS[white ? rank : 7 - rank];
+                }
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,158 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming reader of PGN game collections.
+ * Games are read one at a time so arbitrarily large collections never need to fit in memory.
+ * Comments, variations, move numbers and NAGs are stripped; only the main line SAN moves are kept.
+ */
+public class PgnReader implements Closeable {
+
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAW = "1/2-1/2";
+    public static final String UNKNOWN = "*";
+
+    /**
+     * One game of a PGN collection.
+     */
+    public static class PgnGame {
+        private final Map<String, String> tags = new LinkedHashMap<>();
+        private final List<String> moves = new ArrayList<>();
+        private String result = UNKNOWN;
+
+        public Map<String, String> getTags() {
+            return tags;
+        }
+
+        public List<String> getMoves() {
+            return moves;
+        }
+
+        public String getResult() {
+            return result;
+        }
+    }
+
+    private final BufferedReader reader;
+    private String pendingLine;
+
+    public PgnReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the next game, or null at the end of the input
+     */
+    public PgnGame next() throws IOException {
+        PgnGame game = new PgnGame();
+        StringBuilder movetext = new StringBuilder();
+        boolean inMoves = false;
+        boolean any = false;
+
+        String line;
+        while ((line = nextLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("[")) {
+                if (inMoves) {
+                    //tag section of the next game without a result token in between
+                    pendingLine = line;
+                    break;
+                }
+                parseTag(game, line);
+                any = true;
+                continue;
+            }
+            inMoves = true;
+            any = true;
+            movetext.append(line).append(' ');
+            if (endsWithResult(line)) {
+                break;
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        parseMovetext(game, movetext);
+        return game;
+    }
+
+    private String nextLine() throws IOException {
+        if (pendingLine != null) {
+            String line = pendingLine;
+            pendingLine = null;
+            return line;
+        }
+        return reader.readLine();
+    }
+
+    private static void parseTag(PgnGame game, String line) {
+        int space = line.indexOf(' ');
+        int quote = line.indexOf('"');
+        int lastQuote = line.lastIndexOf('"');
+        if (space > 1 && quote > space && lastQuote > quote) {
+            game.tags.put(line.substring(1, space), line.substring(quote + 1, lastQuote));
+        }
+    }
+
+    private static boolean endsWithResult(String line) {
+        return line.endsWith(WHITE_WINS) || line.endsWith(BLACK_WINS) || line.endsWith(DRAW) || line.endsWith(UNKNOWN);
+    }
+
+    private static void parseMovetext(PgnGame game, CharSequence text) {
+        StringBuilder clean = new StringBuilder();
+        int variationDepth = 0;
+        boolean inComment = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inComment) {
+                inComment = c != '}';
+            } else if (c == '{') {
+                inComment = true;
+            } else if (c == '(') {
+                variationDepth++;
+            } else if (c == ')') {
+                variationDepth = Math.max(0, variationDepth - 1);
+            } else if (variationDepth == 0) {
+                clean.append(c);
+            }
+        }
+
+        for (String token : clean.toString().split("\\s+")) {
+            if (token.isEmpty() || token.startsWith("$")) {
+                continue;
+            }
+            if (token.equals(WHITE_WINS) || token.equals(BLACK_WINS) || token.equals(DRAW) || token.equals(UNKNOWN)) {
+                game.result = token;
+                continue;
+            }
+            //strip move numbers, "12." and "12..." possibly glued to the move
+            int dot = token.lastIndexOf('.');
+            if (dot >= 0) {
+                token = token.substring(dot + 1);
+            }
+            if (!token.isEmpty()) {
+                game.moves.add(token);
+            }
+        }
+        String tagResult = game.tags.get("Result");
+        if (game.result.equals(UNKNOWN) && tagResult != null) {
+            game.result = tagResult;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -2,7 +2,6 @@ package chess;
 
 import javax.swing.*;
 import java.util.ArrayList;
-import java.util.logging.Level;
 
 
 /**
@@ -14,9 +13,16 @@ public abstract class Piece implements Moveable{
     private Player player;// white or black
     private Square square;
     private String name;//piece string name
+    private PieceType type;
 
     JButton jbutton;
 
+    //bookkeeping of the board's incremental piece lists, see Board.track
+    int occupancy;//number of squares holding this piece, more than one only in the middle of a move
+    int listIndex = -1;
+    int trackedColor;
+    Board trackedBoard;
+
     // overridden by other child pieces class.
     public abstract boolean canMove(Board board, Square start, Square dest);//check if this chess can move from a square to another one
 
@@ -39,11 +45,28 @@ public abstract class Piece implements Moveable{
 
     /**
      * moves pieces from it's current square to the destination square after checking child piece's moving rules
+     * and reports the attempt as a flight recorder event
      * @param game game model
      * @param dest destination square
      * @return true if move was successful
      */
     public boolean move(Game game, Square dest) {
+        MoveEvent event = new MoveEvent();
+        event.begin();
+        Square from = this.getSquare();
+        Piece captured = dest == null ? null : dest.getPiece();
+        boolean moved = applyMove(game, dest);
+        event.commit(this, from, dest, captured, moved);
+        return moved;
+    }
+
+    /**
+     * moves pieces from it's current square to the destination square, overridden by pieces with special moves
+     * @param game game model
+     * @param dest destination square
+     * @return true if move was successful
+     */
+    protected boolean applyMove(Game game, Square dest) {
 
         if (moveBasicCheck(game, dest)) return false;
 
@@ -61,21 +84,20 @@ public abstract class Piece implements Moveable{
     }
 
     public boolean hasSameColorWith(Piece piece){
-        return (this.getPlayer().getColor().
-                equals(piece.getPlayer().getColor()));
+        return this.getPlayer().getCode() == piece.getPlayer().getCode();
     }
 
     public boolean passBasicMoveRules(Board board, Square start, Square dest){
         if(dest.hasChess()){
             if(start!=null && start.getPiece().hasSameColorWith(dest.getPiece())){
-                Main.LOGGER.log(Level.INFO, "You Can Not Kill Your Own Chess Piece");
+                if (Debug.ENABLED) Debug.log("You Can Not Kill Your Own Chess Piece");
                 return false;
             }
 
         }
         //check if dest is out of bound
         if(board.doNotContain(dest)){
-            Main.LOGGER.log(Level.INFO, "destination is out of board");
+            if (Debug.ENABLED) Debug.log("destination is out of board");
             return false;
         }
         return true;
@@ -83,6 +105,7 @@ public abstract class Piece implements Moveable{
     }
 
     public ArrayList<Square> generatePossibleMoves(Game game) {
+        long start = Metrics.start();
         ArrayList<Square> possibleMoves = new ArrayList<>();
         Board board = game.getBoard();
         for(int i = 0; i<8; i++){
@@ -94,6 +117,7 @@ public abstract class Piece implements Moveable{
             }
 
         }
+        Metrics.stop(Metrics.GENERATE_MOVES, start);
         return possibleMoves;
     }
 
@@ -131,7 +155,10 @@ public abstract class Piece implements Moveable{
 
     //Logging Warning
     public void printCanNotMoveToWarning(Square dest){
-        Main.LOGGER.log(Level.INFO, this.getName() + "can not move from square" + "(" + this.square.getX() + ", "
+        if (!Debug.ENABLED) {
+            return;
+        }
+        Debug.log(this.getName() + "can not move from square" + "(" + this.square.getX() + ", "
                 + this.square.getY() + ")" + "to" + "(" + dest.getX() + ", " + dest.getY() + ")");
     }
 
@@ -140,7 +167,11 @@ public abstract class Piece implements Moveable{
 
     //getters and setters
     public void setPlayer(Player player) {
+        Player previous = this.player;
         this.player = player;
+        if (trackedBoard != null && previous != player) {
+            trackedBoard.playerChanged(this, previous);//e.g. converted by a vampire
+        }
     }
 
     public Player getPlayer() {
@@ -163,6 +194,21 @@ public abstract class Piece implements Moveable{
         this.name = name;
     }
 
+    public PieceType getType() {
+        return type;
+    }
+
+    //sets the kind and its name, called once by each piece's constructor
+    protected void setType(PieceType type) {
+        this.type = type;
+        this.name = type.getPieceName();
+    }
+
+    //color code of the owner, Player.WHITE_CODE or Player.BLACK_CODE
+    public int getColorCode() {
+        return player.getCode();
+    }
+
     public  static void excuteMove(Square start, Square end) {
         end.setHasChess(true);
         start.getPiece().setSquare(end);//update coordinates
@@ -187,12 +233,12 @@ public abstract class Piece implements Moveable{
     }
 
     public boolean checkStraight(Board board, Square dest, int x, int y, int destX,int destY){
-        System.out.println("193");
+        if (Debug.ENABLED) Debug.println("193");
         if(getDirection(getSquare(),dest) == Direction.UP){
-            System.out.println("47");
+            if (Debug.ENABLED) Debug.println("47");
             for(int i = 1; i < Math.abs(x-destX); i ++){
                 if(board.getSquare(x+i, y) == null){
-                    System.out.println("198");
+                    if (Debug.ENABLED) Debug.println("198");
                     return false;
                 }
                 if(board.getSquare(x+i, y).hasChess()){
@@ -201,10 +247,10 @@ public abstract class Piece implements Moveable{
             }
         }
         else if(getDirection(getSquare(),dest) == Direction.DOWN){
-            System.out.println("54");
+            if (Debug.ENABLED) Debug.println("54");
             for(int i =1; i < Math.abs(x - destX);i++){
                 if(board.getSquare(x - i, y) == null){
-                    System.out.println("198");
+                    if (Debug.ENABLED) Debug.println("198");
                     return false;
                 }
                 if(board.getSquare(x-i, y).hasChess()){
@@ -213,7 +259,7 @@ public abstract class Piece implements Moveable{
             }
         }
         else if(getDirection(getSquare(), dest) == Direction.LEFT){
-            System.out.println("63");
+            if (Debug.ENABLED) Debug.println("63");
             for(int i = 1; i < Math.abs(destY - y); i++){
                 if(board.getSquare(x, y + i) == null){
                     return false;
@@ -224,11 +270,11 @@ public abstract class Piece implements Moveable{
             }
         }
         else if(getDirection(getSquare(),dest) == Direction.RIGHT){
-            System.out.println("71");
+            if (Debug.ENABLED) Debug.println("71");
 
             for(int i = 1; i < Math.abs(destY - y); i++){
                 if(board.getSquare(x, y - i) == null){
-                    System.out.println("232");
+                    if (Debug.ENABLED) Debug.println("232");
                     return false;
                 }
                 if(board.getSquare(x, y - i).hasChess()){
@@ -285,12 +331,12 @@ public abstract class Piece implements Moveable{
     }
     public boolean moveBasicCheck(Game game, Square dest) {
         if(dest == null || game.getBoard().getSquare(dest.getX(), dest.getY()) == null){
-            Main.LOGGER.log(Level.INFO, "Destination Out Of Bound");
+            if (Debug.ENABLED) Debug.log("Destination Out Of Bound");
             return true;
         }
 
-        if(!this.getPlayer().getColor().equals(game.getPlayerTurn())){
-            System.out.println("Not Your Turn");
+        if(this.getPlayer().getCode() != game.getTurnCode()){
+            if (Debug.ENABLED) Debug.println("Not Your Turn");
             return true;
         }
         return false;
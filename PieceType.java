@@ -0,0 +1,60 @@
+package chess;
+
+import java.util.function.BiFunction;
+
+/**
+ * Kind of a chess piece. The ordinal is the piece's kind code, the same index the Zobrist keys, piece values and
+ * tablebases use, so code that only needs to know what a piece is compares or indexes by an int
+ * instead of testing classes or names.
+ */
+public enum PieceType {
+    PAWN(Pawn._NAME, 'P', Pawn::new),
+    KNIGHT(Knight._NAME, 'N', Knight::new),
+    BISHOP(Bishop._NAME, 'B', Bishop::new),
+    ROOK(Rook._NAME, 'R', Rook::new),
+    QUEEN(Queen._NAME, 'Q', Queen::new),
+    KING(King._NAME, 'K', King::new),
+    VAMPIRE(Vampire._NAME, 'V', Vampire::new),
+    WITCH(Witch._NAME, 'W', Witch::new);
+
+    private static final PieceType[] BY_CODE = values();
+
+    private final String pieceName;
+    private final char letter;
+    private final BiFunction<Player, Square, Piece> factory;
+
+    PieceType(String pieceName, char letter, BiFunction<Player, Square, Piece> factory) {
+        this.pieceName = pieceName;
+        this.letter = letter;
+        this.factory = factory;
+    }
+
+    /**
+     * @param code kind code, see {@link #getCode()}
+     */
+    public static PieceType fromCode(int code) {
+        return BY_CODE[code];
+    }
+
+    /**
+     * @return kind code, the index of the Zobrist keys and the piece values
+     */
+    public int getCode() {
+        return ordinal();
+    }
+
+    public String getPieceName() {
+        return pieceName;
+    }
+
+    public char getLetter() {
+        return letter;
+    }
+
+    /**
+     * Creates a new piece of this kind and places it on a square.
+     */
+    public Piece create(Player player, Square square) {
+        return factory.apply(player, square);
+    }
+}
@@ -5,13 +5,42 @@ public class Player {
     public static String WHITE = "white";
     public static String BLACK = "black";
 
+    // Integer color codes, compared instead of the color strings in the hot paths
+    public static final int WHITE_CODE = 0;
+    public static final int BLACK_CODE = 1;
+
+    // Shared color-only players for callers that just need "the other side"; never placed on a board
+    private static final Player[] FLYWEIGHTS = {new Player(WHITE), new Player(BLACK)};
+
     private String color; // Either "white" or "black"
+    private final int code;
     private King king;    // The player's king piece
     private static Player currentPlayer; // Static field to track the current player
 
     // Constructor for initializing the player with their color
     public Player(String color) {
         this.color = color;
+        this.code = codeOf(color);
+    }
+
+    // Color code of a color string
+    public static int codeOf(String color) {
+        return WHITE.equals(color) ? WHITE_CODE : BLACK_CODE;
+    }
+
+    // Color string of a color code
+    public static String colorOf(int code) {
+        return code == WHITE_CODE ? WHITE : BLACK;
+    }
+
+    // Shared player of a color code
+    public static Player of(int code) {
+        return FLYWEIGHTS[code];
+    }
+
+    // Color of the other side
+    public static String opposite(String color) {
+        return color.equals(WHITE) ? BLACK : WHITE;
     }
 
     // Method to get the player's color
@@ -19,6 +48,11 @@ public class Player {
         return color;
     }
 
+    // Method to get the player's color code
+    public int getCode() {
+        return code;
+    }
+
     // Method to get the player's king piece
     public King getKing() {
         return king;
@@ -41,11 +75,6 @@ public class Player {
 
     // Method to get the opponent based on the current player
     public Player getOpponent() {
-        // Check the color of the current player to determine the opponent
-        if (currentPlayer.getColor().equals(WHITE)) {
-            return new Player(BLACK); // Return a new Player instance for the black player
-        } else {
-            return new Player(WHITE); // Return a new Player instance for the white player
-        }
+        return of(1 - currentPlayer.getCode());
     }
 }
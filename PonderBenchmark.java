@@ -0,0 +1,95 @@
+package chess;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long a cancelled ponder search takes to give up the search thread: the time from Engine.stop
+ * to the return of Engine.ponder, which is what a missed ponder adds before the real search can start.
+ * The return is stamped on the searching thread, so thread wake-up on the waiting side is not counted.
+ * Besides the wall time it reports the CPU time the search thread used after the stop, the part the engine
+ * controls; the difference is time the thread spent waiting for a core, e.g. behind the JIT compiler threads.
+ * Usage: PonderBenchmark [stops per position]
+ */
+public class PonderBenchmark {
+
+    //name and FEN, the start positions are set up by their board option
+    private static final String[][] POSITIONS = {
+            {Board.START_BOARD, null},
+            {Board.CUSTOM_BOARD, null},
+            {"tactics", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w - - 0 1"},
+    };
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int stops = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Engine engine = new Engine(new Search(), null);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Random random = new Random(39);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long[] searchThread = new long[1];
+        executor.submit(() -> searchThread[0] = Thread.currentThread().getId()).get();
+        try {
+            System.out.printf("%-8s %-5s %8s %10s %10s %10s %10s%n", "board", "time", "stops", "p50(us)", "p99(us)",
+                    "max(us)", "nodes/s");
+            for (String[] position : POSITIONS) {
+                LatencyHistogram latency = new LatencyHistogram("ponder.stop");
+                LatencyHistogram cpu = new LatencyHistogram("ponder.stop.cpu");
+                long nodes = 0;
+                long searchNanos = 0;
+                //the first stops only warm up the JIT
+                for (int i = -stops / 4; i < stops; i++) {
+                    Game game = newGame(position);
+                    TimeManager timeManager = new TimeManager();
+                    timeManager.startPondering();
+                    AtomicLong returned = new AtomicLong();
+                    AtomicLong returnedCpu = new AtomicLong();
+                    engine.clearStop();
+                    long started = System.nanoTime();
+                    Future<SearchResult> search = executor.submit(() -> {
+                        SearchResult result = engine.ponder(game, timeManager);
+                        returned.set(System.nanoTime());
+                        returnedCpu.set(threads.getCurrentThreadCpuTime());
+                        return result;
+                    });
+                    Thread.sleep(5 + random.nextInt(60));
+                    long stoppedCpu = threads.getThreadCpuTime(searchThread[0]);
+                    long stopped = System.nanoTime();
+                    engine.stop();
+                    search.get();
+                    if (i >= 0) {
+                        latency.record(returned.get() - stopped);
+                        cpu.record(returnedCpu.get() - stoppedCpu);
+                        nodes += engine.getSearch().getNodes();
+                        searchNanos += returned.get() - started;
+                    }
+                }
+                double nodesPerSecond = nodes / (searchNanos / 1e9);
+                print(position[0], "wall", latency.snapshot(), nodesPerSecond);
+                print(position[0], "cpu", cpu.snapshot(), nodesPerSecond);
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void print(String board, String time, LatencyHistogram.Snapshot snapshot, double nodesPerSecond) {
+        System.out.printf("%-8s %-5s %8d %10.1f %10.1f %10.1f %10.0f%n", board, time, snapshot.getCount(),
+                snapshot.getValueAtPercentile(50) / 1e3, snapshot.getValueAtPercentile(99) / 1e3,
+                snapshot.getMax() / 1e3, nodesPerSecond);
+    }
+
+    private static Game newGame(String[] position) {
+        if (position[1] != null) {
+            return Notation.parseFen(position[1]);
+        }
+        return position[0].equals(Board.CUSTOM_BOARD) ? Game.customGame() : Game.newGame();
+    }
+}
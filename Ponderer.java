@@ -0,0 +1,209 @@
+package chess;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computer player that keeps thinking while the opponent does.
+ * After playing a move it searches the position after the reply it expects (the second move of its principal
+ * variation) on a worker thread. If the opponent plays that reply the running search simply becomes the real one:
+ * its time limits start then and nothing is searched twice. Any other reply cancels the ponder search, which polls
+ * its stop flag at every node and between the pieces it generates moves for, and starts a fresh one, which still
+ * finds the ponder search's entries in the shared transposition table. {@link PonderBenchmark} measures the delay.
+ * Results are delivered on the event dispatch thread.
+ */
+public class Ponderer {
+
+    public static final long DEFAULT_MOVE_NANOS = 2_000_000_000L;//per move in untimed games
+
+    /**
+     * Receives the engine's move on the event dispatch thread.
+     */
+    public interface Listener {
+        void moveFound(SearchResult result);
+    }
+
+    private final Engine engine;
+    private final long moveNanos;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ponder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //bumped on every stop, results of older generations are dropped
+    private final AtomicInteger generation = new AtomicInteger();
+    private Future<?> running;
+    private TimeManager timeManager;//of the running search
+    private Listener listener;//null while nobody waits for the running search
+    private SearchResult lastResult;//of the engine's last move, its second move is the reply to ponder on
+    private Move expectedReply;//null when not pondering
+    private SearchResult ponderResult;//ponder search that finished before the opponent moved
+    private long ponderHits;
+    private long ponderMisses;
+
+    public Ponderer() {
+        this(new Engine(), DEFAULT_MOVE_NANOS);
+    }
+
+    /**
+     * @param engine engine to think with, its search keeps the transposition table between moves
+     * @param moveNanos time per move when the game has no clock
+     */
+    public Ponderer(Engine engine, long moveNanos) {
+        this.engine = engine;
+        this.moveNanos = moveNanos;
+    }
+
+    /**
+     * Starts searching for the side to move, cancelling any earlier search.
+     * Must be called on the thread that owns the game (the event dispatch thread in the GUI).
+     * @param game game model, copied before returning
+     * @param listener receives the move
+     */
+    public synchronized void think(Game game, Listener listener) {
+        stop();
+        timeManager = new TimeManager();
+        if (game.getClock() != null) {
+            timeManager.start(game.getClock(), game.getPlayerTurn());
+        } else {
+            timeManager.startFixed(moveNanos);
+        }
+        this.listener = listener;
+        submit(game.deepCopyGame(), false);
+    }
+
+    /**
+     * Starts pondering on the reply expected after the engine's last move, which must have just been played.
+     * @param game game model with the opponent to move, copied before returning
+     * @return false if the last search gave no reply to ponder on, e.g. a book move
+     */
+    public synchronized boolean ponder(Game game) {
+        stop();
+        List<Move> line = lastResult == null ? null : lastResult.getPrincipalVariation();
+        if (line == null || line.size() < 2 || game.getStatus().isOver()) {
+            return false;
+        }
+        Move reply = line.get(1);
+        Piece piece = game.getBoard().getSquare(reply.getStartX(), reply.getStartY()).getPiece();
+        if (piece == null || !piece.getPlayer().getColor().equals(game.getPlayerTurn())) {
+            return false;//the position is not the one the line was searched from
+        }
+        Game copy = game.deepCopyGame();
+        copy.playMove(Move.fromKey(reply.key()));
+        expectedReply = reply;
+        timeManager = new TimeManager();
+        timeManager.startPondering();
+        submit(copy, true);
+        return true;
+    }
+
+    /**
+     * Tells the engine which reply was played, the game must already show it.
+     * A ponder hit lets the running search go on against the clock, a miss restarts the search.
+     * @param game game model with the engine to move
+     * @param reply move the opponent played
+     * @param listener receives the engine's move
+     */
+    public synchronized void opponentMoved(Game game, Move reply, Listener listener) {
+        if (expectedReply == null || !expectedReply.sameSquares(reply)) {
+            if (expectedReply != null) {
+                ponderMisses++;
+            }
+            think(game, listener);
+            return;
+        }
+        ponderHits++;
+        expectedReply = null;
+        if (game.getClock() != null) {
+            timeManager.ponderHit(game.getClock(), game.getPlayerTurn());
+        } else {
+            timeManager.ponderHitFixed(moveNanos);
+        }
+        this.listener = listener;
+        if (ponderResult != null) {
+            deliver(ponderResult, generation.get());
+        }
+    }
+
+    /**
+     * Cancels the running search or ponder search, its move is never delivered.
+     */
+    public synchronized void stop() {
+        generation.incrementAndGet();
+        engine.stop();
+        listener = null;
+        expectedReply = null;
+        ponderResult = null;
+        if (running != null) {
+            running.cancel(false);
+            running = null;
+        }
+    }
+
+    public void shutdown() {
+        stop();
+        executor.shutdownNow();
+    }
+
+    public synchronized boolean isPondering() {
+        return expectedReply != null;
+    }
+
+    public synchronized long getPonderHits() {
+        return ponderHits;
+    }
+
+    public synchronized long getPonderMisses() {
+        return ponderMisses;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    private void submit(Game game, boolean pondering) {
+        int token = generation.get();
+        TimeManager manager = timeManager;
+        running = executor.submit(() -> run(game, manager, pondering, token));
+    }
+
+    private void run(Game game, TimeManager manager, boolean pondering, int token) {
+        synchronized (this) {
+            if (token != generation.get()) {
+                return;
+            }
+            engine.clearStop();
+        }
+        //no book lookup while pondering, the book answers instantly after the reply anyway
+        SearchResult result = pondering ? engine.ponder(game, manager) : engine.think(game, manager);
+        synchronized (this) {
+            if (token != generation.get()) {
+                return;
+            }
+            running = null;
+            if (listener == null) {
+                ponderResult = result;//searched to the end before the opponent moved, delivered on the hit
+                return;
+            }
+            deliver(result, token);
+        }
+    }
+
+    //called holding the lock
+    private void deliver(SearchResult result, int token) {
+        Listener target = listener;
+        listener = null;
+        ponderResult = null;
+        lastResult = result;
+        SwingUtilities.invokeLater(() -> {
+            if (token == generation.get()) {
+                target.moveFound(result);
+            }
+        });
+    }
+}
@@ -0,0 +1,115 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Zobrist hashes of the positions of a game, oldest first, for repetition and fifty-move detection.
+ * Every entry remembers where the last irreversible move (capture, pawn move, vampire conversion,
+ * witch promotion) happened, so repetition scans stop there and popping a move restores the clock.
+ */
+public class PositionHistory {
+
+    public static final int FIFTY_MOVE_PLIES = 100;
+
+    private long[] hashes;
+    private int[] resets;//index of the last position reached by an irreversible move, per entry
+    private int size;
+
+    public PositionHistory() {
+        this(256);
+    }
+
+    public PositionHistory(int capacity) {
+        hashes = new long[Math.max(1, capacity)];
+        resets = new int[hashes.length];
+    }
+
+    /**
+     * @param hash hash of the position reached
+     * @param irreversible true if the move reaching it can never be undone on the board (or it is the start position)
+     */
+    public void push(long hash, boolean irreversible) {
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            resets = Arrays.copyOf(resets, size * 2);
+        }
+        hashes[size] = hash;
+        resets[size] = irreversible || size == 0 ? size : resets[size - 1];
+        size++;
+    }
+
+    /**
+     * Forgets the newest position, e.g. when a move is taken back.
+     */
+    public void pop() {
+        if (size > 0) {
+            size--;
+        }
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return hash of the newest position
+     */
+    public long current() {
+        return hashes[size - 1];
+    }
+
+    /**
+     * @return plies since the last irreversible move
+     */
+    public int getHalfmoveClock() {
+        return size == 0 ? 0 : size - 1 - resets[size - 1];
+    }
+
+    /**
+     * Counts how often the newest position occurred, itself included.
+     * Only positions with the same side to move and after the last irreversible move can match.
+     */
+    public int getRepetitionCount() {
+        if (size == 0) {
+            return 0;
+        }
+        int top = size - 1;
+        long hash = hashes[top];
+        int count = 1;
+        for (int i = top - 2; i >= resets[top]; i -= 2) {
+            if (hashes[i] == hash) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the newest position occurred before, the usual draw test inside a search
+     */
+    public boolean isRepetition() {
+        return getRepetitionCount() > 1;
+    }
+
+    public boolean isThreefoldRepetition() {
+        return getRepetitionCount() >= 3;
+    }
+
+    public boolean isFiftyMoveRule() {
+        return getHalfmoveClock() >= FIFTY_MOVE_PLIES;
+    }
+
+    public void copyFrom(PositionHistory other) {
+        if (hashes.length < other.size) {
+            hashes = new long[other.hashes.length];
+            resets = new int[other.hashes.length];
+        }
+        System.arraycopy(other.hashes, 0, hashes, 0, other.size);
+        System.arraycopy(other.resets, 0, resets, 0, other.size);
+        size = other.size;
+    }
+}
@@ -15,12 +15,13 @@ public class Queen extends Piece{
     public Queen(Player player, Square square){
         setPlayer(player);
         setSquare(square);
-        setName(Queen._NAME);
+        setType(PieceType.QUEEN);
         square.setPiece(this);
     }
 
     @Override
     public boolean canMove(Board board, Square start, Square dest) {
+        if (Metrics.ENABLED) Metrics.CAN_MOVE.increment();
 
         //check if the destination square is occupied by player's own piece
         //and if the destination square is out of bound
@@ -32,7 +33,7 @@ public class Queen extends Piece{
         }
 
         //Queen's moving rules
-        System.out.println("queen movedddddddd???");
+        if (Debug.ENABLED) Debug.println("queen movedddddddd???");
         float dfX = Math.abs(start.getX() - dest.getX());
         float dfY = Math.abs(start.getY() - dest.getY());
         if(start.getX() != dest.getX() && start.getY() != dest.getY()){
@@ -14,12 +14,13 @@ public class Rook extends Piece{
     public Rook(Player player, Square square){
         setPlayer(player);
         setSquare(square);
-        setName(Rook._NAME);
+        setType(PieceType.ROOK);
         square.setPiece(this);
     }
 
     @Override
     public boolean canMove(Board board, Square start, Square dest) {
+        if (Metrics.ENABLED) Metrics.CAN_MOVE.increment();
 
         //check if the destination square is occupied by player's own piece
         //and if the destination square is out of bound
@@ -27,7 +28,7 @@ public class Rook extends Piece{
             return false;
         }
         if(hasPieceOnThePath(board, dest)){
-            System.out.println("31");
+            if (Debug.ENABLED) Debug.println("31");
             return false;
         }
 
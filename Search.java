@@ -0,0 +1,663 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Alpha-beta engine search over the board model.
+ * Runs iterative deepening with a transposition table and a quiescence search on captures.
+ * Moves are ordered by a MovePicker unless move ordering is switched off for benchmarking.
+ * Selective features (null move pruning with verification, late move reductions, futility pruning and razoring,
+ * check extensions and principal variation search) can each be switched off, e.g. to measure them.
+ * The game ends when a king is captured, so capturing the king is scored as a mate.
+ */
+public class Search {
+
+    public static final int MATE = 100000;
+    public static final int INFINITY = 1000000;
+    public static final int STOP_CHECK_NODES = 256;//power of two
+    public static final int MAX_DEPTH = MoveOrdering.MAX_PLY / 2;//iteration limit of timed searches
+    public static final int MAX_LINES = 64;//multi-PV lines, more than any position has moves
+    public static final int TABLEBASE_WIN = MATE / 2;//known win without a known distance to the king capture
+
+    //selective search tuning
+    public static final int NULL_MOVE_MIN_DEPTH = 3;
+    public static final int NULL_MOVE_REDUCTION = 2;
+    public static final int NULL_MOVE_VERIFY_DEPTH = 5;
+    public static final int LMR_MIN_DEPTH = 3;
+    public static final int LMR_MIN_MOVES = 3;
+    public static final int LMR_HISTORY_THRESHOLD = MoveOrdering.HISTORY_MAX / 8;
+    public static final int FUTILITY_MARGIN = 200;//per ply of remaining depth
+    public static final int RAZOR_MARGIN = 300;//per ply of remaining depth
+    public static final int MAX_EXTENSION_PLY = MoveOrdering.MAX_PLY / 2;
+
+    private final Evaluator evaluator;
+    private final TranspositionTable table;
+    private final MoveOrdering ordering = new MoveOrdering();
+    private final PositionHistory history = new PositionHistory();//game positions plus the current search path
+    private Tablebase tablebase;
+
+    private boolean moveOrdering = true;
+    private boolean nullMove = true;
+    private boolean lateMoveReductions = true;
+    private boolean futility = true;
+    private boolean razoring = true;
+    private boolean checkExtensions = true;
+    private boolean principalVariationSearch = true;
+    private volatile boolean stopRequested;
+    private final BooleanSupplier stopSignal = () -> stopRequested;//polled by the move pickers
+    private TimeManager timeManager;//only set during a timed search
+    private int completedDepth;
+    private boolean aborted;
+    private long nodes;
+    private Move rootBestMove;
+    private final int[] excludedRootMoves = new int[MAX_LINES];//keys of the lines already found in a multi-PV iteration
+    private int excludedCount;
+
+    public Search() {
+        this(new Evaluator(), new TranspositionTable());
+    }
+
+    public Search(Evaluator evaluator, TranspositionTable table) {
+        this.evaluator = evaluator;
+        this.table = table;
+    }
+
+    /**
+     * Searches the position of a game to a fixed depth.
+     * @param game game model, the side to move is game.getPlayerTurn()
+     * @param depth depth in plies
+     * @return best move and score of the deepest completed iteration
+     */
+    public SearchResult search(Game game, int depth) {
+        return search(game, depth, null);
+    }
+
+    /**
+     * Searches the position of a game until the time manager's limits are used up.
+     * The hard limit is polled inside the search, the soft limit between iterations.
+     * @param game game model, the side to move is game.getPlayerTurn()
+     * @param timeManager started for this move
+     * @param listener notified after each iteration, may be null
+     * @return best move and score of the deepest completed iteration
+     */
+    public SearchResult search(Game game, TimeManager timeManager, SearchListener listener) {
+        this.timeManager = timeManager;
+        try {
+            return search(game, MAX_DEPTH, listener);
+        } finally {
+            this.timeManager = null;
+        }
+    }
+
+    /**
+     * Searches the position of a game to a fixed depth, reporting every completed iteration.
+     * If the search is stopped the result of the last completed iteration is returned.
+     * @param game game model, the side to move is game.getPlayerTurn()
+     * @param depth depth in plies
+     * @param listener notified after each iteration, may be null
+     * @return best move and score of the deepest completed iteration
+     */
+    public SearchResult search(Game game, int depth, SearchListener listener) {
+        Board board = game.getBoard();
+        int color = game.getTurnCode();
+        long startTime = System.currentTimeMillis();
+        long rootKey = prepare(game);
+        SearchResult result = new SearchResult(null, 0, 0, 0, 0, new ArrayList<Move>());
+
+        try {
+            for (int d = 1; d <= depth && !stopRequested; d++) {
+                SearchIterationEvent event = new SearchIterationEvent();
+                event.begin();
+                long iterationStartNodes = nodes;
+                rootBestMove = null;
+                int score = alphaBeta(board, color, d, -INFINITY, INFINITY, 0, rootKey, true, true);
+                commitIteration(event, d, score, nodes - iterationStartNodes);
+                if (aborted) {
+                    break;
+                }
+                result = new SearchResult(rootBestMove, score, d, nodes,
+                        System.currentTimeMillis() - startTime, principalVariation(board, color, d));
+                completedDepth = d;
+                if (listener != null) {
+                    listener.iterationCompleted(result);
+                }
+                if (timeManager != null && !timeManager.iterationCompleted(result)) {
+                    break;
+                }
+            }
+        } finally {
+            evaluator.detach();
+        }
+        return result;
+    }
+
+    /**
+     * Multi-PV search: finds the best few root moves with their own scores and lines.
+     * Every iteration searches the root once per line, leaving out the moves of the lines already found;
+     * the lines share the transposition table, so later ones reuse most of the earlier ones' work.
+     * If the search is stopped the lines of the last completed iteration are returned.
+     * @param game game model, the side to move is game.getPlayerTurn()
+     * @param depth depth in plies
+     * @param lines number of lines wanted, fewer are returned when there are fewer moves
+     * @param listener notified with all lines after each iteration, may be null
+     * @return lines of the deepest completed iteration, best first
+     */
+    public List<SearchResult> searchMultiPv(Game game, int depth, int lines, MultiPvListener listener) {
+        Board board = game.getBoard();
+        int color = game.getTurnCode();
+        long startTime = System.currentTimeMillis();
+        long rootKey = prepare(game);
+        int wanted = Math.max(1, Math.min(lines, MAX_LINES));
+        List<SearchResult> result = Collections.emptyList();
+
+        try {
+            for (int d = 1; d <= depth && !stopRequested; d++) {
+                List<SearchResult> iteration = new ArrayList<>(wanted);
+                excludedCount = 0;
+                while (iteration.size() < wanted) {
+                    SearchIterationEvent event = new SearchIterationEvent();
+                    event.begin();
+                    long iterationStartNodes = nodes;
+                    rootBestMove = null;
+                    int score = alphaBeta(board, color, d, -INFINITY, INFINITY, 0, rootKey, true, true);
+                    commitIteration(event, d, score, nodes - iterationStartNodes);
+                    if (aborted || rootBestMove == null) {
+                        break;//stopped, or no moves left for another line
+                    }
+                    iteration.add(new SearchResult(rootBestMove, score, d, nodes,
+                            System.currentTimeMillis() - startTime, linePrincipalVariation(board, color, d)));
+                    excludedRootMoves[excludedCount++] = rootBestMove.key();
+                }
+                if (aborted) {
+                    break;
+                }
+                //a later line can come out better than an earlier one at a shallow depth
+                iteration.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+                result = Collections.unmodifiableList(iteration);
+                completedDepth = d;
+                if (listener != null) {
+                    listener.linesUpdated(result);
+                }
+            }
+        } finally {
+            excludedCount = 0;
+            evaluator.detach();
+        }
+        return result;
+    }
+
+    /**
+     * Resets the per-search state and the search history for a game's position.
+     * @return hash of the root position
+     */
+    private long prepare(Game game) {
+        nodes = 0;
+        aborted = false;
+        completedDepth = 0;
+        ordering.clear();
+        history.copyFrom(game.getHistory());
+        evaluator.attach(game.getBoard());
+        long rootKey = Zobrist.hash(game.getBoard(), game.getTurnCode());
+        if (history.size() == 0 || history.current() != rootKey) {
+            history.push(rootKey, true);//history out of date, e.g. a position set up by hand
+        }
+        return rootKey;
+    }
+
+    //the root entry only holds the first line's move, so each line is followed from the position after its own move
+    private List<Move> linePrincipalVariation(Board board, int color, int depth) {
+        Move first = Move.fromKey(rootBestMove.key());
+        board.makeMove(first);
+        List<Move> rest = principalVariation(board, 1 - color, depth - 1);
+        board.unmakeMove(first);
+        List<Move> line = new ArrayList<>(rest.size() + 1);
+        line.add(first);
+        line.addAll(rest);
+        return line;
+    }
+
+    private boolean isExcludedAtRoot(Move move) {
+        for (int i = 0; i < excludedCount; i++) {
+            if (excludedRootMoves[i] == move.key()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void commitIteration(SearchIterationEvent event, int depth, int score, long iterationNodes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.depth = depth;
+            event.score = aborted ? 0 : score;
+            event.nodes = iterationNodes;
+            event.bestMove = rootBestMove == null ? null : Notation.toCoordinate(rootBestMove);
+            event.aborted = aborted;
+            event.commit();
+        }
+    }
+
+    /**
+     * Asks a running search to return as soon as possible, from any thread.
+     * The request stays in force for later searches until {@link #clearStop()}.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public void clearStop() {
+        stopRequested = false;
+    }
+
+    //the stop flag is a plain volatile read and checked on every node, and by the move pickers between the pieces
+    //they generate moves for, so a cancelled search ends within one piece's move generation;
+    //the clock is only read every STOP_CHECK_NODES nodes
+    private boolean checkStop() {
+        if (stopRequested || ((nodes & (STOP_CHECK_NODES - 1)) == 0 && isOutOfTime())) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    //the first iteration always finishes, a move has to be played
+    private boolean isOutOfTime() {
+        return timeManager != null && completedDepth > 0 && timeManager.isHardLimitReached();
+    }
+
+    /**
+     * @param key hash of the position, also the newest entry of the search history
+     * @param pvNode true on the principal variation (first move at every ply so far), never pruned
+     * @param allowNull false right after a null move, two passes in a row prove nothing
+     */
+    private int alphaBeta(Board board, int color, int depth, int alpha, int beta, int ply, long key,
+                          boolean pvNode, boolean allowNull) {
+        if (depth <= 0) {
+            return quiescence(board, color, alpha, beta, ply);
+        }
+        nodes++;
+        if (checkStop()) {
+            return 0;
+        }
+
+        //a repeated position can be repeated again, so it is scored as the draw it leads to
+        if (ply > 0 && (history.isRepetition() || history.isFiftyMoveRule())) {
+            return 0;
+        }
+
+        if (tablebase != null && ply > 0) {
+            int wdl = tablebase.probe(board, color);
+            if (wdl == Tablebase.WIN) {
+                return TABLEBASE_WIN - ply;
+            } else if (wdl == Tablebase.LOSS) {
+                return -TABLEBASE_WIN + ply;
+            } else if (wdl == Tablebase.DRAW) {
+                return 0;
+            }
+        }
+
+        int hashMove = MoveOrdering.NO_MOVE;
+        int entry = table.probe(key);
+        if (entry >= 0) {
+            hashMove = table.getMoveAt(entry);
+            if (ply > 0 && table.getDepth(entry) >= depth) {
+                int score = fromTable(table.getScore(entry), ply);
+                byte flag = table.getFlag(entry);
+                if (flag == TranspositionTable.EXACT
+                        || (flag == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (flag == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int opponent = 1 - color;
+        boolean inCheck = (checkExtensions || nullMove || futility || lateMoveReductions)
+                && StaticExchange.isInCheck(board, color);
+        if (checkExtensions && inCheck && ply < MAX_EXTENSION_PLY) {
+            depth++;//look one ply further for the way out of the check
+        }
+
+        //frontier pruning: hopeless quiet positions go straight to quiescence or skip their quiet moves
+        boolean futile = false;
+        if (!pvNode && !inCheck && ply > 0 && depth <= 2 && (futility || razoring)) {
+            int staticEval = evaluator.evaluate(board, color);
+            if (razoring && staticEval + RAZOR_MARGIN * depth <= alpha) {
+                int score = quiescence(board, color, alpha, alpha + 1, ply);
+                if (score <= alpha) {
+                    return score;
+                }
+            }
+            futile = futility && staticEval + FUTILITY_MARGIN * depth <= alpha;
+        }
+
+        //null move: if passing still fails high the real moves will too
+        if (nullMove && allowNull && !pvNode && !inCheck && ply > 0 && depth >= NULL_MOVE_MIN_DEPTH
+                && beta < MATE - MoveOrdering.MAX_PLY && board.hasNonPawnMaterial(color)
+                && evaluator.evaluate(board, color) >= beta) {
+            int reduction = depth >= 6 ? NULL_MOVE_REDUCTION + 1 : NULL_MOVE_REDUCTION;
+            long nullKey = key ^ Zobrist.sideKey();
+            history.push(nullKey, true);//no repetition across a pass
+            int score = -alphaBeta(board, opponent, depth - 1 - reduction, -beta, -beta + 1, ply + 1, nullKey,
+                    false, false);
+            history.pop();
+            if (aborted) {
+                return 0;
+            }
+            if (score >= beta) {
+                if (score >= MATE - MoveOrdering.MAX_PLY) {
+                    score = beta;//a king capture found after a pass is not a real one
+                }
+                //verification guards against zugzwang at higher depths
+                if (depth < NULL_MOVE_VERIFY_DEPTH
+                        || alphaBeta(board, color, depth - reduction, beta - 1, beta, ply, key, false, false) >= beta) {
+                    return score;
+                }
+            }
+        }
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        Move bestMove = null;
+        int moveCount = 0;
+
+        MovePicker picker = null;
+        ArrayList<Move> rawMoves = null;
+        int next = 0;
+        if (moveOrdering) {
+            picker = new MovePicker(board, color, ordering, ply, hashMove, false, stopSignal);
+        } else {
+            rawMoves = new ArrayList<>();
+            MoveGenerator.generateAll(board, color, rawMoves);
+        }
+
+        while (true) {
+            Move move = picker != null ? picker.next() : (next < rawMoves.size() ? rawMoves.get(next++) : null);
+            if (move == null) {
+                break;
+            }
+            if (ply == 0 && excludedCount > 0 && isExcludedAtRoot(move)) {
+                continue;
+            }
+
+            Piece victim = board.getSquare(move.getDestX(), move.getDestY()).getPiece();
+            if (victim != null && victim.getType() == PieceType.KING) {
+                //capturing the king ends the game
+                if (ply == 0) {
+                    rootBestMove = move;
+                }
+                return MATE - ply;
+            }
+            boolean quiet = victim == null;
+            if (futile && quiet && moveCount > 0) {
+                continue;
+            }
+
+            //late quiet moves are searched shallower, less so when they have a good history
+            int reduction = 0;
+            if (lateMoveReductions && quiet && !inCheck && depth >= LMR_MIN_DEPTH && moveCount >= LMR_MIN_MOVES
+                    && move.key() != ordering.getKiller(ply, 0) && move.key() != ordering.getKiller(ply, 1)) {
+                reduction = moveCount >= 2 * LMR_MIN_MOVES ? 2 : 1;
+                if (ordering.getHistory(color, move) > LMR_HISTORY_THRESHOLD) {
+                    reduction--;
+                }
+                reduction = Math.min(reduction, depth - 2);
+            }
+
+            board.makeMove(move);
+            int score;
+            if (moveCount == 0 || !principalVariationSearch && reduction == 0) {
+                score = -searchChild(board, opponent, move, depth - 1, -beta, -alpha, ply, pvNode && moveCount == 0);
+            } else {
+                //null window first, searched again with the full window only if it beats alpha
+                int window = principalVariationSearch ? alpha + 1 : beta;
+                score = -searchChild(board, opponent, move, depth - 1 - reduction, -window, -alpha, ply, false);
+                if (score > alpha && reduction > 0) {
+                    score = -searchChild(board, opponent, move, depth - 1, -window, -alpha, ply, false);
+                }
+                if (score > alpha && score < beta && window != beta) {
+                    score = -searchChild(board, opponent, move, depth - 1, -beta, -alpha, ply, pvNode);
+                }
+            }
+            board.unmakeMove(move);
+            if (aborted) {
+                return 0;
+            }
+            moveCount++;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (ply == 0) {
+                    rootBestMove = move;
+                }
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                if (quiet && moveOrdering) {
+                    ordering.updateQuietCutoff(color, move, ply, depth);
+                }
+                break;
+            }
+        }
+
+        if (stopRequested) {
+            aborted = true;//the picker may have given up before the last move, nothing here can be trusted
+            return 0;
+        }
+        if (bestMove == null) {
+            return 0;//no moves at all
+        }
+
+        if (ply == 0 && excludedCount > 0) {
+            //a later multi-PV line scored the root without the better moves, that is not the root's value;
+            //the first line's entry stays and keeps its move first in the next iteration
+            return bestScore;
+        }
+        byte flag = bestScore <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                : bestScore >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        table.store(key, flag == TranspositionTable.UPPER_BOUND ? MoveOrdering.NO_MOVE : bestMove.key(),
+                toTable(bestScore, ply), depth, flag);
+        return bestScore;
+    }
+
+    /**
+     * Searches the position after a move that has just been made, keeping the search history in step.
+     */
+    private int searchChild(Board board, int color, Move move, int depth, int alpha, int beta, int parentPly,
+                            boolean pvNode) {
+        if (depth <= 0) {
+            return quiescence(board, color, alpha, beta, parentPly + 1);//only captures, nothing repeats
+        }
+        long childKey = Zobrist.hash(board, color);
+        history.push(childKey, move.isIrreversible());
+        int score = alphaBeta(board, color, depth, alpha, beta, parentPly + 1, childKey, pvNode, true);
+        history.pop();
+        return score;
+    }
+
+    /**
+     * Searches captures only until the position is quiet, so the static evaluation is not taken mid-exchange.
+     */
+    private int quiescence(Board board, int color, int alpha, int beta, int ply) {
+        nodes++;
+        if (checkStop()) {
+            return 0;
+        }
+
+        int bestScore = evaluator.evaluate(board, color);
+        if (bestScore >= beta || ply >= MoveOrdering.MAX_PLY - 1) {
+            return bestScore;
+        }
+        if (bestScore > alpha) {
+            alpha = bestScore;
+        }
+
+        //captures are always taken in MVV-LVA order here, in scan order the capture chains of the
+        //custom pieces blow the quiescence tree up by orders of magnitude
+        int opponent = 1 - color;
+        MovePicker picker = new MovePicker(board, color, ordering, ply, MoveOrdering.NO_MOVE, true, stopSignal);
+        Move move;
+        while ((move = picker.next()) != null) {
+            Piece victim = board.getSquare(move.getDestX(), move.getDestY()).getPiece();
+            if (victim != null && victim.getType() == PieceType.KING) {
+                return MATE - ply;
+            }
+
+            board.makeMove(move);
+            int score = -quiescence(board, opponent, -beta, -alpha, ply + 1);
+            board.unmakeMove(move);
+            if (aborted) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        if (stopRequested) {
+            aborted = true;
+            return 0;
+        }
+        return bestScore;
+    }
+
+    /**
+     * Follows the hash moves from the root to rebuild the principal variation.
+     */
+    private List<Move> principalVariation(Board board, int color, int depth) {
+        List<Move> line = new ArrayList<>();
+        int side = color;
+        for (int i = 0; i < depth; i++) {
+            int key = table.getMove(Zobrist.hash(board, side));
+            if (key == MoveOrdering.NO_MOVE) {
+                break;
+            }
+            Move move = Move.fromKey(key);
+            if (!MoveGenerator.isPseudoLegal(board, side, move)) {
+                break;
+            }
+            board.makeMove(move);
+            line.add(move);
+            side = 1 - side;
+        }
+        for (int i = line.size() - 1; i >= 0; i--) {
+            board.unmakeMove(line.get(i));
+        }
+        return line;
+    }
+
+    //mate scores are stored relative to the node so they stay correct when reached through another path
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MoveOrdering.MAX_PLY) return score + ply;
+        if (score <= -MATE + MoveOrdering.MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MoveOrdering.MAX_PLY) return score - ply;
+        if (score <= -MATE + MoveOrdering.MAX_PLY) return score + ply;
+        return score;
+    }
+
+    public void setMoveOrdering(boolean moveOrdering) {
+        this.moveOrdering = moveOrdering;
+    }
+
+    public boolean getMoveOrdering() {
+        return moveOrdering;
+    }
+
+    /**
+     * Switches all selective features (null move, LMR, futility, razoring, check extensions, PVS) at once.
+     */
+    public void setSelective(boolean enabled) {
+        nullMove = enabled;
+        lateMoveReductions = enabled;
+        futility = enabled;
+        razoring = enabled;
+        checkExtensions = enabled;
+        principalVariationSearch = enabled;
+    }
+
+    public void setNullMove(boolean nullMove) {
+        this.nullMove = nullMove;
+    }
+
+    public boolean getNullMove() {
+        return nullMove;
+    }
+
+    public void setLateMoveReductions(boolean lateMoveReductions) {
+        this.lateMoveReductions = lateMoveReductions;
+    }
+
+    public boolean getLateMoveReductions() {
+        return lateMoveReductions;
+    }
+
+    public void setFutility(boolean futility) {
+        this.futility = futility;
+    }
+
+    public boolean getFutility() {
+        return futility;
+    }
+
+    public void setRazoring(boolean razoring) {
+        this.razoring = razoring;
+    }
+
+    public boolean getRazoring() {
+        return razoring;
+    }
+
+    public void setCheckExtensions(boolean checkExtensions) {
+        this.checkExtensions = checkExtensions;
+    }
+
+    public boolean getCheckExtensions() {
+        return checkExtensions;
+    }
+
+    public void setPrincipalVariationSearch(boolean principalVariationSearch) {
+        this.principalVariationSearch = principalVariationSearch;
+    }
+
+    public boolean getPrincipalVariationSearch() {
+        return principalVariationSearch;
+    }
+
+    /**
+     * @param tablebase endgame tablebases probed at every interior node, may be null
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+}
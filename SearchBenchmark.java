@@ -0,0 +1,28 @@
+package chess;
+
+/**
+ * Fixed depth search benchmark comparing raw scan order against the staged move picker.
+ * Usage: SearchBenchmark [depth]
+ */
+public class SearchBenchmark {
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        System.out.printf("%-8s %-10s %12s %10s%n", "board", "ordering", "nodes", "time(ms)");
+        for (String option : new String[]{Board.START_BOARD, Board.CUSTOM_BOARD}) {
+            long unordered = run(option, depth, false);
+            long ordered = run(option, depth, true);
+            System.out.printf("%-8s node reduction %.1f%%%n", option, 100.0 * (unordered - ordered) / unordered);
+        }
+    }
+
+    private static long run(String option, int depth, boolean moveOrdering) {
+        Game game = option.equals(Board.CUSTOM_BOARD) ? Game.customGame() : Game.newGame();
+        Search search = new Search();
+        search.setSelective(false);//pruning and reductions would hide the ordering's effect
+        search.setMoveOrdering(moveOrdering);
+        SearchResult result = search.search(game, depth);
+        System.out.printf("%-8s %-10s %12d %10d%n", option, moveOrdering ? "picker" : "scan", result.getNodes(), result.getTimeMillis());
+        return result.getNodes();
+    }
+}
@@ -0,0 +1,35 @@
+package chess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one iterative deepening iteration of {@link Search}.
+ */
+@Name("chess.SearchIteration")
+@Label("Search Iteration")
+@Category({"Chess", "Engine"})
+@Description("One completed or aborted iteration of the engine search")
+@StackTrace(false)
+public class SearchIterationEvent extends Event {
+
+    @Label("Depth")
+    public int depth;
+
+    @Label("Score")
+    public int score;
+
+    @Label("Nodes")
+    @Description("Nodes searched in this iteration")
+    public long nodes;
+
+    @Label("Best Move")
+    public String bestMove;
+
+    @Label("Aborted")
+    public boolean aborted;
+}
@@ -0,0 +1,10 @@
+package chess;
+
+/**
+ * Receives the result of every completed iteration of an iterative deepening search.
+ * Called on the searching thread.
+ */
+public interface SearchListener {
+
+    void iterationCompleted(SearchResult result);
+}
@@ -0,0 +1,58 @@
+package chess;
+
+import java.util.List;
+
+/**
+ * Outcome of an engine search: best move, its score, the principal variation and search statistics.
+ */
+public class SearchResult {
+
+    private final Move bestMove;
+    private final int score;//centipawns from the side to move's point of view
+    private final int depth;
+    private final long nodes;
+    private final long timeMillis;
+    private final List<Move> principalVariation;
+
+    public SearchResult(Move bestMove, int score, int depth, long nodes, long timeMillis, List<Move> principalVariation) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+        this.principalVariation = principalVariation;
+    }
+
+    public Move getBestMove() {
+        return bestMove;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public List<Move> getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    public boolean isMateScore() {
+        return Math.abs(score) >= Search.MATE - MoveOrdering.MAX_PLY;
+    }
+
+    @Override
+    public String toString() {
+        return "depth " + depth + " score " + score + " nodes " + nodes + " time " + timeMillis + "ms pv " + principalVariation;
+    }
+}
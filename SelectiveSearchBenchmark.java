@@ -0,0 +1,83 @@
+package chess;
+
+/**
+ * Fixed depth benchmark of the selective search features: node count and time for the plain search,
+ * each feature on its own, and all of them together, then the time to reach every depth with and without them.
+ * The start positions are quiet, so besides them it searches a tactical middlegame, an opening where the queen
+ * gives check, and two endings a rook or a queen up, where futility pruning and razoring find hopeless nodes.
+ * Check extensions add nodes rather than save them, and principal variation search on its own changes the
+ * counts by a few percent at most: its null windows mostly pay off once reductions make re-searches cheap.
+ * Usage: SelectiveSearchBenchmark [depth]
+ */
+public class SelectiveSearchBenchmark {
+
+    private static final String[] FEATURES = {"plain", "null move", "lmr", "futility", "razoring", "check ext", "pvs", "all"};
+
+    //name and FEN, the start positions are set up by their board option
+    private static final String[][] POSITIONS = {
+            {Board.START_BOARD, null},
+            {Board.CUSTOM_BOARD, null},
+            {"tactics", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w - - 0 1"},
+            {"checks", "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w - - 0 1"},
+            {"rook up", "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1"},
+            {"queen up", "6k1/5ppp/8/8/8/2Q5/5PPP/6K1 w - - 0 1"},
+    };
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        System.out.printf("%-8s %-10s %12s %10s %8s%n", "board", "features", "nodes", "time(ms)", "move");
+        for (String[] position : POSITIONS) {
+            for (String feature : FEATURES) {
+                SearchResult result = newSearch(feature).search(newGame(position), depth);
+                System.out.printf("%-8s %-10s %12d %10d %8s%n", position[0], feature, result.getNodes(),
+                        result.getTimeMillis(), Notation.toCoordinate(result.getBestMove()));
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-8s %-10s time to depth (ms)%n", "board", "features");
+        for (String[] position : POSITIONS) {
+            for (String feature : new String[]{"plain", "all"}) {
+                StringBuilder times = new StringBuilder();
+                newSearch(feature).search(newGame(position), depth,
+                        r -> times.append(String.format(" d%d=%d", r.getDepth(), r.getTimeMillis())));
+                System.out.printf("%-8s %-10s%s%n", position[0], feature, times);
+            }
+        }
+    }
+
+    private static Game newGame(String[] position) {
+        if (position[1] != null) {
+            return Notation.parseFen(position[1]);
+        }
+        return position[0].equals(Board.CUSTOM_BOARD) ? Game.customGame() : Game.newGame();
+    }
+
+    private static Search newSearch(String feature) {
+        Search search = new Search();
+        search.setSelective(feature.equals("all"));
+        switch (feature) {
+            case "null move":
+                search.setNullMove(true);
+                break;
+            case "lmr":
+                search.setLateMoveReductions(true);
+                break;
+            case "futility":
+                search.setFutility(true);
+                break;
+            case "razoring":
+                search.setRazoring(true);
+                break;
+            case "check ext":
+                search.setCheckExtensions(true);
+                break;
+            case "pvs":
+                search.setPrincipalVariationSearch(true);
+                break;
+            default:
+                break;
+        }
+        return search;
+    }
+}
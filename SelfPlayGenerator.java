@@ -0,0 +1,351 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Headless self-play that produces labelled positions for training the evaluation.
+ * Every worker thread plays engine against engine games at a fixed low depth, alternating the standard and the
+ * custom setup, each game opening with a few random legal moves so no two games are alike. Every quiet position
+ * of a game (side to move not in check, best move not a capture, score not a decided mate) is labelled with its
+ * search score and, once the game is over, its result.
+ * Positions already written by this run are left out by their Zobrist hash.
+ *
+ * Records are written to shard files of {@link #DEFAULT_SHARD_RECORDS} records each, shard-00000.bin and up in
+ * the output directory, numbered on after any shards already there. A shard is big endian: a header of
+ * {@link #HEADER_BYTES} bytes (magic, version, record count as a long, rewritten when the shard is closed)
+ * followed by records of {@link #RECORD_BYTES} bytes:
+ * <pre>
+ * long   occupancy, bit x * 8 + y set for every occupied square of the model board
+ * byte[] 16 bytes, a nibble per occupied square in bit order, high nibble first: color code << 3 | PieceType code
+ * short  score in centipawns from the side to move's point of view
+ * byte   result for the side to move: 1 win, 0 draw, -1 loss
+ * byte   side to move, its color code
+ * short  ply of the game
+ * short  reserved, 0
+ * </pre>
+ * No setup ever has more than 32 pieces, captures only ever remove or convert one.
+ *
+ * Usage: SelfPlayGenerator [-games N] [-depth N] [-threads N] [-random N] [-shard N] output-directory
+ */
+public class SelfPlayGenerator {
+
+    public static final int MAGIC = 0x43535031;//"CSP1"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int RECORD_BYTES = 32;
+    public static final int DEFAULT_SHARD_RECORDS = 1 << 20;//32 MB shards
+    public static final int DEFAULT_DEPTH = 3;
+    public static final int DEFAULT_RANDOM_PLIES = 8;
+    public static final int MAX_PLIES = 300;//longer games are adjudicated a draw
+    public static final int SEEN_CAPACITY = 1 << 23;//hashes remembered for deduplication, 64 MB
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int TABLE_BYTES = 4 << 20;//per worker, the searches are shallow
+
+    private final int games;
+    private final int depth;
+    private final int threads;
+    private final int randomPlies;
+    private final int shardRecords;
+
+    private final PositionSet seen = new PositionSet(SEEN_CAPACITY);
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    //shard output, guarded by this
+    private Path directory;
+    private int shardNumber;
+    private FileChannel channel;
+    private long shardCount;
+    private long written;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.BIG_ENDIAN);
+
+    /**
+     * @param games games to play
+     * @param depth search depth in plies of every move
+     * @param threads worker threads
+     * @param randomPlies random moves at the start of every game, not recorded
+     * @param shardRecords records per shard file
+     */
+    public SelfPlayGenerator(int games, int depth, int threads, int randomPlies, int shardRecords) {
+        this.games = games;
+        this.depth = depth;
+        this.threads = Math.max(1, threads);
+        this.randomPlies = randomPlies;
+        this.shardRecords = shardRecords;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = 1000;
+        int depth = DEFAULT_DEPTH;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int randomPlies = DEFAULT_RANDOM_PLIES;
+        int shardRecords = DEFAULT_SHARD_RECORDS;
+        int arg = 0;
+        while (arg + 1 < args.length && args[arg].startsWith("-")) {
+            int value = Integer.parseInt(args[arg + 1]);
+            switch (args[arg]) {
+                case "-games":
+                    games = value;
+                    break;
+                case "-depth":
+                    depth = value;
+                    break;
+                case "-threads":
+                    threads = value;
+                    break;
+                case "-random":
+                    randomPlies = value;
+                    break;
+                case "-shard":
+                    shardRecords = value;
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[arg]);
+                    return;
+            }
+            arg += 2;
+        }
+        if (args.length - arg != 1) {
+            System.err.println("Usage: SelfPlayGenerator [-games N] [-depth N] [-threads N] [-random N] [-shard N] output-directory");
+            return;
+        }
+
+        SelfPlayGenerator generator = new SelfPlayGenerator(games, depth, threads, randomPlies, shardRecords);
+        long start = System.nanoTime();
+        long positions = generator.run(Paths.get(args[arg]));
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        System.out.printf("Wrote %d positions from %d games in %d ms (%d per hour), %d duplicates left out%n",
+                positions, games, millis, positions * 3_600_000L / millis, generator.duplicates.get());
+    }
+
+    /**
+     * Plays all games and writes their positions.
+     * @param directory output directory, created if missing
+     * @return number of positions written
+     */
+    public long run(Path directory) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        synchronized (this) {
+            this.directory = directory;
+            while (Files.exists(shardPath(shardNumber))) {
+                shardNumber++;
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            long seed = System.nanoTime() ^ (i * 0x9E3779B97F4A7C15L);
+            workers.add(pool.submit(() -> {
+                work(new Random(seed));
+                return null;
+            }));
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            throw new IOException("Self-play worker failed", e.getCause());
+        } finally {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            synchronized (this) {
+                closeShard();
+            }
+        }
+        return written;
+    }
+
+    private void work(Random random) throws IOException {
+        Search search = new Search(new Evaluator(), new TranspositionTable(TABLE_BYTES));
+        ByteBuffer records = ByteBuffer.allocate(MAX_PLIES * RECORD_BYTES).order(ByteOrder.BIG_ENDIAN);
+        int game;
+        while ((game = started.getAndIncrement()) < games) {
+            records.clear();
+            play(game % 2 == 0 ? Game.newGame() : Game.customGame(), search, random, records);
+            records.flip();
+            write(records);
+        }
+    }
+
+    /**
+     * Plays one game and packs its quiet positions, labelled with the result once it is known.
+     */
+    private void play(Game game, Search search, Random random, ByteBuffer records) {
+        Board board = game.getBoard();
+        for (int ply = 0; ply < randomPlies; ply++) {
+            List<Move> moves = MoveGenerator.legalMoves(board, game.getPlayerTurn());
+            if (moves.isEmpty()) {
+                return;//nothing worth recording
+            }
+            game.playMove(moves.get(random.nextInt(moves.size())));
+        }
+
+        List<Integer> sides = new ArrayList<>();//side to move of every record
+        String winner = null;
+        for (int ply = randomPlies; ply < MAX_PLIES && !game.getStatus().isOver(); ply++) {
+            String color = game.getPlayerTurn();
+            SearchResult result = search.search(game, depth);
+            Move best = result.getBestMove();
+            if (best == null) {
+                //no move left: mated, or stalemated which the engine's rules count as a draw
+                winner = StaticExchange.isInCheck(board, color) ? Player.opposite(color) : null;
+                break;
+            }
+            boolean capture = board.getSquare(best.getDestX(), best.getDestY()).getPiece() != null;
+            if (!capture && Math.abs(result.getScore()) < Search.TABLEBASE_WIN
+                    && !StaticExchange.isInCheck(board, color)) {
+                if (seen.add(Zobrist.hash(board, color))) {
+                    pack(board, game.getTurnCode(), result.getScore(), ply, records);
+                    sides.add(game.getTurnCode());
+                } else {
+                    duplicates.incrementAndGet();
+                }
+            }
+            game.playMove(Move.fromKey(best.key()));
+        }
+        if (game.getStatus() == GameStatus.KING_CAPTURED) {
+            winner = Game.gameOver(game);
+        }
+
+        //fill in the results now that the game is decided
+        int winnerCode = winner == null ? -1 : Player.codeOf(winner);
+        for (int i = 0; i < sides.size(); i++) {
+            int side = sides.get(i);
+            records.put(i * RECORD_BYTES + 26, (byte) (winnerCode < 0 ? 0 : winnerCode == side ? 1 : -1));
+        }
+    }
+
+    /**
+     * Appends one record, its result still 0.
+     */
+    static void pack(Board board, int side, int score, int ply, ByteBuffer records) {
+        long occupancy = 0;
+        byte[] pieces = new byte[16];
+        int count = 0;
+        for (int square = 0; square < 64; square++) {
+            Piece piece = board.getSquare(square / 8, square % 8).getPiece();
+            if (piece == null) {
+                continue;
+            }
+            occupancy |= 1L << square;
+            int nibble = piece.getColorCode() << 3 | piece.getType().getCode();
+            pieces[count / 2] |= count % 2 == 0 ? nibble << 4 : nibble;
+            count++;
+        }
+        records.putLong(occupancy).put(pieces)
+                .putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score)))
+                .put((byte) 0).put((byte) side).putShort((short) Math.min(ply, Short.MAX_VALUE)).putShort((short) 0);
+    }
+
+    /**
+     * Appends a game's records to the current shard, starting a new shard whenever one is full.
+     */
+    private synchronized void write(ByteBuffer records) throws IOException {
+        while (records.hasRemaining()) {
+            if (channel == null) {
+                openShard();
+            }
+            if (buffer.remaining() < RECORD_BYTES) {
+                flush();
+            }
+            int end = records.position() + RECORD_BYTES;
+            ByteBuffer record = records.duplicate();
+            record.limit(end);
+            buffer.put(record);
+            records.position(end);
+            shardCount++;
+            written++;
+            if (shardCount == shardRecords) {
+                closeShard();
+            }
+        }
+    }
+
+    private void openShard() throws IOException {
+        channel = FileChannel.open(shardPath(shardNumber++), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        shardCount = 0;
+        buffer.clear();
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(0);//count filled in on close
+    }
+
+    private void closeShard() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        flush();
+        ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN).putLong(0, shardCount);
+        channel.write(count, 8);
+        channel.close();
+        channel = null;
+    }
+
+    private void flush() throws IOException {
+        FileChannels.flush(channel, buffer);
+    }
+
+    private Path shardPath(int number) {
+        return directory.resolve(String.format("shard-%05d.bin", number));
+    }
+
+    /**
+     * Lock-free set of position hashes with linear probing. A probe gives up after {@link #MAX_PROBES} slots and
+     * then counts the position as new, so a nearly full set lets some duplicates through rather than blocking.
+     */
+    static class PositionSet {
+
+        static final int MAX_PROBES = 16;
+
+        private final AtomicLongArray slots;
+        private final int mask;
+
+        PositionSet(int capacity) {
+            slots = new AtomicLongArray(Integer.highestOneBit(Math.max(2, capacity)));
+            mask = slots.length() - 1;
+        }
+
+        /**
+         * @return true if the hash was not in the set
+         */
+        boolean add(long hash) {
+            long key = hash == 0 ? 1 : hash;//0 marks an empty slot
+            int index = (int) (key ^ key >>> 32) & mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                long slot = slots.get(index);
+                if (slot == key) {
+                    return false;
+                }
+                if (slot == 0) {
+                    if (slots.compareAndSet(index, 0, key)) {
+                        return true;
+                    }
+                    if (slots.get(index) == key) {
+                        return false;//another thread added the same position
+                    }
+                }
+                index = (index + 1) & mask;
+            }
+            return true;
+        }
+    }
+}
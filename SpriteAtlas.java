@@ -0,0 +1,134 @@
+package chess;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * All piece images of both colors, the custom pieces included, loaded once into one atlas image.
+ * Icons are cut from the atlas and shared by reference, so moving, undoing and repainting pieces never decodes
+ * or copies an image. Scaled variants for a square size are made on first use and kept until another size
+ * is asked for, i.e. until the board is resized.
+ * Images are indexed by {@link #codeOf(Piece)}: piece type code * 2 + color code.
+ */
+public class SpriteAtlas {
+
+    public static final int CODES = PieceType.values().length * 2;
+
+    private final Function<Piece, Image> source;//loads the image of a piece, may return null
+
+    private BufferedImage atlas;//one cell per code: row = color code, column = type code
+    private final ImageIcon[] icons = new ImageIcon[CODES];
+    private final Image[] scaled = new Image[CODES];
+    private int scaledSize;
+    private boolean loaded;
+
+    /**
+     * @param source loader of the image of a piece, called once per piece type and color
+     */
+    public SpriteAtlas(Function<Piece, Image> source) {
+        this.source = source;
+    }
+
+    /**
+     * @return atlas index of a piece's image
+     */
+    public static int codeOf(Piece piece) {
+        return piece.getType().getCode() * 2 + piece.getColorCode();
+    }
+
+    /**
+     * Loads every piece image into the atlas, at most once.
+     */
+    public synchronized void preload() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        Image[] images = new Image[CODES];
+        int cell = 1;
+        for (int code = 0; code < CODES; code++) {
+            //the loader needs a piece: a detached one that is never put on a board
+            Piece prototype = PieceType.fromCode(code / 2).create(Player.of(code % 2), new Square(null, 0, 0));
+            Image image = source == null ? null : source.apply(prototype);
+            if (image != null && image.getWidth(null) > 0) {
+                images[code] = image;
+                cell = Math.max(cell, Math.max(image.getWidth(null), image.getHeight(null)));
+            }
+        }
+
+        atlas = new BufferedImage(cell * PieceType.values().length, cell * 2, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        for (int code = 0; code < CODES; code++) {
+            if (images[code] != null) {
+                int x = (code / 2) * cell;
+                int y = (code % 2) * cell;
+                g.drawImage(images[code], x, y, null);
+                icons[code] = new ImageIcon(atlas.getSubimage(x, y, images[code].getWidth(null),
+                        images[code].getHeight(null)));
+            }
+        }
+        g.dispose();
+    }
+
+    /**
+     * @return shared icon of the piece at its original size, null for no piece or no image
+     */
+    public ImageIcon getIcon(Piece piece) {
+        return piece == null ? null : getIcon(codeOf(piece));
+    }
+
+    public synchronized ImageIcon getIcon(int code) {
+        preload();
+        return icons[code];
+    }
+
+    /**
+     * @param code atlas index
+     * @param size square size in pixels
+     * @return image scaled to the square, null if the piece has no image
+     */
+    public synchronized Image getScaledImage(int code, int size) {
+        preload();
+        if (size != scaledSize) {
+            //resized: the variants of the old size are dropped
+            Arrays.fill(scaled, null);
+            scaledSize = size;
+        }
+        if (scaled[code] == null && icons[code] != null) {
+            scaled[code] = scale(icons[code].getImage(), size);
+        }
+        return scaled[code];
+    }
+
+    /**
+     * @return square size of the cached scaled images, 0 if none were made
+     */
+    public synchronized int getScaledSize() {
+        return scaledSize;
+    }
+
+    /**
+     * Compatible images match the screen format and are cached in video memory by Java2D.
+     */
+    public static Image createCompatibleImage(int width, int height, int transparency) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height,
+                transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private static Image scale(Image image, int size) {
+        Image sprite = createCompatibleImage(size, size, Transparency.TRANSLUCENT);
+        Graphics2D g = (Graphics2D) sprite.getGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, size, size, null);
+        g.dispose();
+        return sprite;
+    }
+}
@@ -44,11 +44,20 @@ public class Square {
         this.x = x;
     }
 
+    public Board getBoard() {
+        return board;
+    }
+
+    public void setBoard(Board board) {
+        this.board = board;
+    }
+
     public void setHasChess(boolean hasChess) {
         this.hasChess = hasChess;
     }
 
     public void setPiece(Piece piece) {
+        Piece previous = this.piece;
         if(piece == null){
             this.piece = null;
             setHasChess(false);
@@ -58,11 +67,18 @@ public class Square {
             this.piece.setSquare(this);
             setHasChess(true);
         }
+        if (board != null && previous != piece) {
+            board.occupantChanged(previous, piece);
+        }
 
     }
     public void setNullPiece(){
+        Piece previous = this.piece;
         this.piece = null;
         setHasChess(false);
+        if (board != null && previous != null) {
+            board.occupantChanged(previous, null);
+        }
     }
 
     public boolean hasChess(){
@@ -0,0 +1,247 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static exchange evaluation: the material outcome of the capture sequence on one square when both sides
+ * recapture with their least valuable attacker and may stop whenever going on would lose material.
+ * Works on a scratch copy of the piece layout, the board itself is never changed.
+ * Custom pieces follow the game rules: a vampire capture turns the victim to the vampire's side on the vampire's
+ * start square (where it can join the exchange), a witch capture leaves a queen on the square.
+ */
+public class StaticExchange {
+
+    private static final int EMPTY = -1;
+    private static final int MAX_EXCHANGE = 64;
+
+    private StaticExchange() {
+    }
+
+    /**
+     * @param board board model
+     * @param move capture to evaluate, played by the piece on its start square
+     * @return material won (or lost, if negative) by the moving side, 0 for a quiet move
+     */
+    public static int evaluate(Board board, Move move) {
+        int[] kinds = new int[64];
+        int[] colors = new int[64];
+        load(board, kinds, colors);
+        int from = move.getStartX() * 8 + move.getStartY();
+        int to = move.getDestX() * 8 + move.getDestY();
+        if (kinds[from] == EMPTY || kinds[to] == EMPTY || colors[from] == colors[to]) {
+            return 0;
+        }
+        return exchange(kinds, colors, from, to);
+    }
+
+    /**
+     * @param board board model
+     * @param x rank of the target square
+     * @param y file of the target square
+     * @param attackerColor side that may start capturing on the square
+     * @return material the attacking side can win on the square, 0 if it should leave it alone
+     */
+    public static int evaluateSquare(Board board, int x, int y, String attackerColor) {
+        int[] kinds = new int[64];
+        int[] colors = new int[64];
+        load(board, kinds, colors);
+        int to = x * 8 + y;
+        int side = Player.codeOf(attackerColor);
+        if (kinds[to] == EMPTY || colors[to] == side) {
+            return 0;
+        }
+        int from = leastValuableAttacker(kinds, colors, to, side);
+        return from < 0 ? 0 : Math.max(0, exchange(kinds, colors, from, to));
+    }
+
+    /**
+     * @return true if the opponent wins material by starting an exchange on the piece's square
+     */
+    public static boolean isHanging(Board board, Piece piece) {
+        Square square = piece.getSquare();
+        return evaluateSquare(board, square.getX(), square.getY(),
+                Player.colorOf(1 - piece.getColorCode())) > 0;
+    }
+
+    /**
+     * @param board board model
+     * @param color owner of the pieces to test
+     * @return pieces of that color the opponent can win material against, e.g. for GUI hints
+     */
+    public static List<Piece> findHangingPieces(Board board, String color) {
+        List<Piece> hanging = new ArrayList<>();
+        for (Piece piece : board.findSameColorPieces(color)) {
+            if (isHanging(board, piece)) {
+                hanging.add(piece);
+            }
+        }
+        return hanging;
+    }
+
+    /**
+     * @param board board model
+     * @param x rank of the square
+     * @param y file of the square
+     * @param byColor attacking side
+     * @return true if a piece of that side could capture on the square
+     */
+    public static boolean isAttacked(Board board, int x, int y, String byColor) {
+        return isAttacked(board, x, y, Player.codeOf(byColor));
+    }
+
+    /**
+     * @param byColor color code of the attacking side
+     */
+    public static boolean isAttacked(Board board, int x, int y, int byColor) {
+        int[] kinds = new int[64];
+        int[] colors = new int[64];
+        load(board, kinds, colors);
+        return leastValuableAttacker(kinds, colors, x * 8 + y, byColor) >= 0;
+    }
+
+    /**
+     * @return true if the side's king can be captured right now, false if it has no king
+     */
+    public static boolean isInCheck(Board board, String color) {
+        return isInCheck(board, Player.codeOf(color));
+    }
+
+    /**
+     * @param color color code of the side
+     */
+    public static boolean isInCheck(Board board, int color) {
+        King king = board.getKing(color);
+        if (king == null) {
+            return false;
+        }
+        Square square = king.getSquare();
+        return isAttacked(board, square.getX(), square.getY(), 1 - color);
+    }
+
+    private static void load(Board board, int[] kinds, int[] colors) {
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Piece piece = board.getSquare(i, j).getPiece();
+                kinds[i * 8 + j] = piece == null ? EMPTY : piece.getType().getCode();
+                colors[i * 8 + j] = piece == null ? 0 : piece.getColorCode();
+            }
+        }
+    }
+
+    /**
+     * Swap algorithm: gain[d] is what the side making capture d has won if the sequence stops right after it,
+     * then the list is folded back so each side only continues when that is better than stopping.
+     */
+    private static int exchange(int[] kinds, int[] colors, int from, int to) {
+        int[] gain = new int[MAX_EXCHANGE];
+        int depth = 0;
+        int side = colors[from];
+        boolean kingCaptured = kinds[to] == PieceType.KING.getCode();
+        gain[0] = capture(kinds, colors, from, to);
+
+        while (!kingCaptured && depth < MAX_EXCHANGE - 1) {
+            side ^= 1;
+            int attacker = leastValuableAttacker(kinds, colors, to, side);
+            if (attacker < 0) {
+                break;
+            }
+            depth++;
+            kingCaptured = kinds[to] == PieceType.KING.getCode();//capturing a king ends the game, no recapture
+            gain[depth] = capture(kinds, colors, attacker, to) - gain[depth - 1];
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) {
+                break;//neither continuing nor stopping here changes the result
+            }
+        }
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+
+    /**
+     * Plays a capture on the scratch layout.
+     * @return material swing for the capturing side
+     */
+    private static int capture(int[] kinds, int[] colors, int from, int to) {
+        int attacker = kinds[from];
+        int victim = kinds[to];
+        int side = colors[from];
+        int value = Evaluator.PIECE_VALUES[victim];
+        kinds[to] = attacker;
+        colors[to] = side;
+        if (attacker == PieceType.VAMPIRE.getCode()) {
+            //the victim changes sides: lost by one side and won by the other
+            kinds[from] = victim;
+            return 2 * value;
+        }
+        kinds[from] = EMPTY;
+        if (attacker == PieceType.WITCH.getCode()) {
+            kinds[to] = PieceType.QUEEN.getCode();
+            return value + Evaluator.PIECE_VALUES[PieceType.QUEEN.getCode()] - Evaluator.PIECE_VALUES[PieceType.WITCH.getCode()];
+        }
+        return value;
+    }
+
+    private static int leastValuableAttacker(int[] kinds, int[] colors, int to, int side) {
+        int best = -1;
+        int bestValue = Integer.MAX_VALUE;
+        for (int square = 0; square < 64; square++) {
+            int kind = kinds[square];
+            if (kind == EMPTY || colors[square] != side || square == to) {
+                continue;
+            }
+            int value = Evaluator.PIECE_VALUES[kind];
+            if (value < bestValue && attacks(kinds, kind, side, square, to)) {
+                best = square;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Capture geometry of the piece classes' canMove rules on the scratch layout.
+     */
+    private static boolean attacks(int[] kinds, int kind, int side, int from, int to) {
+        int dx = (to >>> 3) - (from >>> 3);
+        int dy = (to & 7) - (from & 7);
+        int adx = Math.abs(dx);
+        int ady = Math.abs(dy);
+        switch (PieceType.fromCode(kind)) {
+            case PAWN:
+                return dx == (side == Player.WHITE_CODE ? 1 : -1) && ady == 1;
+            case KNIGHT:
+                return adx * ady == 2;
+            case KING:
+                return Math.max(adx, ady) == 1;
+            case BISHOP:
+                return adx == ady && isPathClear(kinds, from, to);
+            case ROOK:
+                return (adx == 0 || ady == 0) && isPathClear(kinds, from, to);
+            case QUEEN:
+                return (adx == ady || adx == 0 || ady == 0) && isPathClear(kinds, from, to);
+            case VAMPIRE:
+                return adx * ady == 2 || ((adx == 0 || ady == 0) && adx + ady <= 2 && isPathClear(kinds, from, to));
+            case WITCH:
+                //jumps exactly two squares over an occupied square
+                return (adx == 0 || adx == 2) && (ady == 0 || ady == 2) && adx + ady > 0
+                        && kinds[(from + to) >>> 1] != EMPTY;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isPathClear(int[] kinds, int from, int to) {
+        int stepX = Integer.signum((to >>> 3) - (from >>> 3));
+        int stepY = Integer.signum((to & 7) - (from & 7));
+        int step = stepX * 8 + stepY;
+        for (int square = from + step; square != to; square += step) {
+            if (kinds[square] != EMPTY) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Probes endgame tablebases written by {@link TablebaseGenerator}.
+ * Each material combination of at most MAX_PIECES pieces (both kings included) has its own file holding
+ * 2 bits per position: win, loss or draw for the side to move. Files are memory-mapped on first use and
+ * shared by every engine in the JVM.
+ *
+ * A material combination is named by its white pieces and black pieces, king first, e.g. "KQ_KR".
+ * A position is indexed by the side to move and the squares of its pieces in canonical order,
+ * see {@link #canonicalize(int, int[], int[], int[])}.
+ */
+public class Tablebase {
+
+    public static final int MAX_PIECES = 4;
+
+    //2-bit values, from the side to move's point of view
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+    public static final int LOSS = 2;
+    public static final int ILLEGAL = 3;
+    public static final int UNKNOWN = -1;//position not covered by the available files
+
+    public static final int MAGIC = 0x43544231;//"CTB1"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final String EXTENSION = ".tb";
+    public static final String DEFAULT_DIRECTORY = "tablebases";
+
+    static final String LETTERS = "PNBRQKVW";//indexed by PieceType code
+
+    private static final ConcurrentHashMap<Path, Tablebase> SHARED = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final ConcurrentHashMap<String, Optional<MappedByteBuffer>> files = new ConcurrentHashMap<>();
+
+    private Tablebase(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param directory directory of tablebase files
+     * @return tablebase shared by every caller using the same directory
+     */
+    public static Tablebase open(Path directory) {
+        return SHARED.computeIfAbsent(directory.toAbsolutePath().normalize(), Tablebase::new);
+    }
+
+    /**
+     * @return tablebases in the working directory, or null if there are none
+     */
+    public static Tablebase openDefault() {
+        Path directory = Paths.get(DEFAULT_DIRECTORY);
+        return Files.isDirectory(directory) ? open(directory) : null;
+    }
+
+    /**
+     * @param board board model
+     * @param color side to move
+     * @return WIN, LOSS or DRAW for the side to move, UNKNOWN if the position is not covered
+     */
+    public int probe(Board board, String color) {
+        return probe(board, Player.codeOf(color));
+    }
+
+    /**
+     * @param stm color code of the side to move
+     */
+    public int probe(Board board, int stm) {
+        //most search nodes have too many pieces, they are turned away before anything is allocated
+        if (board.getPieceCount() > MAX_PIECES) {
+            return UNKNOWN;
+        }
+        int[] kinds = new int[MAX_PIECES];
+        int[] colors = new int[MAX_PIECES];
+        int[] squares = new int[MAX_PIECES];
+        int n = 0;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Piece piece = board.getSquare(i, j).getPiece();
+                if (piece == null) {
+                    continue;
+                }
+                kinds[n] = Zobrist.kindOf(piece);
+                colors[n] = Zobrist.colorOf(piece);
+                squares[n] = i * 8 + j;
+                n++;
+            }
+        }
+
+        canonicalize(n, kinds, colors, squares);
+        MappedByteBuffer buffer = mapping(name(n, kinds, colors));
+        if (buffer == null) {
+            return UNKNOWN;
+        }
+        int value = read(buffer, index(n, squares, stm));
+        return value == ILLEGAL ? UNKNOWN : value;
+    }
+
+    private MappedByteBuffer mapping(String name) {
+        return files.computeIfAbsent(name, key -> {
+            Path path = directory.resolve(key + EXTENSION);
+            if (!Files.isRegularFile(path)) {
+                return Optional.empty();
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.BIG_ENDIAN);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    Main.LOGGER.warning("Not a tablebase file: " + path);
+                    return Optional.empty();
+                }
+                return Optional.of(buffer);
+            } catch (IOException e) {
+                Main.LOGGER.warning("Can not map tablebase " + path + ": " + e.getMessage());
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    private static int read(MappedByteBuffer buffer, long index) {
+        int b = buffer.get(HEADER_BYTES + (int) (index >>> 2));
+        return (b >>> ((int) (index & 3) * 2)) & 3;
+    }
+
+    /**
+     * Sorts pieces into canonical order: white before black, king first, then by kind and square.
+     */
+    static void canonicalize(int n, int[] kinds, int[] colors, int[] squares) {
+        for (int i = 1; i < n; i++) {
+            int kind = kinds[i], color = colors[i], square = squares[i];
+            int key = sortKey(kind, color, square);
+            int j = i - 1;
+            while (j >= 0 && sortKey(kinds[j], colors[j], squares[j]) > key) {
+                kinds[j + 1] = kinds[j];
+                colors[j + 1] = colors[j];
+                squares[j + 1] = squares[j];
+                j--;
+            }
+            kinds[j + 1] = kind;
+            colors[j + 1] = color;
+            squares[j + 1] = square;
+        }
+    }
+
+    private static int sortKey(int kind, int color, int square) {
+        return ((color * 16) + (kind == PieceType.KING.getCode() ? 0 : kind + 1)) * 64 + square;
+    }
+
+    /**
+     * @return material name such as "KQ_KR" for pieces in canonical order
+     */
+    static String name(int n, int[] kinds, int[] colors) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && colors[i] != colors[i - 1]) {
+                name.append('_');
+            }
+            name.append(LETTERS.charAt(kinds[i]));
+        }
+        return name.toString();
+    }
+
+    /**
+     * @return position index of pieces in canonical order with the given side to move (0 white, 1 black)
+     */
+    static long index(int n, int[] squares, int stm) {
+        long index = stm;
+        for (int i = 0; i < n; i++) {
+            index = index * 64 + squares[i];
+        }
+        return index;
+    }
+
+    /**
+     * @return number of positions of a material combination with n pieces, both sides to move
+     */
+    static long size(int n) {
+        return 2L << (6 * n);
+    }
+}
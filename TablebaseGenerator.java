@@ -0,0 +1,551 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates win/draw/loss tablebases for material combinations of up to four pieces by retrograde analysis.
+ *
+ * A first pass, split across all cores, looks at every position once: a position where the side to move can capture
+ * the enemy king is won, and so is one with a capture into a material combination, generated beforehand, that is
+ * lost for the opponent. Every other position keeps a count of its moves not yet refuted, and a position whose every
+ * move is already refuted is lost. The decided positions seed a queue. Each position taken from the queue is
+ * unmoved: for every predecessor, the position before a non-capturing move of the other side, a lost successor makes
+ * the predecessor won, and a won successor refutes one of its moves, the last one making it lost. Every position is
+ * decided and queued at most once; those never decided when the queue runs dry are draws.
+ *
+ * The rules follow the piece classes: the game is won by capturing the king, there is no promotion, castling or
+ * en passant, a vampire capture converts the victim onto the vampire's start square and a witch capture turns
+ * the witch into a queen. A pawn may advance two squares from its starting rank.
+ *
+ * Usage: TablebaseGenerator outputDir KQ_K KV_KW ...
+ */
+public class TablebaseGenerator {
+
+    private static final int CHUNK = 1 << 16;
+
+    private static final int[][] KING_STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] KNIGHT_STEPS = {{1, 2}, {2, 1}, {-1, 2}, {-2, 1}, {1, -2}, {2, -1}, {-1, -2}, {-2, -1}};
+
+    private final Path directory;
+    private final Map<String, byte[]> tables = new HashMap<>();
+
+    public TablebaseGenerator(Path directory) {
+        this.directory = directory;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TablebaseGenerator outputDir KQ_K KV_KW ...");
+            return;
+        }
+        TablebaseGenerator generator = new TablebaseGenerator(Paths.get(args[0]));
+        Files.createDirectories(generator.directory);
+        for (int i = 1; i < args.length; i++) {
+            generator.generate(args[i]);
+        }
+    }
+
+    /**
+     * Generates a material combination and everything it can capture into.
+     * @param name material name such as "KQ_KR"
+     * @return 1 byte per position values, also written to name.tb
+     */
+    public byte[] generate(String name) throws IOException {
+        int split = name.indexOf('_');
+        if (split < 1 || name.length() - 1 > Tablebase.MAX_PIECES
+                || name.charAt(0) != 'K' || name.charAt(split + 1) != 'K') {
+            throw new IllegalArgumentException("Material must be like KQ_KR with at most "
+                    + Tablebase.MAX_PIECES + " pieces: " + name);
+        }
+        int n = name.length() - 1;
+        int[] kinds = new int[n];
+        int[] colors = new int[n];
+        int[] squares = new int[n];
+        for (int i = 0, p = 0; i < name.length(); i++) {
+            if (i == split) {
+                continue;
+            }
+            kinds[p] = Tablebase.LETTERS.indexOf(name.charAt(i));
+            if (kinds[p] < 0) {
+                throw new IllegalArgumentException("Unknown piece letter in " + name);
+            }
+            colors[p] = i < split ? 0 : 1;
+            p++;
+        }
+        Tablebase.canonicalize(n, kinds, colors, squares);
+        return generate(n, kinds, colors);
+    }
+
+    private byte[] generate(int n, int[] kinds, int[] colors) throws IOException {
+        String name = Tablebase.name(n, kinds, colors);
+        byte[] cached = tables.get(name);
+        if (cached != null) {
+            return cached;
+        }
+
+        //tables reached by a capture, [attacker][victim]
+        byte[][][] captureTables = new byte[n][n][];
+        for (int a = 0; a < n; a++) {
+            for (int v = 0; v < n; v++) {
+                if (colors[a] != colors[v] && kinds[v] != PieceType.KING.getCode()) {
+                    Position next = new Position(n, kinds, colors, new int[n]).capture(a, v, 0);
+                    captureTables[a][v] = generate(next.n, next.kinds, next.colors);
+                }
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        byte[] values = new byte[(int) Tablebase.size(n)];//DRAW doubles as not yet decided
+        byte[] counts = new byte[values.length];//moves not yet refuted, unsigned
+        int chunks = (values.length + CHUNK - 1) / CHUNK;
+
+        List<int[]> seeds = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> new Worker(n, kinds, colors, values, counts, captureTables).classify(chunk))
+                .collect(Collectors.toList());
+        IntQueue queue = new IntQueue();
+        for (int[] chunkSeeds : seeds) {
+            for (int i = 1; i <= chunkSeeds[0]; i++) {
+                queue.add(chunkSeeds[i]);
+            }
+        }
+
+        int seeded = queue.size();
+        long decided = 0;
+        Worker worker = new Worker(n, kinds, colors, values, counts, captureTables);
+        while (!queue.isEmpty()) {
+            worker.unmove(queue.poll(), queue);
+            decided++;
+        }
+
+        tables.put(name, values);
+        write(name, n, values);
+        Main.LOGGER.log(Level.INFO, "Generated " + name + ": " + seeded + " seeds, " + decided + " decided positions, "
+                + (System.currentTimeMillis() - start) + "ms");
+        return values;
+    }
+
+    /**
+     * Growable FIFO of position indices.
+     */
+    private static class IntQueue {
+        private int[] items = new int[1024];
+        private int head;
+        private int tail;
+
+        void add(int item) {
+            if (tail == items.length) {
+                //reuse the consumed front before growing
+                int size = tail - head;
+                int[] target = size * 2 > items.length ? new int[items.length * 2] : items;
+                System.arraycopy(items, head, target, 0, size);
+                items = target;
+                head = 0;
+                tail = size;
+            }
+            items[tail++] = item;
+        }
+
+        int poll() {
+            return items[head++];
+        }
+
+        int size() {
+            return tail - head;
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+    }
+
+    private static void decode(int n, long index, int[] squares) {
+        for (int i = n - 1; i >= 0; i--) {
+            squares[i] = (int) (index & 63);
+            index >>>= 6;
+        }
+    }
+
+    private static boolean hasOverlap(int n, int[] squares) {
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (squares[i] == squares[j]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void write(String name, int n, byte[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.BIG_ENDIAN);
+        try (FileChannel channel = FileChannel.open(directory.resolve(name + Tablebase.EXTENSION),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(Tablebase.MAGIC).putInt(Tablebase.VERSION).putInt(n).putInt(0);
+            for (int i = 0; i < values.length; i += 4) {
+                if (!buffer.hasRemaining()) {
+                    FileChannels.flush(channel, buffer);
+                }
+                buffer.put((byte) (values[i] | values[i + 1] << 2 | values[i + 2] << 4 | values[i + 3] << 6));
+            }
+            FileChannels.flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Pieces of one position, used to work out which table a capture leads to.
+     */
+    private static class Position {
+        final int n;
+        final int[] kinds, colors, squares;
+
+        Position(int n, int[] kinds, int[] colors, int[] squares) {
+            this.n = n;
+            this.kinds = kinds;
+            this.colors = colors;
+            this.squares = squares;
+        }
+
+        /**
+         * @return position after piece a captures piece v on square dest, in canonical order
+         */
+        Position capture(int a, int v, int dest) {
+            int[] k = new int[n];
+            int[] c = new int[n];
+            int[] s = new int[n];
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                if (i == v) {
+                    if (kinds[a] == PieceType.VAMPIRE.getCode()) {
+                        //the victim joins the vampire's side on the vampire's start square
+                        k[m] = kinds[v];
+                        c[m] = colors[a];
+                        s[m++] = squares[a];
+                    }
+                    continue;
+                }
+                k[m] = i == a && kinds[a] == PieceType.WITCH.getCode() ? PieceType.QUEEN.getCode() : kinds[i];
+                c[m] = colors[i];
+                s[m++] = i == a ? dest : squares[i];
+            }
+            Tablebase.canonicalize(m, k, c, s);
+            return new Position(m, k, c, s);
+        }
+    }
+
+    /**
+     * Classifies chunks of positions and unmoves decided ones, with its own scratch space.
+     */
+    private static class Worker {
+        private final int n;
+        private final int stride;
+        private final int[] kinds, colors;
+        private final byte[] values;
+        private final byte[] counts;
+        private final byte[][][] captureTables;
+
+        private final int[] squares;
+        private final int[] occupant = new int[64];//piece index + 1, 0 for an empty square
+        private final int[] targets = new int[32];
+        private final int[] nextKinds, nextColors, nextSquares;
+
+        Worker(int n, int[] kinds, int[] colors, byte[] values, byte[] counts, byte[][][] captureTables) {
+            this.n = n;
+            this.stride = 1 << (6 * n);
+            this.kinds = kinds;
+            this.colors = colors;
+            this.values = values;
+            this.counts = counts;
+            this.captureTables = captureTables;
+            squares = new int[n];
+            nextKinds = new int[n];
+            nextColors = new int[n];
+            nextSquares = new int[n];
+        }
+
+        /**
+         * Marks overlapping positions illegal, decides the positions that need no successor in this table and
+         * counts the moves of the others.
+         * @return the decided positions, preceded by their number
+         */
+        int[] classify(int chunk) {
+            int[] seeds = new int[16];
+            int seeded = 0;
+            for (int index = chunk * CHUNK, end = Math.min(values.length, index + CHUNK); index < end; index++) {
+                decode(n, index, squares);
+                if (hasOverlap(n, squares)) {
+                    values[index] = Tablebase.ILLEGAL;
+                    continue;
+                }
+                int value = decide(index);
+                if (value != Tablebase.DRAW) {
+                    values[index] = (byte) value;
+                    if (++seeded == seeds.length) {
+                        seeds = Arrays.copyOf(seeds, seeds.length * 2);
+                    }
+                    seeds[seeded] = index;
+                }
+            }
+            seeds[0] = seeded;
+            return seeds;
+        }
+
+        /**
+         * @return WIN or LOSS if decided by a king capture or by the capture tables, DRAW (undecided) otherwise,
+         * with the moves left to refute stored in counts
+         */
+        private int decide(int index) {
+            int stm = index / stride;
+            fillOccupants();
+            boolean hasMove = false;
+            int open = 0;
+            for (int a = 0; a < n; a++) {
+                if (colors[a] != stm) {
+                    continue;
+                }
+                int count = targets(a);
+                for (int t = 0; t < count; t++) {
+                    int dest = targets[t];
+                    int v = occupant[dest] - 1;
+                    hasMove = true;
+                    if (v < 0) {
+                        open++;//same material, decided later
+                    } else if (kinds[v] == PieceType.KING.getCode()) {
+                        return Tablebase.WIN;
+                    } else {
+                        int next = captureValue(a, v, dest, 1 - stm);
+                        if (next == Tablebase.LOSS) {
+                            return Tablebase.WIN;
+                        }
+                        if (next != Tablebase.WIN) {
+                            open++;//a drawn capture, never refuted
+                        }
+                    }
+                }
+            }
+            if (hasMove && open == 0) {
+                return Tablebase.LOSS;
+            }
+            counts[index] = (byte) open;
+            return Tablebase.DRAW;
+        }
+
+        /**
+         * Passes the value of a decided position on to its predecessors, queueing those it decides.
+         */
+        void unmove(int index, IntQueue queue) {
+            int stm = index / stride;
+            int mover = 1 - stm;//moved last
+            int value = values[index];
+            decode(n, index, squares);
+            fillOccupants();
+            int base = index - stm * stride + mover * stride;
+            for (int a = 0; a < n; a++) {
+                if (colors[a] != mover) {
+                    continue;
+                }
+                int count = origins(a);
+                int shift = 6 * (n - 1 - a);
+                for (int t = 0; t < count; t++) {
+                    int previous = base + ((targets[t] - squares[a]) << shift);
+                    if (values[previous] != Tablebase.DRAW) {
+                        continue;//decided already
+                    }
+                    if (value == Tablebase.LOSS) {
+                        values[previous] = Tablebase.WIN;
+                        queue.add(previous);
+                    } else {
+                        int open = (counts[previous] & 0xFF) - 1;
+                        counts[previous] = (byte) open;
+                        if (open == 0) {
+                            values[previous] = Tablebase.LOSS;
+                            queue.add(previous);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void fillOccupants() {
+            Arrays.fill(occupant, 0);
+            for (int i = 0; i < n; i++) {
+                occupant[squares[i]] = i + 1;
+            }
+        }
+
+        /**
+         * Squares piece a can have come from by a move that captured nothing. Every piece but the pawn moves
+         * the same way back, over the same squares, so those are its empty destination squares.
+         */
+        private int origins(int a) {
+            if (kinds[a] != PieceType.PAWN.getCode()) {
+                int count = 0;
+                int all = targets(a);
+                for (int t = 0; t < all; t++) {
+                    if (occupant[targets[t]] == 0) {
+                        targets[count++] = targets[t];
+                    }
+                }
+                return count;
+            }
+            int x = squares[a] >>> 3;
+            int y = squares[a] & 7;
+            int dir = colors[a] == 0 ? 1 : -1;
+            int x1 = x - dir;
+            if (!onBoard(x1, y) || occupant[x1 * 8 + y] != 0) {
+                return 0;
+            }
+            int count = 0;
+            targets[count++] = x1 * 8 + y;
+            int x2 = x1 - dir;
+            if (x2 == (colors[a] == 0 ? 1 : 6) && occupant[x2 * 8 + y] == 0) {
+                targets[count++] = x2 * 8 + y;//double step from the starting rank
+            }
+            return count;
+        }
+
+        private int captureValue(int a, int v, int dest, int nextStm) {
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                if (i == v) {
+                    if (kinds[a] == PieceType.VAMPIRE.getCode()) {
+                        nextKinds[m] = kinds[v];
+                        nextColors[m] = colors[a];
+                        nextSquares[m++] = squares[a];
+                    }
+                    continue;
+                }
+                nextKinds[m] = i == a && kinds[a] == PieceType.WITCH.getCode() ? PieceType.QUEEN.getCode() : kinds[i];
+                nextColors[m] = colors[i];
+                nextSquares[m++] = i == a ? dest : squares[i];
+            }
+            Tablebase.canonicalize(m, nextKinds, nextColors, nextSquares);
+            return captureTables[a][v][(int) Tablebase.index(m, nextSquares, nextStm)];
+        }
+
+        /**
+         * Destination squares of piece a, following the piece classes' canMove rules.
+         */
+        private int targets(int a) {
+            int from = squares[a];
+            int x = from >>> 3;
+            int y = from & 7;
+            int color = colors[a];
+            int count = 0;
+
+            switch (PieceType.fromCode(kinds[a])) {
+                case KING:
+                    count = steps(x, y, color, KING_STEPS, count);
+                    break;
+                case KNIGHT:
+                    count = steps(x, y, color, KNIGHT_STEPS, count);
+                    break;
+                case BISHOP:
+                    count = slide(x, y, color, 4, 8, count);
+                    break;
+                case ROOK:
+                    count = slide(x, y, color, 0, 4, count);
+                    break;
+                case QUEEN:
+                    count = slide(x, y, color, 0, 8, count);
+                    break;
+                case VAMPIRE:
+                    count = steps(x, y, color, KNIGHT_STEPS, count);
+                    for (int d = 0; d < 4; d++) {
+                        int x1 = x + KING_STEPS[d][0], y1 = y + KING_STEPS[d][1];
+                        if (!onBoard(x1, y1)) {
+                            continue;
+                        }
+                        count = addIfNotOwn(x1, y1, color, count);
+                        int x2 = x1 + KING_STEPS[d][0], y2 = y1 + KING_STEPS[d][1];
+                        if (occupant[x1 * 8 + y1] == 0 && onBoard(x2, y2)) {
+                            count = addIfNotOwn(x2, y2, color, count);
+                        }
+                    }
+                    break;
+                case WITCH:
+                    for (int[] step : KING_STEPS) {
+                        int x1 = x + step[0], y1 = y + step[1];
+                        int x2 = x1 + step[0], y2 = y1 + step[1];
+                        if (onBoard(x2, y2) && occupant[x1 * 8 + y1] != 0) {
+                            count = addIfNotOwn(x2, y2, color, count);
+                        }
+                    }
+                    break;
+                default://pawn
+                    int dir = color == 0 ? 1 : -1;
+                    int x1 = x + dir;
+                    if (!onBoard(x1, y)) {
+                        break;
+                    }
+                    if (occupant[x1 * 8 + y] == 0) {
+                        targets[count++] = x1 * 8 + y;
+                        int x2 = x1 + dir;
+                        if (x == (color == 0 ? 1 : 6) && occupant[x2 * 8 + y] == 0) {
+                            targets[count++] = x2 * 8 + y;
+                        }
+                    }
+                    for (int dy = -1; dy <= 1; dy += 2) {
+                        int y1 = y + dy;
+                        if (onBoard(x1, y1)) {
+                            int o = occupant[x1 * 8 + y1];
+                            if (o != 0 && colors[o - 1] != color) {
+                                targets[count++] = x1 * 8 + y1;
+                            }
+                        }
+                    }
+            }
+            return count;
+        }
+
+        private int steps(int x, int y, int color, int[][] steps, int count) {
+            for (int[] step : steps) {
+                int x1 = x + step[0], y1 = y + step[1];
+                if (onBoard(x1, y1)) {
+                    count = addIfNotOwn(x1, y1, color, count);
+                }
+            }
+            return count;
+        }
+
+        private int slide(int x, int y, int color, int firstDir, int lastDir, int count) {
+            for (int d = firstDir; d < lastDir; d++) {
+                int x1 = x + KING_STEPS[d][0], y1 = y + KING_STEPS[d][1];
+                while (onBoard(x1, y1)) {
+                    count = addIfNotOwn(x1, y1, color, count);
+                    if (occupant[x1 * 8 + y1] != 0) {
+                        break;
+                    }
+                    x1 += KING_STEPS[d][0];
+                    y1 += KING_STEPS[d][1];
+                }
+            }
+            return count;
+        }
+
+        private int addIfNotOwn(int x, int y, int color, int count) {
+            int o = occupant[x * 8 + y];
+            if (o == 0 || colors[o - 1] != color) {
+                targets[count++] = x * 8 + y;
+            }
+            return count;
+        }
+
+        private static boolean onBoard(int x, int y) {
+            return x >= 0 && x < 8 && y >= 0 && y < 8;
+        }
+    }
+}
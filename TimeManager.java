@@ -0,0 +1,157 @@
+package chess;
+
+/**
+ * Decides how long the engine thinks about one move of a timed game.
+ * A soft limit is the normal budget, checked between iterations; a hard limit is the most the move may ever take
+ * and is polled inside the search. The soft limit grows when an iteration fails low (the score drops) and
+ * shrinks while the best move stays the same, so easy moves are played quickly and trouble gets more time.
+ * While pondering there are no limits; a ponder hit sets them from that moment on, from another thread,
+ * and the stability seen while pondering carries over.
+ */
+public class TimeManager {
+
+    public static final int DEFAULT_MOVES_TO_GO = 30;
+    public static final long SAFETY_NANOS = 50_000_000L;//kept back for GUI and scheduling overhead
+    public static final int FAIL_LOW_MARGIN = 30;//centipawn drop that counts as a fail low
+    public static final int STABLE_ITERATIONS = 3;//same best move this often lets the move go early
+
+    //written by ponderHit on the GUI thread, read by the search
+    private volatile long softNanos;
+    private volatile long hardNanos;
+    private volatile long startNanos;
+    private volatile boolean pondering;
+
+    private int lastScore;
+    private int lastMoveKey = MoveOrdering.NO_MOVE;
+    private int stableIterations;
+    private double scale = 1.0;
+
+    /**
+     * Starts timing a move.
+     * @param remainingNanos time left on the engine's clock
+     * @param incrementNanos increment added after the move
+     * @param movesToGo moves left until the next time control, 0 if unknown (sudden death)
+     */
+    public void start(long remainingNanos, long incrementNanos, int movesToGo) {
+        resetIterations();
+        setLimits(remainingNanos, incrementNanos, movesToGo);
+    }
+
+    /**
+     * Starts timing a move on a game clock for the side to move.
+     */
+    public void start(ChessClock clock, String color) {
+        start(clock.getRemainingNanos(color), clock.getIncrementNanos(), 0);
+    }
+
+    /**
+     * Starts timing a move with a fixed budget, soft and hard limit alike.
+     */
+    public void startFixed(long nanos) {
+        resetIterations();
+        setFixedLimits(nanos);
+    }
+
+    /**
+     * Starts a search on the opponent's time, it runs until a ponder hit or until it is stopped.
+     */
+    public void startPondering() {
+        resetIterations();
+        pondering = true;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * The opponent played the pondered move: the running search becomes the real one, timed from now.
+     */
+    public void ponderHit(ChessClock clock, String color) {
+        setLimits(clock.getRemainingNanos(color), clock.getIncrementNanos(), 0);
+        pondering = false;
+    }
+
+    /**
+     * Ponder hit with a fixed budget for the move.
+     */
+    public void ponderHitFixed(long nanos) {
+        setFixedLimits(nanos);
+        pondering = false;
+    }
+
+    public boolean isPondering() {
+        return pondering;
+    }
+
+    private void resetIterations() {
+        lastMoveKey = MoveOrdering.NO_MOVE;
+        stableIterations = 0;
+        scale = 1.0;
+        pondering = false;
+    }
+
+    private void setLimits(long remainingNanos, long incrementNanos, int movesToGo) {
+        long usable = Math.max(0, remainingNanos - SAFETY_NANOS);
+        int moves = movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO;
+        long soft = Math.min(usable, usable / moves + incrementNanos * 3 / 4);
+        softNanos = soft;
+        hardNanos = Math.min(usable, Math.max(soft, Math.min(soft * 4, usable / 3)));
+        startNanos = System.nanoTime();
+    }
+
+    private void setFixedLimits(long nanos) {
+        softNanos = nanos;
+        hardNanos = nanos;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Polled by the search every few hundred nodes, a single clock read.
+     * @return true once the hard limit is used up
+     */
+    public boolean isHardLimitReached() {
+        return !pondering && System.nanoTime() - startNanos >= hardNanos;
+    }
+
+    /**
+     * Called after every completed iteration.
+     * @return true if another iteration should be started
+     */
+    public boolean iterationCompleted(SearchResult result) {
+        Move best = result.getBestMove();
+        int key = best == null ? MoveOrdering.NO_MOVE : best.key();
+        if (lastMoveKey != MoveOrdering.NO_MOVE) {
+            if (result.getScore() < lastScore - FAIL_LOW_MARGIN) {
+                scale = Math.min(scale * 2, 4.0);//fail low: give the search time to find a rescue
+                stableIterations = 0;
+            } else if (key == lastMoveKey) {
+                stableIterations++;
+                if (stableIterations >= STABLE_ITERATIONS) {
+                    scale = Math.max(scale * 0.7, 0.3);
+                }
+            } else {
+                stableIterations = 0;
+                scale = Math.max(scale, 1.0);
+            }
+        }
+        lastMoveKey = key;
+        lastScore = result.getScore();
+        if (pondering) {
+            return true;
+        }
+
+        //an iteration takes a few times longer than the previous one, do not start what cannot finish
+        long elapsed = getElapsedNanos();
+        return elapsed < Math.min(hardNanos, (long) (softNanos * scale)) / 2;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public long getSoftNanos() {
+        return softNanos;
+    }
+
+    public long getHardNanos() {
+        return hardNanos;
+    }
+}
@@ -0,0 +1,101 @@
+package chess;
+
+/**
+ * Fixed size hash table of search results keyed by the Zobrist position hash.
+ * Supplies the hash move for move ordering and cuts off re-searches of transposed positions.
+ */
+public class TranspositionTable {
+
+    public static final int DEFAULT_SIZE_BYTES = 16 << 20;//16 MB
+    private static final int ENTRY_BYTES = 20;
+
+    public static final byte EXACT = 0;
+    public static final byte LOWER_BOUND = 1;//score >= stored score (fail high)
+    public static final byte UPPER_BOUND = 2;//score <= stored score (fail low)
+
+    private final long[] keys;
+    private final int[] moves;
+    private final int[] scores;
+    private final byte[] depths;
+    private final byte[] flags;
+    private final int mask;
+
+    public TranspositionTable() {
+        this(DEFAULT_SIZE_BYTES);
+    }
+
+    public TranspositionTable(int sizeBytes) {
+        int entries = Integer.highestOneBit(Math.max(1, sizeBytes / ENTRY_BYTES));
+        keys = new long[entries];
+        moves = new int[entries];
+        scores = new int[entries];
+        depths = new byte[entries];
+        flags = new byte[entries];
+        mask = entries - 1;
+        clear();
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0L;
+            moves[i] = MoveOrdering.NO_MOVE;
+            depths[i] = -1;
+        }
+    }
+
+    /**
+     * @param key position hash
+     * @return slot of the entry for this position, or -1 if it is not stored
+     */
+    public int probe(long key) {
+        int index = index(key);
+        return keys[index] == key && depths[index] >= 0 ? index : -1;
+    }
+
+    /**
+     * Stores a search result, preferring deeper results for the same position.
+     */
+    public void store(long key, int move, int score, int depth, byte flag) {
+        int index = index(key);
+        boolean samePosition = keys[index] == key;
+        if (samePosition && depths[index] > depth) {
+            return;
+        }
+        keys[index] = key;
+        //a fail-low result has no best move, keep the one found earlier for this position
+        if (move != MoveOrdering.NO_MOVE || !samePosition) {
+            moves[index] = move;
+        }
+        scores[index] = score;
+        depths[index] = (byte) Math.min(depth, Byte.MAX_VALUE);
+        flags[index] = flag;
+    }
+
+    /**
+     * @return best move key stored for the position, or MoveOrdering.NO_MOVE
+     */
+    public int getMove(long key) {
+        int index = probe(key);
+        return index < 0 ? MoveOrdering.NO_MOVE : moves[index];
+    }
+
+    public int getScore(int index) {
+        return scores[index];
+    }
+
+    public int getDepth(int index) {
+        return depths[index];
+    }
+
+    public byte getFlag(int index) {
+        return flags[index];
+    }
+
+    public int getMoveAt(int index) {
+        return moves[index];
+    }
+
+    private int index(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
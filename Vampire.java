@@ -17,13 +17,13 @@ public class Vampire extends Piece implements Moveable{
     public Vampire(Player player, Square square){
         setPlayer(player);
         setSquare(square);
-        setName(Vampire._NAME);
+        setType(PieceType.VAMPIRE);
         square.setPiece(this);
     }
 
     //need to override parent's move method since Vampires need extra actions after moving to a new square
     @Override
-    public boolean move(Game game, Square dest){
+    protected boolean applyMove(Game game, Square dest){
 
         if (moveBasicCheck(game, dest)) return false;
 
@@ -51,6 +51,7 @@ public class Vampire extends Piece implements Moveable{
 
     @Override
     public boolean canMove(Board board, Square start, Square dest) {
+        if (Metrics.ENABLED) Metrics.CAN_MOVE.increment();
 
         if(!passBasicMoveRules(board, start, dest)
                 || hasPieceOnThePath(board, dest)){
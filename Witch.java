@@ -14,12 +14,12 @@ public class Witch extends Piece implements Moveable{
     public Witch(Player player, Square square){
         setPlayer(player);
         setSquare(square);
-        setName(Witch._NAME);
+        setType(PieceType.WITCH);
         square.setPiece(this);
     }
 
     @Override
-    public boolean move(Game game, Square dest){
+    protected boolean applyMove(Game game, Square dest){
 
         if (moveBasicCheck(game, dest)) return false;
 
@@ -44,6 +44,7 @@ public class Witch extends Piece implements Moveable{
 
     @Override
     public boolean canMove(Board board, Square start, Square dest) {
+        if (Metrics.ENABLED) Metrics.CAN_MOVE.increment();
 
         if(!passBasicMoveRules(board, start, dest)){
             return false;
@@ -0,0 +1,101 @@
+package chess;
+
+import java.util.Random;
+
+/**
+ * Zobrist hashing of board positions.
+ * Every (piece kind, color, square) gets a random 64-bit key and a position hash is the XOR of the keys of
+ * all pieces on the board, so positions can be compared and cached by a single long.
+ */
+public class Zobrist {
+
+    public static final int NUM_KINDS = PieceType.values().length;//the key tables are indexed by PieceType code
+
+    private static final long[][][] PIECE_KEYS = new long[2][NUM_KINDS][64];//[color][kind][square]
+    private static final long SIDE_KEY;//xor-ed in when white is to move
+
+    static {
+        Random random = new Random(0x5EED_C0DEL);//fixed seed so hashes are stable between runs
+        for (int c = 0; c < 2; c++) {
+            for (int k = 0; k < NUM_KINDS; k++) {
+                for (int s = 0; s < 64; s++) {
+                    PIECE_KEYS[c][k][s] = random.nextLong();
+                }
+            }
+        }
+        SIDE_KEY = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * @param piece chess piece
+     * @return kind index of the piece used by the key tables
+     */
+    public static int kindOf(Piece piece) {
+        return piece.getType().getCode();
+    }
+
+    public static int colorOf(Piece piece) {
+        return piece.getColorCode();
+    }
+
+    /**
+     * @return key of the given piece standing on square (x, y)
+     */
+    public static long pieceKey(Piece piece, int x, int y) {
+        return PIECE_KEYS[colorOf(piece)][kindOf(piece)][x * 8 + y];
+    }
+
+    public static long sideKey() {
+        return SIDE_KEY;
+    }
+
+    /**
+     * @param board board model
+     * @param playerTurn color of the player to move
+     * @return hash of the whole position including side to move
+     */
+    public static long hash(Board board, String playerTurn) {
+        return hash(board, Player.codeOf(playerTurn));
+    }
+
+    /**
+     * @param board board model
+     * @param playerTurn color code of the player to move
+     * @return hash of the whole position including side to move
+     */
+    public static long hash(Board board, int playerTurn) {
+        long hash = 0L;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Piece piece = board.getSquare(i, j).getPiece();
+                if (piece != null) {
+                    hash ^= pieceKey(piece, i, j);
+                }
+            }
+        }
+        if (playerTurn == Player.WHITE_CODE) {
+            hash ^= SIDE_KEY;
+        }
+        return hash;
+    }
+
+    /**
+     * @param board board model
+     * @return hash of the pawns only, used to key the pawn structure cache
+     */
+    public static long pawnHash(Board board) {
+        long hash = 0L;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                Piece piece = board.getSquare(i, j).getPiece();
+                if (piece != null && piece.getType() == PieceType.PAWN) {
+                    hash ^= pieceKey(piece, i, j);
+                }
+            }
+        }
+        return hash;
+    }
+}
@@ -8,6 +8,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.ArrayList;
+import java.util.List;
 
 public class ViewController {
 
@@ -21,13 +22,76 @@ public class ViewController {
 
     public String currPlayer = Player.BLACK;//black player first to act
 
+    //background analysis, searched off the event dispatch thread
+    private final Analyzer analyzer = new Analyzer();
+    private final JPanel analysisPanel = new JPanel(new BorderLayout());
+    private final JCheckBox analysisToggle = new JCheckBox("Analysis");
+    private final JLabel analysisLabel = new JLabel(" ");
+    //top lines shown as text and arrows, -Dchess.analysis.lines=<n>
+    private static final int ANALYSIS_LINES = Integer.getInteger("chess.analysis.lines", 3);
+    private final MoveArrowLayer arrowLayer;
+
+    //next-move statistics of the opening tree named by -Dchess.explorer, looked up for every position
+    private static final int EXPLORER_MOVES = 5;
+    private final OpeningExplorer explorer = OpeningExplorer.openDefault();
+    private final JLabel explorerLabel = new JLabel(" ");
+
+    //timed games, e.g. -Dchess.timeControl=5+3 for five minutes plus three seconds a move
+    private static final String TIME_CONTROL = System.getProperty("chess.timeControl");
+    private static final int CLOCK_REFRESH_MILLIS = 100;
+    private final JLabel clockLabel = new JLabel(" ");
+    private final Timer clockTimer = new Timer(CLOCK_REFRESH_MILLIS, e -> refreshClock());
+
+    //computer opponent, e.g. -Dchess.engine=white; it ponders on the expected reply while the human thinks
+    private static final String ENGINE_COLOR = System.getProperty("chess.engine");
+    //-Dchess.engine.mode=mcts plays with the tree search, -Dchess.mcts.memory caps its tree in megabytes
+    private static final boolean MCTS_ENGINE = "mcts".equalsIgnoreCase(System.getProperty("chess.engine.mode"));
+    private final Ponderer ponderer = ENGINE_COLOR == null ? null : !MCTS_ENGINE ? new Ponderer()
+            : new Ponderer(new MctsEngine(Runtime.getRuntime().availableProcessors(),
+            Integer.getInteger("chess.mcts.memory", MctsEngine.DEFAULT_MEMORY_MB), OpeningBook.openDefault()),
+            Ponderer.DEFAULT_MOVE_NANOS);
+    private boolean engineMoving;//the engine's move is being clicked on the board
+
+    //-Dchess.renderer=java2d shows the board as one painted component; the button grid stays the click target
+    private static final boolean JAVA2D_RENDERER = "java2d".equals(System.getProperty("chess.renderer"));
+    private final BoardCanvas boardCanvas;
+    private final SpriteAtlas sprites;//every piece image loaded once, icons shared by reference
+    private final MoveListCache moveCache = new MoveListCache();//highlights and check tests by position
+    private final ControlButtonClickListener controlListener = new ControlButtonClickListener();
+    private final MoveListener moveListener = new MoveListener();
+
     public ViewController(Game game, ChessBoardPanel chessBoardPanel){
         this.game = game;
         this.chessBoardPanel = chessBoardPanel;
 
-        this.chessBoardPanel.addControlButtonClickListener(new ControlButtonClickListener());//listen for control buttons click
-        this.chessBoardPanel.addMoveListener(new MoveListener());//listen for pieces' movement
-
+        this.chessBoardPanel.addControlButtonClickListener(controlListener);//listen for control buttons click
+        this.chessBoardPanel.addMoveListener(moveListener);//listen for pieces' movement
+
+        sprites = new SpriteAtlas(piece -> {
+            ImageIcon icon = chessBoardPanel.getImageByPiece(piece);
+            return icon == null ? null : icon.getImage();
+        });
+        sprites.preload();
+        if (JAVA2D_RENDERER) {
+            boardCanvas = new BoardCanvas(game.getBoard(), sprites);
+            //a click on the canvas is handled like a click on the square's button
+            boardCanvas.setSquareListener((x, y) -> chessBoardPanel.pieces[y][x].doClick(0));
+            arrowLayer = new MoveArrowLayer(boardCanvas);
+        } else {
+            boardCanvas = null;
+            arrowLayer = new MoveArrowLayer(chessBoardPanel.pieces);
+        }
+        analyzer.setLines(ANALYSIS_LINES);
+        analysisToggle.addActionListener(e -> refreshAnalysis());
+        analysisPanel.add(analysisToggle, BorderLayout.WEST);
+        analysisPanel.add(analysisLabel, BorderLayout.CENTER);
+        analysisPanel.add(clockLabel, BorderLayout.EAST);
+        if (explorer != null) {
+            analysisPanel.add(explorerLabel, BorderLayout.NORTH);
+            refreshExplorer();
+        }
+        attachClock();
+        restartEngine();
     }
 
 
@@ -100,6 +164,12 @@ public class ViewController {
 
             }
 
+            //position may have changed
+            if (boardCanvas != null) {
+                boardCanvas.syncWithModel(null);
+            }
+            refreshAnalysis();
+            restartEngine();
         }
     }
 
@@ -115,6 +185,23 @@ public class ViewController {
 
         @Override
         public void actionPerformed(ActionEvent e) {
+            long start = Metrics.start();
+            try {
+                handleClick(e);
+                if (boardCanvas != null) {
+                    boardCanvas.setSelection(pieceToMoveButton == null ? null
+                            : chessBoardPanel.findSquare(pieceToMoveButton), highlightedSquares);
+                }
+            } finally {
+                Metrics.stop(Metrics.MOVE_HANDLING, start);
+            }
+        }
+
+        private void handleClick(ActionEvent e) {
+
+            if (isEngineTurn() && !engineMoving) {
+                return;//the computer is thinking
+            }
 
             JButton currButton = (JButton) e.getSource();
             Piece selectedPiece = chessBoardPanel.findSquare(currButton).getPiece();
@@ -160,6 +247,7 @@ public class ViewController {
                     Piece killedPiece = dest.getPiece();
 
                     //try to move piece in data model
+                    Game movedIn = game;//a dialog below may swap in a new game
                     boolean moved = start.getPiece().move(game, dest);
 
                     if(moved){
@@ -173,6 +261,14 @@ public class ViewController {
                         //alternate player turn and
                         updatePlayerTurn(nextPlayer);
 
+                        //remember the position for the draw rules
+                        game.recordPosition(killedPiece != null || movedPiece.getType() == PieceType.PAWN);
+
+                        //end the mover's time, with increment
+                        if (game.getClock() != null) {
+                            game.getClock().press();
+                        }
+
                         //push command in to stack, undo stack
                         CommandManager.undos.push(new Command(movedPiece, start, dest, killedPiece,
                                 pieceToMoveButton, currButton,command.getStartImage(), command.getDestImage()));
@@ -180,6 +276,8 @@ public class ViewController {
                         //next iteration
                         pieceToMoveButton = null;
                         chessBoardPanel.setTurn(nextPlayer);
+
+                        refreshAnalysis();
                     }
                     else{//move failed
 
@@ -189,8 +287,8 @@ public class ViewController {
                     }
 
                     //check king
-                    King checkedKing = game.getBoard().checkKing(game);
-                    System.out.println(checkedKing);
+                    King checkedKing = moveCache.checkKing(game);
+                    if (Debug.ENABLED) Debug.println(checkedKing);
                     if(checkedKing!=null){
                         //alert player
                         showCheckMateDialog(checkedKing);
@@ -198,13 +296,28 @@ public class ViewController {
 
                     //check game end condition
                     String end = Game.gameOver(game);
+                    boolean newGame = false;
                     if(end != null){
                         //game ended
-                        updateScoreBoard(end);
+                        newGame = updateScoreBoard(end);
 
                     }
+                    else if(game.getStatus().isDraw()){
+                        newGame = showDrawDialog(game.getStatus());
+                    }
+                    if (newGame) {
+                        return;//the dialog reset the board and the engine, the move belongs to the old game
+                    }
 
                     firstMove = false;
+
+                    if (moved) {
+                        if (boardCanvas != null) {
+                            //animate only on the board the move was played on
+                            boardCanvas.syncWithModel(game == movedIn ? new Move(start, dest) : null);
+                        }
+                        engineAfterMove(new Move(start, dest));
+                    }
                 }
 
             }
@@ -223,14 +336,14 @@ public class ViewController {
                 }
                 else{//deal with vampire ui setting after killed one piece
                     JButton startButton = chessBoardPanel.pieces[start.getY()][start.getX()];//get vampire's original button
-                    chessBoardPanel.setImageIcon(startButton, chessBoardPanel.getImageByPiece(killedPiece));
+                    chessBoardPanel.setImageIcon(startButton, sprites.getIcon(killedPiece));
 
                     JButton destButton = chessBoardPanel.pieces[dest.getY()][dest.getX()];
-                    chessBoardPanel.setImageIcon(destButton,chessBoardPanel.getImageByPiece(movedPiece));
+                    chessBoardPanel.setImageIcon(destButton,sprites.getIcon(movedPiece));
                 }
 
-                command.setDestImage( chessBoardPanel.getImageByPiece(movedPiece) );
-                command.setStartImage( chessBoardPanel.getImageByPiece(killedPiece));
+                command.setDestImage( sprites.getIcon(movedPiece) );
+                command.setStartImage( sprites.getIcon(killedPiece));
             }
             else if(movedPiece instanceof Witch){//witch special case
 
@@ -240,13 +353,13 @@ public class ViewController {
                 }
                 else{//deal with witch ui setting after killed one piece
                     JButton startButton = chessBoardPanel.pieces[dest.getY()][dest.getX()];//get vampire's original button
-                    chessBoardPanel.setImageIcon(startButton, chessBoardPanel.getImageByPiece(dest.getPiece()));
-                    System.out.println(dest.getPiece().getName());
+                    chessBoardPanel.setImageIcon(startButton, sprites.getIcon(dest.getPiece()));
+                    if (Debug.ENABLED) Debug.println(dest.getPiece().getName());
                     pieceToMoveButton.setIcon(null);
                 }
 
-                command.setDestImage( chessBoardPanel.getImageByPiece(movedPiece) );
-                command.setStartImage( chessBoardPanel.getImageByPiece(killedPiece));
+                command.setDestImage( sprites.getIcon(movedPiece) );
+                command.setStartImage( sprites.getIcon(killedPiece));
             }
             else{//normal piece situation
                 command.setDestImage((ImageIcon) currButton.getIcon());
@@ -262,7 +375,11 @@ public class ViewController {
          * highlight selected chess blue background on board
          */
         private void highlightPossibleMoves() {
-            ArrayList<Square> possibleMoves = chessBoardPanel.findSquare(pieceToMoveButton).getPiece().generatePossibleMoves(game);
+            Piece selected = chessBoardPanel.findSquare(pieceToMoveButton).getPiece();
+            if (selected == null) {
+                return;//an empty square has no moves
+            }
+            ArrayList<Square> possibleMoves = moveCache.getPossibleMoves(game, selected);
             for (Square square:
                     possibleMoves) {
                 chessBoardPanel.pieces[square.getY()][square.getX()].setBackground(new Color(153,204,255));
@@ -288,6 +405,64 @@ public class ViewController {
         }
     }
 
+    /**
+     * Restarts background analysis on the current position, or stops it when analysis is switched off.
+     */
+    private void refreshAnalysis() {
+        refreshExplorer();
+        arrowLayer.clearArrows();
+        if (analysisToggle.isSelected()) {
+            analysisLabel.setText("Analysing...");
+            analyzer.analyze(game, this::showAnalysis);
+        } else {
+            analyzer.stop();
+            analysisLabel.setText(" ");
+        }
+    }
+
+    /**
+     * Shows the most played moves of the current position with their results, white's score first.
+     */
+    private void refreshExplorer() {
+        if (explorer == null) {
+            return;
+        }
+        List<GameDatabase.MoveStats> moves = explorer.lookup(game.getBoard(), game.getPlayerTurn());
+        if (moves.isEmpty()) {
+            explorerLabel.setText("Explorer: position not in the tree");
+            return;
+        }
+        StringBuilder text = new StringBuilder("<html>Explorer:");
+        for (GameDatabase.MoveStats move : moves.subList(0, Math.min(EXPLORER_MOVES, moves.size()))) {
+            int decided = move.getWhiteWins() + move.getDraws() + move.getBlackWins();
+            text.append("&nbsp;&nbsp;").append(Notation.toCoordinate(move.getMove())).append(' ').append(move.getGames());
+            if (decided > 0) {
+                text.append(String.format(" (%d/%d/%d%%)", 100 * move.getWhiteWins() / decided,
+                        100 * move.getDraws() / decided, 100 * move.getBlackWins() / decided));
+            }
+        }
+        explorerLabel.setText(text.append("</html>").toString());
+    }
+
+    private void showAnalysis(List<SearchResult> lines) {
+        StringBuilder text = new StringBuilder("<html>");
+        List<Move> bestMoves = new ArrayList<>();
+        for (SearchResult result : lines) {
+            StringBuilder line = new StringBuilder();
+            for (Move move : result.getPrincipalVariation()) {
+                line.append(Notation.toCoordinate(move)).append(' ');
+            }
+            String score = result.isMateScore() ? "king capture" : String.format("%+.2f", result.getScore() / 100.0);
+            if (bestMoves.isEmpty()) {
+                text.append(game.getPlayerTurn().toUpperCase()).append("  depth ").append(result.getDepth());
+            }
+            text.append("<br>").append(score).append("  ").append(line.toString().trim());
+            bestMoves.add(result.getBestMove());
+        }
+        analysisLabel.setText(text.append("</html>").toString());
+        arrowLayer.setArrows(bestMoves);
+    }
+
     private void showCheckMateDialog(King checkedKing) {
         JOptionPane.showMessageDialog(null, "Check");
         //check for check mate
@@ -296,18 +471,147 @@ public class ViewController {
         }
     }
 
-    private void updateScoreBoard(String end) {
-        JOptionPane.showMessageDialog(null, "Game Over "+end.toUpperCase() + " Win!");
-        int reply = JOptionPane.showConfirmDialog(null,
-                "Do you want to start a new game? ", "Game Over", JOptionPane.YES_NO_OPTION);
+    private boolean isEngineTurn() {
+        return ponderer != null && ENGINE_COLOR.equalsIgnoreCase(game.getPlayerTurn());
+    }
 
-        if (reply == JOptionPane.YES_OPTION) {
-            //create new game
-            CommandManager.createNewGame(game, chessBoardPanel, Board.START_BOARD);
+    /**
+     * After a move on the board the computer opponent answers it, or ponders when it was its own move.
+     */
+    private void engineAfterMove(Move move) {
+        if (ponderer == null) {
+            return;
+        }
+        if (game.getStatus().isOver()) {
+            ponderer.stop();
+        } else if (isEngineTurn()) {
+            ponderer.opponentMoved(game, move, this::playEngineMove);
+        } else {
+            ponderer.ponder(game);
         }
+    }
+
+    /**
+     * Cancels the computer opponent's search after a new game or an undo and starts over if it is to move.
+     */
+    private void restartEngine() {
+        if (ponderer == null) {
+            return;
+        }
+        ponderer.stop();
+        if (isEngineTurn() && !game.getStatus().isOver()) {
+            ponderer.think(game, this::playEngineMove);
+        }
+    }
+
+    /**
+     * Plays the engine's move through the board buttons, so it is handled like a human move.
+     */
+    private void playEngineMove(SearchResult result) {
+        Move move = result.getBestMove();
+        if (move == null || !isEngineTurn()) {
+            return;
+        }
+        engineMoving = true;
+        try {
+            chessBoardPanel.pieces[move.getStartY()][move.getStartX()].doClick(0);
+            chessBoardPanel.pieces[move.getDestY()][move.getDestX()].doClick(0);
+        } finally {
+            engineMoving = false;
+        }
+    }
+
+    /**
+     * Gives the current game a fresh clock when a time control is configured.
+     */
+    private void attachClock() {
+        if (TIME_CONTROL == null) {
+            return;
+        }
+        try {
+            game.setClock(ChessClock.parse(TIME_CONTROL));
+            clockTimer.start();
+        } catch (IllegalArgumentException e) {
+            Main.LOGGER.warning(e.getMessage());
+        }
+        refreshClock();
+    }
+
+    /**
+     * Redraws both clocks and ends the game when the side to move runs out of time.
+     */
+    private void refreshClock() {
+        ChessClock clock = game.getClock();
+        if (clock == null) {
+            clockLabel.setText(" ");
+            return;
+        }
+        clockLabel.setText("BLACK " + clock.format(Player.BLACK) + "  WHITE " + clock.format(Player.WHITE) + " ");
+        String flagged = game.getFlaggedPlayer();
+        if (flagged != null && clock.getRunning() != null) {
+            //the score board stops the clock, so the flag is reported once
+            updateScoreBoard(Player.opposite(flagged));
+        }
+    }
+
+    /**
+     * Shows a draw and offers a new game.
+     * @return true if a new game was started
+     */
+    private boolean showDrawDialog(GameStatus status) {
+        String reason;
+        if(status == GameStatus.DRAW_REPETITION){
+            reason = "threefold repetition";
+        }
+        else if(status == GameStatus.DRAW_FIFTY_MOVES){
+            reason = "fifty-move rule";
+        }
+        else{
+            reason = "insufficient material";
+        }
+        JOptionPane.showMessageDialog(null, "Game Over Draw by " + reason + "!");
+        return offerNewGame();
+    }
+
+    /**
+     * Shows the winner, counts the win and offers a new game.
+     * @return true if a new game was started
+     */
+    private boolean updateScoreBoard(String end) {
+        if (game.getClock() != null) {
+            game.getClock().stop();
+        }
+        JOptionPane.showMessageDialog(null, "Game Over "+end.toUpperCase() + " Win!");
+        boolean newGame = offerNewGame();
 
         //set score
         updateScore(end);
+        return newGame;
+    }
+
+    /**
+     * Asks for a new game once a game is over and, on yes, resets everything the New Game button does:
+     * the engine, the first click, the canvas and the analysis.
+     * @return true if a new game was started
+     */
+    private boolean offerNewGame() {
+        int reply = JOptionPane.showConfirmDialog(null,
+                "Do you want to start a new game? ", "Game Over", JOptionPane.YES_NO_OPTION);
+        if (reply != JOptionPane.YES_OPTION) {
+            return false;
+        }
+        if (ponderer != null) {
+            ponderer.stop();
+        }
+        //create new game
+        CommandManager.createNewGame(game, chessBoardPanel, Board.START_BOARD);
+        firstMove = true;
+        if (boardCanvas != null) {
+            boardCanvas.syncWithModel(null);
+        }
+        refreshAnalysis();
+        restartEngine();
+        return true;
     }
 
     private void updateScore(String end) {
@@ -338,7 +642,7 @@ public class ViewController {
         dest.setPiece(vampire);
         vampire.setSquare(dest);
 
-        game.getBoard().printBoard();
+        if (Debug.ENABLED) game.getBoard().printBoard();
 
     }
 
@@ -348,10 +652,48 @@ public class ViewController {
         dest.setPiece(new Queen(start.getPiece().getPlayer(),dest));
         start.setPiece(null);//removing current piece
 
-        game.getBoard().printBoard();
+        if (Debug.ENABLED) game.getBoard().printBoard();
+
+    }
+
 
+    public SpriteAtlas getSprites() {
+        return sprites;
     }
 
+    /**
+     * @return the board painted by Java2D, null unless -Dchess.renderer=java2d
+     */
+    public BoardCanvas getBoardCanvas() {
+        return boardCanvas;
+    }
+
+    /**
+     * Control buttons for the Java2D board, which is shown without the board panel and its buttons.
+     * @return tool bar with the board panel's control commands
+     */
+    public JToolBar createControlBar() {
+        JToolBar bar = new JToolBar();
+        bar.setFloatable(false);
+        for (String command : new String[]{"New Game", "Custom Game", "Undo", "Forfeit"}) {
+            JButton button = new JButton(command);
+            button.setActionCommand(command);
+            button.addActionListener(controlListener);
+            bar.add(button);
+        }
+        return bar;
+    }
+
+    /**
+     * @return layer drawing the analysis arrows, to be installed as the frame's glass pane
+     */
+    public MoveArrowLayer getArrowLayer() {
+        return arrowLayer;
+    }
+
+    public JPanel getAnalysisPanel() {
+        return analysisPanel;
+    }
 
     public ChessBoardPanel getChessBoardPanel() {
         return chessBoardPanel;
@@ -366,7 +708,14 @@ public class ViewController {
     }
 
     public void setGame(Game game) {
+        if (this.game != null && this.game.getClock() != null) {
+            this.game.getClock().stop();
+        }
         this.game = game;
+        if (boardCanvas != null) {
+            boardCanvas.setBoard(game.getBoard());
+        }
+        attachClock();
     }
 
 
@@ -0,0 +1,90 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class ChessClockTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1_000 * SECOND);
+
+    @Test
+    void pressChargesTheMoverAndAddsTheIncrement() {
+        ChessClock clock = new ChessClock(60 * SECOND, 2 * SECOND, now::get);
+        clock.start(Player.WHITE);
+        now.addAndGet(5 * SECOND);
+        assertEquals(55 * SECOND, clock.getRemainingNanos(Player.WHITE));
+        clock.press();
+        assertEquals(57 * SECOND, clock.getRemainingNanos(Player.WHITE));
+        assertEquals(Player.BLACK, clock.getRunning());
+
+        now.addAndGet(10 * SECOND);
+        assertEquals(57 * SECOND, clock.getRemainingNanos(Player.WHITE));
+        assertEquals(50 * SECOND, clock.getRemainingNanos(Player.BLACK));
+    }
+
+    @Test
+    void stoppedClockDoesNotRun() {
+        ChessClock clock = new ChessClock(60 * SECOND, 0, now::get);
+        clock.start(Player.BLACK);
+        now.addAndGet(3 * SECOND);
+        clock.stop();
+        now.addAndGet(30 * SECOND);
+        assertNull(clock.getRunning());
+        assertEquals(57 * SECOND, clock.getRemainingNanos(Player.BLACK));
+        assertEquals(60 * SECOND, clock.getRemainingNanos(Player.WHITE));
+    }
+
+    @Test
+    void flagFallsAndPressIsIgnoredAfterwards() {
+        ChessClock clock = new ChessClock(10 * SECOND, 5 * SECOND, now::get);
+        clock.start(Player.WHITE);
+        now.addAndGet(10 * SECOND);
+        assertTrue(clock.isFlagged(Player.WHITE));
+        assertFalse(clock.isFlagged(Player.BLACK));
+        clock.press();
+        assertEquals(Player.WHITE, clock.getRunning());
+        assertTrue(clock.isFlagged(Player.WHITE));
+    }
+
+    @Test
+    void resetRestoresTheBaseTime() {
+        ChessClock clock = new ChessClock(60 * SECOND, 0, now::get);
+        clock.start(Player.WHITE);
+        now.addAndGet(20 * SECOND);
+        clock.reset();
+        assertNull(clock.getRunning());
+        assertEquals(60 * SECOND, clock.getRemainingNanos(Player.WHITE));
+    }
+
+    @Test
+    void parsesTimeControls() {
+        ChessClock blitz = ChessClock.parse("5+3");
+        assertEquals(300 * SECOND, blitz.getBaseNanos());
+        assertEquals(3 * SECOND, blitz.getIncrementNanos());
+        assertEquals(90 * SECOND, ChessClock.parse(" 1.5 ").getBaseNanos());
+        assertEquals(0, ChessClock.parse("1").getIncrementNanos());
+        assertThrows(IllegalArgumentException.class, () -> ChessClock.parse("fast"));
+        assertThrows(IllegalArgumentException.class, () -> ChessClock.parse("0+1"));
+        assertThrows(IllegalArgumentException.class, () -> ChessClock.parse("1+2+3"));
+    }
+
+    @Test
+    void formatsMinutesAndTenths() {
+        ChessClock clock = new ChessClock(125 * SECOND, 0, now::get);
+        assertEquals("2:05", clock.format(Player.WHITE));
+        clock.start(Player.WHITE);
+        now.addAndGet(125 * SECOND - 9_450_000_000L);
+        assertEquals("9.4", clock.format(Player.WHITE));
+        now.addAndGet(60 * SECOND);
+        assertEquals("0.0", clock.format(Player.WHITE));
+    }
+}
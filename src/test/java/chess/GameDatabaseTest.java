@@ -0,0 +1,117 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Builds a database of random games with small runs, so the index is merged from many runs into many blocks and
+ * the start positions' postings cross block boundaries, and checks every lookup against a scan of the games.
+ */
+class GameDatabaseTest {
+
+    private static final int GAMES = 400;
+    private static final int PLIES = 30;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void lookupsMatchTheGames() throws IOException {
+        Random random = new Random(49);
+        //postings by position hash, in game id and ply order like the index
+        Map<Long, List<long[]>> expected = new LinkedHashMap<>();
+        List<List<Move>> games = new ArrayList<>();
+        try (GameDatabaseBuilder builder = new GameDatabaseBuilder(directory, 1000)) {
+            for (int id = 0; id < GAMES; id++) {
+                String setup = id % 2 == 0 ? Board.START_BOARD : Board.CUSTOM_BOARD;
+                int result = random.nextInt(4);
+                List<Move> moves = randomGame(random, setup, id, result, expected);
+                games.add(moves);
+                assertEquals(id, builder.addGame(setup, moves, result, "white " + id, "black " + id));
+            }
+            assertTrue(builder.getPostings() > 5 * 1000);
+        }
+
+        try (GameDatabase database = GameDatabase.open(directory)) {
+            assertEquals(GAMES, database.size());
+            long postings = 0;
+            for (Map.Entry<Long, List<long[]>> entry : expected.entrySet()) {
+                List<long[]> postingsOfKey = entry.getValue();
+                List<GameDatabase.Hit> hits = database.find(entry.getKey(), Integer.MAX_VALUE);
+                assertEquals(postingsOfKey.size(), hits.size());
+                for (int i = 0; i < hits.size(); i++) {
+                    GameDatabase.Hit hit = hits.get(i);
+                    long[] posting = postingsOfKey.get(i);
+                    assertEquals(posting[0], hit.getGameId());
+                    assertEquals(posting[1], hit.getPly());
+                    assertEquals(posting[2], hit.getMove() == null ? 0 : hit.getMove().key());
+                    assertEquals(posting[3], hit.getResult());
+                }
+                int counted = 0;
+                for (GameDatabase.MoveStats stats : database.stats(entry.getKey())) {
+                    counted += stats.getGames();
+                }
+                assertEquals(postingsOfKey.size(), counted);
+                postings += postingsOfKey.size();
+            }
+            assertEquals(postings, database.getPostings());
+            assertTrue(expected.get(startKey(Board.START_BOARD)).size() > GameDatabase.BLOCK_POSTINGS);
+            assertTrue(database.find(0x123456789L, 10).isEmpty());
+
+            for (int id = 0; id < GAMES; id += 37) {
+                GameDatabase.GameRecord record = database.game(id);
+                assertEquals("white " + id, record.getWhite());
+                assertEquals(id % 2 == 0 ? Board.START_BOARD : Board.CUSTOM_BOARD, record.getSetup());
+                assertEquals(games.get(id).size(), record.getMoves().size());
+                for (int ply = 0; ply < record.getMoves().size(); ply++) {
+                    assertEquals(games.get(id).get(ply).key(), record.getMoves().get(ply).key());
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays random moves the way the builder replays them and notes the posting of every position.
+     */
+    private static List<Move> randomGame(Random random, String setup, int id, int result,
+                                         Map<Long, List<long[]>> expected) {
+        Board board = new Board(setup);
+        String color = Notation.modelColor(true);
+        List<Move> moves = new ArrayList<>();
+        for (int ply = 0; ply < PLIES; ply++) {
+            List<Move> candidates = new ArrayList<>();
+            MoveGenerator.generateAll(board, color, candidates);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            Move move = candidates.get(random.nextInt(candidates.size()));
+            add(expected, Zobrist.hash(board, color), id, ply, move.key(), result);
+            board.makeMove(move);
+            moves.add(move);
+            color = Player.opposite(color);
+            if (board.getKing(Player.WHITE) == null || board.getKing(Player.BLACK) == null) {
+                break;
+            }
+        }
+        add(expected, Zobrist.hash(board, color), id, moves.size(), 0, result);
+        return moves;
+    }
+
+    private static void add(Map<Long, List<long[]>> expected, long key, int id, int ply, int move, int result) {
+        expected.computeIfAbsent(key, k -> new ArrayList<>()).add(new long[]{id, ply, move, result});
+    }
+
+    private static long startKey(String setup) {
+        return Zobrist.hash(new Board(setup), Notation.modelColor(true));
+    }
+}
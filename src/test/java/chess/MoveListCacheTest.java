@@ -0,0 +1,96 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MoveListCacheTest {
+
+    /**
+     * Random games with undos: every cached lookup has to match generating the moves and testing for check.
+     */
+    @Test
+    void matchesUncachedLookups() {
+        Random random = new Random(43);
+        MoveListCache cache = new MoveListCache();
+        int lookups = 0;
+        for (int round = 0; round < 10; round++) {
+            Game game = round % 2 == 0 ? Game.newGame() : Game.customGame();
+            Board board = game.getBoard();
+            Deque<Move> played = new ArrayDeque<>();
+            for (int ply = 0; ply < 40; ply++) {
+                lookups += check(cache, game);
+                if (board.getKing(Player.WHITE) == null || board.getKing(Player.BLACK) == null) {
+                    break;
+                }
+                if (!played.isEmpty() && random.nextInt(4) == 0) {
+                    board.unmakeMove(played.pop());
+                } else {
+                    List<Move> moves = new ArrayList<>();
+                    MoveGenerator.generateAll(board, game.getTurnCode(), moves);
+                    if (moves.isEmpty()) {
+                        break;
+                    }
+                    Move move = moves.get(random.nextInt(moves.size()));
+                    board.makeMove(move);
+                    played.push(move);
+                }
+                game.setPlayerTurn(Player.opposite(game.getPlayerTurn()));
+            }
+        }
+        assertTrue(lookups > 1000);
+    }
+
+    @Test
+    void undoFindsTheOldEntries() {
+        MoveListCache cache = new MoveListCache();
+        Game game = Game.newGame();
+        Board board = game.getBoard();
+        check(cache, game);
+        int before = cache.size();
+
+        Move move = Notation.parseCoordinate("e2e4");
+        board.makeMove(move);
+        game.setPlayerTurn(Player.opposite(game.getPlayerTurn()));
+        check(cache, game);
+        int after = cache.size();
+        assertTrue(after > before);
+
+        board.unmakeMove(move);
+        game.setPlayerTurn(Player.opposite(game.getPlayerTurn()));
+        check(cache, game);
+        assertEquals(after, cache.size());
+    }
+
+    @Test
+    void dropsLeastRecentlyUsedEntries() {
+        MoveListCache cache = new MoveListCache(8);
+        Game game = Game.newGame();
+        check(cache, game);
+        //one move list map and one check map, each bounded
+        assertTrue(cache.size() <= 16);
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    //looks every piece up twice, once filling the cache and once hitting it
+    private static int check(MoveListCache cache, Game game) {
+        int lookups = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (Piece piece : game.getBoard().getPieces()) {
+                assertEquals(piece.generatePossibleMoves(game), cache.getPossibleMoves(game, piece));
+                lookups++;
+            }
+            assertSame(game.getBoard().checkKing(game), cache.checkKing(game));
+            lookups++;
+        }
+        return lookups;
+    }
+}
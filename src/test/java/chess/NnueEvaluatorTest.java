@@ -0,0 +1,117 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ShortBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Incrementally updated accumulators have to give the same evaluation as accumulators built from scratch.
+ * The network has random weights, so an input taken out or put in on the wrong square shows in the result.
+ */
+class NnueEvaluatorTest {
+
+    private static final int ACCUMULATOR = 16;
+    private static final int HIDDEN = 8;
+
+    private final NnueNetwork network = randomNetwork(new Random(47));
+
+    @Test
+    void incrementalMatchesScratch() {
+        assertTrue(compare(new Random(1), 40, 80, 8) > 40);
+    }
+
+    @Test
+    void linesDeeperThanTheStack() {
+        //rare take-backs, so the games run past the end of the accumulator stack and back
+        assertTrue(compare(new Random(2), 4, NnueEvaluator.MAX_STACK + 60, 60) > NnueEvaluator.MAX_STACK + 20);
+    }
+
+    @Test
+    void materialNetworkCountsMaterial() {
+        NnueEvaluator evaluator = new NnueEvaluator(NnueNetwork.material(NnueNetwork.DEFAULT_ACCUMULATOR));
+        assertEquals(0, evaluator.evaluate(Game.newGame().getBoard(), Player.WHITE_CODE));
+        Game game = Notation.parseFen("4k3/8/8/8/8/8/8/R3K3 w - - 0 1");
+        int rook = evaluator.evaluate(game.getBoard(), game.getTurnCode());
+        assertTrue(Math.abs(rook - Evaluator.PIECE_VALUES[PieceType.ROOK.getCode()]) <= 35, "rook " + rook);
+    }
+
+    /**
+     * Plays random games on an attached board, taking moves back now and then, and compares every position.
+     * @param takeBack one move in this many is a take-back
+     * @return deepest line compared
+     */
+    private int compare(Random random, int games, int plies, int takeBack) {
+        NnueEvaluator incremental = new NnueEvaluator(network);
+        NnueEvaluator scratch = new NnueEvaluator(network);
+        int deepest = 0;
+        for (int round = 0; round < games; round++) {
+            Game game = round % 2 == 0 ? Game.customGame() : Game.newGame();
+            Board board = game.getBoard();
+            incremental.attach(board);
+            int color = game.getTurnCode();
+            Deque<Move> played = new ArrayDeque<>();
+            for (int ply = 0; ply < plies; ply++) {
+                for (int side = 0; side < 2; side++) {
+                    assertEquals(scratch.evaluate(board, side), incremental.evaluate(board, side),
+                            "after " + played.size() + " moves, round " + round);
+                }
+                deepest = Math.max(deepest, played.size());
+                if (!played.isEmpty() && random.nextInt(takeBack) == 0) {
+                    board.unmakeMove(played.pop());
+                    color = 1 - color;
+                    continue;
+                }
+                List<Move> moves = new ArrayList<>();
+                MoveGenerator.generateAll(board, color, moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                Move move = moves.get(random.nextInt(moves.size()));
+                board.makeMove(move);
+                played.push(move);
+                color = 1 - color;
+                if (board.getKing(Player.WHITE) == null || board.getKing(Player.BLACK) == null) {
+                    board.unmakeMove(played.pop());
+                    color = 1 - color;
+                }
+            }
+            incremental.detach();
+        }
+        return deepest;
+    }
+
+    private static NnueNetwork randomNetwork(Random random) {
+        short[] featureBiases = new short[ACCUMULATOR];
+        for (int i = 0; i < featureBiases.length; i++) {
+            featureBiases[i] = (short) random.nextInt(32);
+        }
+        short[] featureWeights = new short[NnueNetwork.FEATURES * ACCUMULATOR];
+        for (int i = 0; i < featureWeights.length; i++) {
+            featureWeights[i] = (short) (random.nextInt(17) - 8);
+        }
+        int[] biases1 = new int[HIDDEN];
+        int[] biases2 = new int[HIDDEN];
+        for (int i = 0; i < HIDDEN; i++) {
+            biases1[i] = random.nextInt(200) - 100;
+            biases2[i] = random.nextInt(200) - 100;
+        }
+        return new NnueNetwork(ACCUMULATOR, HIDDEN, HIDDEN, NnueNetwork.QA << NnueNetwork.WEIGHT_SHIFT,
+                featureBiases, ShortBuffer.wrap(featureWeights), biases1, randomBytes(random, HIDDEN * 2 * ACCUMULATOR),
+                biases2, randomBytes(random, HIDDEN * HIDDEN), 0, randomBytes(random, HIDDEN));
+    }
+
+    private static byte[] randomBytes(Random random, int count) {
+        byte[] bytes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            bytes[i] = (byte) (random.nextInt(41) - 20);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,112 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class StaticExchangeTest {
+
+    private static final int PAWN = Evaluator.PIECE_VALUES[PieceType.PAWN.getCode()];
+    private static final int KNIGHT = Evaluator.PIECE_VALUES[PieceType.KNIGHT.getCode()];
+    private static final int ROOK = Evaluator.PIECE_VALUES[PieceType.ROOK.getCode()];
+    private static final int QUEEN = Evaluator.PIECE_VALUES[PieceType.QUEEN.getCode()];
+    private static final int KING = Evaluator.PIECE_VALUES[PieceType.KING.getCode()];
+    private static final int WITCH = Evaluator.PIECE_VALUES[PieceType.WITCH.getCode()];
+
+    @Test
+    void pawnTakesDefendedKnight() {
+        assertEquals(KNIGHT - PAWN, see("4k3/8/4p3/3n4/4P3/8/8/4K3 w - - 0 1", "e4d5"));
+    }
+
+    @Test
+    void queenTakesDefendedPawn() {
+        assertEquals(PAWN - QUEEN, see("4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1", "d1d5"));
+    }
+
+    @Test
+    void undefendedRook() {
+        assertEquals(ROOK, see("4k3/8/8/3r4/8/4N3/8/4K3 w - - 0 1", "e3d5"));
+    }
+
+    @Test
+    void rookBehindRookRecaptures() {
+        assertEquals(PAWN, see("3r3k/8/3p4/8/8/8/3R4/3R3K w - - 0 1", "d2d6"));
+        assertEquals(PAWN - ROOK, see("3r3k/8/3p4/8/8/8/3R4/7K w - - 0 1", "d2d6"));
+    }
+
+    @Test
+    void vampireConvertsItsVictim() {
+        assertEquals(2 * KNIGHT, see("4k3/8/8/8/3n4/8/3V4/4K3 w - - 0 1", "d2d4"));
+    }
+
+    @Test
+    void witchTurnsIntoQueen() {
+        assertEquals(ROOK + QUEEN - WITCH, see("4k3/8/8/3r4/3P4/3W4/8/4K3 w - - 0 1", "d3d5"));
+        //the bishop takes the new queen
+        assertEquals(ROOK + QUEEN - WITCH - QUEEN, see("4k3/8/4b3/3r4/3P4/3W4/8/4K3 w - - 0 1", "d3d5"));
+    }
+
+    @Test
+    void kingCaptureEndsTheExchange() {
+        assertEquals(KING, see("3qk3/8/8/8/8/8/4R3/4K3 w - - 0 1", "e2e8"));
+    }
+
+    @Test
+    void quietMoveIsWorthNothing() {
+        assertEquals(0, see("4k3/8/8/8/8/8/4R3/4K3 w - - 0 1", "e2e5"));
+    }
+
+    /**
+     * The scratch capture geometry has to agree with the piece classes' canMove rules.
+     */
+    @Test
+    void attacksMatchCanMove() {
+        Random random = new Random(36);
+        int positions = 0;
+        for (int game = 0; game < 20; game++) {
+            Board board = Game.customGame().getBoard();
+            int color = Player.WHITE_CODE;
+            for (int ply = 0; ply < 60 && board.getKing(color) != null; ply++) {
+                checkAttacks(board);
+                positions++;
+                List<Move> moves = new ArrayList<>();
+                MoveGenerator.generateAll(board, color, moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+                color = 1 - color;
+            }
+        }
+        assertTrue(positions > 500);
+    }
+
+    private static void checkAttacks(Board board) {
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                Square target = board.getSquare(x, y);
+                if (!target.hasChess()) {
+                    continue;
+                }
+                int by = 1 - target.getPiece().getColorCode();
+                boolean canCapture = false;
+                for (Piece piece : board.getPieces()) {
+                    if (piece.getColorCode() == by && piece.canMove(board, piece.getSquare(), target)) {
+                        canCapture = true;
+                        break;
+                    }
+                }
+                assertEquals(canCapture, StaticExchange.isAttacked(board, x, y, by),
+                        "square " + Notation.squareName(x, y));
+            }
+        }
+    }
+
+    private static int see(String fen, String move) {
+        return StaticExchange.evaluate(Notation.parseFen(fen).getBoard(), Notation.parseCoordinate(move));
+    }
+}
@@ -0,0 +1,142 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks generated tables against their own successors: a position is won if a move captures the king or leads
+ * to a position lost for the opponent, lost if it has moves and all of them lead to won positions, drawn otherwise.
+ */
+class TablebaseGeneratorTest {
+
+    private static final int SAMPLES = 1500;
+
+    @TempDir
+    static Path directory;
+
+    private static Tablebase tablebase;
+
+    @BeforeAll
+    static void generate() throws IOException {
+        TablebaseGenerator generator = new TablebaseGenerator(directory);
+        for (String name : new String[]{"KR_K", "KP_K", "KV_K", "KW_K", "KN_KB"}) {
+            generator.generate(name);
+        }
+        tablebase = Tablebase.open(directory);
+    }
+
+    @Test
+    void rookEnding() {
+        check("KR", "K", 1);
+    }
+
+    @Test
+    void pawnEnding() {
+        check("KP", "K", 2);
+    }
+
+    @Test
+    void vampireEnding() {
+        check("KV", "K", 3);
+    }
+
+    @Test
+    void witchEnding() {
+        check("KW", "K", 4);
+    }
+
+    @Test
+    void knightAgainstBishop() {
+        check("KN", "KB", 5);
+    }
+
+    @Test
+    void rookMate() {
+        //Rh8 leaves the king no square the other king or the rook does not attack
+        Game mate = Notation.parseFen("K7/8/1k6/8/8/8/8/7r b - - 0 1");
+        assertEquals(Tablebase.WIN, tablebase.probe(mate.getBoard(), mate.getPlayerTurn()));
+        mate.setPlayerTurn(Player.opposite(mate.getPlayerTurn()));
+        assertEquals(Tablebase.LOSS, tablebase.probe(mate.getBoard(), mate.getPlayerTurn()));
+    }
+
+    private static void check(String first, String second, long seed) {
+        Random random = new Random(seed);
+        int[] seen = new int[3];
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            Game game = Notation.parseFen(randomFen(random, first, second));
+            Board board = game.getBoard();
+            String color = game.getPlayerTurn();
+            int value = tablebase.probe(board, color);
+            assertTrue(value == Tablebase.WIN || value == Tablebase.LOSS || value == Tablebase.DRAW,
+                    "not covered: " + Notation.toFen(game));
+            assertEquals(expected(board, color), value, Notation.toFen(game));
+            seen[value]++;
+        }
+        assertTrue(seen[Tablebase.WIN] > 0 && seen[Tablebase.LOSS] + seen[Tablebase.DRAW] > 0);
+    }
+
+    private static int expected(Board board, String color) {
+        List<Move> moves = new ArrayList<>();
+        MoveGenerator.generateAll(board, color, moves);
+        boolean allWon = !moves.isEmpty();
+        for (Move move : moves) {
+            Piece victim = board.getSquare(move.getDestX(), move.getDestY()).getPiece();
+            if (victim instanceof King) {
+                return Tablebase.WIN;
+            }
+            board.makeMove(move);
+            int next = tablebase.probe(board, Player.opposite(color));
+            board.unmakeMove(move);
+            if (next == Tablebase.LOSS) {
+                return Tablebase.WIN;
+            }
+            allWon &= next == Tablebase.WIN;
+        }
+        return allWon ? Tablebase.LOSS : Tablebase.DRAW;
+    }
+
+    //pieces on distinct random squares, the first side is model white and so black in FEN
+    private static String randomFen(Random random, String first, String second) {
+        char[] squares = new char[64];
+        String pieces = first.toLowerCase() + second;
+        for (int i = 0; i < pieces.length(); i++) {
+            int square;
+            do {
+                square = random.nextInt(64);
+            } while (squares[square] != 0);
+            squares[square] = pieces.charAt(i);
+        }
+        StringBuilder fen = new StringBuilder();
+        for (int x = 0; x < 8; x++) {
+            int empty = 0;
+            for (int y = 0; y < 8; y++) {
+                char c = squares[x * 8 + y];
+                if (c == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(c);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (x < 7) {
+                fen.append('/');
+            }
+        }
+        return fen.append(random.nextBoolean() ? " w" : " b").toString();
+    }
+}